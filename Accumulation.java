@@ -0,0 +1,28 @@
+package com.example.holeFilling;
+
+/**
+ * The precision in which the fill kernels accumulate the numerator and the denominator of the weighted average of the
+ * boundary values.
+ * The weights of {@link DefaultWeightingFunc} span many orders of magnitude, from 1/epsilon next to the hole down to
+ * about 1e-12 across a large image, so summing up to hundreds of thousands of them in float loses the contribution of
+ * the small weights, and makes the result depend on the order of the terms. The boundary pixels are always summed in
+ * the same order, row-major (see {@link ImageProcessor#getBoundaryIndices()}), so every mode gives the same result on
+ * every run and with any number of threads; the modes differ in how close that result is to the exact average.
+ * The measured costs of the modes are listed in the README.
+ */
+public enum Accumulation {
+    /**
+     * Plain float sums. The fastest mode, and the default; the relative error of the sums grows with |B|.
+     */
+    FLOAT,
+    /**
+     * The weights are computed in float and summed in double. Accurate to float precision for any realistic |B|.
+     */
+    DOUBLE,
+    /**
+     * Float sums compensated with the Kahan-Babuska (Neumaier) algorithm: the rounding error of every addition is
+     * kept in a second float and added back at the end, so the error doesn't grow with |B|, without converting the
+     * terms to double.
+     */
+    KAHAN
+}
@@ -0,0 +1,130 @@
+package com.example.holeFilling;
+
+/**
+ * This class holds the error of an approximated fill, measured against the exact fill of {@link ImageHoleFiller} on
+ * a set of hole pixels. Errors are absolute differences between "I" values, in the range [0,1].
+ */
+public class ApproximationError {
+    private final double maxError;
+    private final double meanError;
+    private final int sampleCount;
+
+    /**
+     * Initializes a new approximation error.
+     * @param maxError The largest absolute error over the measured hole pixels
+     * @param meanError The mean absolute error over the measured hole pixels
+     * @param sampleCount The number of measured hole pixels
+     */
+    public ApproximationError(double maxError, double meanError, int sampleCount) {
+        this.maxError = maxError;
+        this.meanError = meanError;
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * Compares the current values of the given hole pixels with their exact fill values, computed from the boundary
+     * pixels with the given weighting function. At most maxSamples hole pixels, evenly spread over the hole indices,
+     * are measured, since computing the exact values is O(|B|) per pixel.
+     * @param image The image, after the hole was filled
+     * @param hole The indices of the hole pixels in the image
+     * @param boundaries The indices of the boundary pixels in the image
+     * @param W The weighting function of the exact fill
+     * @param maxSamples The largest number of hole pixels to measure
+     * @return The error of the current values
+     */
+    static ApproximationError measure(ImageMatrix image, int[] hole, int[] boundaries, WeightingFunc W,
+                                      int maxSamples) {
+        if (maxSamples <= 0) {
+            throw new IllegalArgumentException("The number of samples must be positive: " + maxSamples);
+        }
+        BoundarySnapshot boundary = BoundarySnapshot.of(image, boundaries);
+        FillKernel kernel = FillKernel.forWeightingFunc(W);
+        int samples = Math.min(maxSamples, hole.length);
+        double max = 0;
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            int u = hole[(int) ((long) i * hole.length / samples)];
+            float exact = kernel.fillValue(image.xOf(u), image.yOf(u), boundary);
+            double error = Math.abs(image.get(u) - exact);
+            max = Math.max(max, error);
+            sum += error;
+        }
+        return new ApproximationError(max, samples == 0 ? 0 : sum / samples, samples);
+    }
+
+    /**
+     * Compares the current values of the hole pixels of the given components with their exact fill values, each
+     * computed only from the boundary pixels of its own component, like
+     * {@link #measure(ImageMatrix, int[], int[], WeightingFunc, int)}. The measured hole pixels are evenly spread over
+     * the hole pixels of all the components, in their order.
+     * @param image The image, after the hole was filled
+     * @param components The connected components of the hole
+     * @param W The weighting function of the exact fill
+     * @param maxSamples The largest number of hole pixels to measure
+     * @return The error of the current values
+     */
+    static ApproximationError measure(ImageMatrix image, HoleComponent[] components, WeightingFunc W,
+                                      int maxSamples) {
+        if (maxSamples <= 0) {
+            throw new IllegalArgumentException("The number of samples must be positive: " + maxSamples);
+        }
+        long holeSize = 0;
+        for (HoleComponent component : components) {
+            holeSize += component.getHoleIndices().length;
+        }
+        FillKernel kernel = FillKernel.forWeightingFunc(W);
+        int samples = (int) Math.min(maxSamples, holeSize);
+        double max = 0;
+        double sum = 0;
+        int c = 0;
+        // the position of the first hole pixel of component c among the hole pixels of all the components
+        long componentStart = 0;
+        BoundarySnapshot boundary = null;
+        for (int i = 0; i < samples; i++) {
+            long position = (long) i * holeSize / samples;
+            while (position >= componentStart + components[c].getHoleIndices().length) {
+                componentStart += components[c].getHoleIndices().length;
+                c++;
+                boundary = null;
+            }
+            if (boundary == null) {
+                boundary = BoundarySnapshot.of(image, components[c].getBoundaryIndices());
+            }
+            int u = components[c].getHoleIndices()[(int) (position - componentStart)];
+            float exact = kernel.fillValue(image.xOf(u), image.yOf(u), boundary);
+            double error = Math.abs(image.get(u) - exact);
+            max = Math.max(max, error);
+            sum += error;
+        }
+        return new ApproximationError(max, samples == 0 ? 0 : sum / samples, samples);
+    }
+
+    /**
+     *
+     * @return The largest absolute error over the measured hole pixels
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     *
+     * @return The mean absolute error over the measured hole pixels
+     */
+    public double getMeanError() {
+        return meanError;
+    }
+
+    /**
+     *
+     * @return The number of measured hole pixels
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public String toString() {
+        return "max error " + maxError + ", mean error " + meanError + " over " + sampleCount + " hole pixels";
+    }
+}
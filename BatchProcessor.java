@@ -0,0 +1,431 @@
+package com.example.holeFilling;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * This class fills the holes of many image/mask pairs in a single JVM, so the JVM startup and the ImageIO plugin scan
+ * are paid once for the whole batch.
+ * The pairs flow through three pipelined stages - decode, fill and encode - each run by its own workers and connected
+ * by bounded queues, so a slow stage holds back the stages before it instead of letting decoded images pile up in
+ * memory. A pair that fails in any stage is reported and skipped, and the batch goes on.
+ */
+public class BatchProcessor {
+    private static final int STAGES = 3;
+    private static final String[] STAGE_NAMES = {"decode", "fill", "encode"};
+
+    private final int connectivityType;
+    private final int threads;
+
+    /**
+     * This class represents a single image/mask pair of the batch, and where its output is written.
+     */
+    public static class Pair {
+        private final String inputImage;
+        private final String inputMask;
+        private final String outputImage;
+
+        /**
+         * Initializes a new pair.
+         * @param inputImage a String path to the original image
+         * @param inputMask a String path to the image representing the hole in the image
+         * @param outputImage a String path to the output image
+         */
+        public Pair(String inputImage, String inputMask, String outputImage) {
+            this.inputImage = inputImage;
+            this.inputMask = inputMask;
+            this.outputImage = outputImage;
+        }
+
+        public String getInputImage() {
+            return inputImage;
+        }
+
+        public String getInputMask() {
+            return inputMask;
+        }
+
+        public String getOutputImage() {
+            return outputImage;
+        }
+
+        @Override
+        public String toString() {
+            return inputImage + " / " + inputMask + " -> " + outputImage;
+        }
+    }
+
+    /**
+     * Initializes a new batch processor.
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param threads the number of workers of each stage
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public BatchProcessor(int connectivityType, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.connectivityType = connectivityType;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads the pairs of a manifest file. Every line holds the paths of an image, its mask and the output image,
+     * separated by tabs (or by whitespace, when the line has no tabs). Empty lines and lines starting with # are
+     * ignored.
+     * @param manifest a String path to the manifest file
+     * @return the pairs of the manifest, in order
+     * @throws IOException if the manifest can't be read, or has a line that isn't a pair
+     */
+    public static List<Pair> readManifest(String manifest) throws IOException {
+        List<Pair> pairs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(manifest))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = trimmed.contains("\t") ? trimmed.split("\t") : trimmed.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IOException(manifest + ":" + lineNumber + ": expected <inputImage> <inputMask> "
+                            + "<outputImage>, found " + fields.length + " fields");
+                }
+                pairs.add(new Pair(fields[0].trim(), fields[1].trim(), fields[2].trim()));
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Lists the pairs of a directory of images: every image whose file name matches the glob is paired with the mask
+     * of the same file name in the mask directory, and its output is written with the same file name to the output
+     * directory.
+     * @param imageDir a String path to the directory of the original images
+     * @param maskDir a String path to the directory of the masks
+     * @param outputDir a String path to the directory of the output images
+     * @param glob a glob pattern of the image file names, e.g. *.png
+     * @return the pairs, sorted by file name
+     * @throws IOException if the image directory can't be listed
+     */
+    public static List<Pair> listDirectory(String imageDir, String maskDir, String outputDir, String glob)
+            throws IOException {
+        PathMatcher matcher = Path.of(imageDir).getFileSystem().getPathMatcher("glob:" + glob);
+        List<Pair> pairs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(imageDir))) {
+            files.filter(path -> Files.isRegularFile(path) && matcher.matches(path.getFileName()))
+                    .sorted()
+                    .forEach(path -> {
+                        String name = path.getFileName().toString();
+                        pairs.add(new Pair(path.toString(), Path.of(maskDir, name).toString(),
+                                Path.of(outputDir, name).toString()));
+                    });
+        }
+        return pairs;
+    }
+
+    /**
+     * Processes all the pairs, and waits for them to complete.
+     * @param pairs the pairs to process
+     * @return the throughput, latencies and failures of the batch
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public Summary process(Iterable<Pair> pairs) throws InterruptedException {
+        ImageIO.setUseCache(false);
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        List<BlockingQueue<Task>> queues = new ArrayList<>(STAGES);
+        for (int stage = 0; stage < STAGES; stage++) {
+            queues.add(new ArrayBlockingQueue<>(2 * threads));
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(STAGES * threads);
+        boolean submitted = false;
+        try {
+            for (int stage = 0; stage < STAGES; stage++) {
+                BlockingQueue<Task> in = queues.get(stage);
+                BlockingQueue<Task> out = (stage + 1 < STAGES) ? queues.get(stage + 1) : null;
+                AtomicInteger running = new AtomicInteger(threads);
+                int currentStage = stage;
+                for (int i = 0; i < threads; i++) {
+                    workers.execute(() -> runWorker(currentStage, in, out, running, summary));
+                }
+            }
+            BlockingQueue<Task> first = queues.get(0);
+            for (Pair pair : pairs) {
+                first.put(new Task(pair));
+            }
+            for (int i = 0; i < threads; i++) {
+                first.put(Task.END);
+            }
+            submitted = true;
+        } finally {
+            if (submitted) {
+                workers.shutdown();
+            } else {
+                // the workers would wait for the end marker forever, so they are interrupted
+                workers.shutdownNow();
+            }
+        }
+        while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            // keep waiting for the last pairs
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Runs a single worker of a stage: takes pairs from the stage's queue until it finds the end marker, processes
+     * them, and passes them to the next stage. The last worker of a stage to finish passes the end marker on to all
+     * the workers of the next stage, even if it is stopped by an error, so that the batch always terminates.
+     */
+    private void runWorker(int stage, BlockingQueue<Task> in, BlockingQueue<Task> out, AtomicInteger running,
+                           Summary summary) {
+        try {
+            Task task;
+            while ((task = in.take()) != Task.END) {
+                long start = System.nanoTime();
+                try {
+                    runStage(stage, task);
+                } catch (Throwable e) {
+                    task.processor = null;
+                    summary.failures.add(new Failure(task.pair, STAGE_NAMES[stage], e));
+                    continue;
+                }
+                summary.latencies[stage].add(System.nanoTime() - start);
+                if (out != null) {
+                    out.put(task);
+                } else {
+                    summary.completed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (running.decrementAndGet() == 0 && out != null) {
+                try {
+                    for (int i = 0; i < threads; i++) {
+                        out.put(Task.END);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void runStage(int stage, Task task) throws IOException {
+        Pair pair = task.pair;
+        switch (stage) {
+            case 0:
+                FillMetrics metrics = FillMetrics.startRun();
+                if (metrics != null) {
+                    metrics.begin(FillMetrics.Stage.DECODE);
+                }
+                BufferedImage image = read(pair.getInputImage());
+                BufferedImage mask = read(pair.getInputMask());
+                if (metrics != null) {
+                    metrics.end(FillMetrics.Stage.DECODE);
+                }
+                task.processor = new ImageProcessor(image, mask, connectivityType, metrics);
+                break;
+            case 1:
+                new ImageHoleFiller(task.processor, null).fillHoles();
+                break;
+            default:
+                File output = new File(pair.getOutputImage());
+                BufferedImage filled = task.processor.toGrayscaleImage();
+                FillMetrics encodeMetrics = task.processor.getMetrics();
+                if (encodeMetrics != null) {
+                    encodeMetrics.begin(FillMetrics.Stage.ENCODE);
+                }
+                if (!ImageIO.write(filled, "png", output)) {
+                    throw new IOException("No png image writer");
+                }
+                if (encodeMetrics != null) {
+                    encodeMetrics.end(FillMetrics.Stage.ENCODE);
+                }
+                task.processor.reportMetrics();
+                task.processor = null;
+                break;
+        }
+    }
+
+    private static BufferedImage read(String path) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + path);
+        }
+        return image;
+    }
+
+    /**
+     * A pair moving through the stages, with the data produced by the previous stage.
+     */
+    private static class Task {
+        static final Task END = new Task(null);
+
+        final Pair pair;
+        ImageProcessor processor;
+
+        Task(Pair pair) {
+            this.pair = pair;
+        }
+    }
+
+    /**
+     * This class describes a pair that failed, and the stage in which it failed.
+     */
+    public static class Failure {
+        private final Pair pair;
+        private final String stage;
+        private final Throwable cause;
+
+        Failure(Pair pair, String stage, Throwable cause) {
+            this.pair = pair;
+            this.stage = stage;
+            this.cause = cause;
+        }
+
+        public Pair getPair() {
+            return pair;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return pair + " failed in " + stage + ": " + cause;
+        }
+    }
+
+    /**
+     * This class holds the results of a batch: the number of completed pairs, the failures, the elapsed time and the
+     * latencies of every stage.
+     */
+    public static class Summary {
+        private final AtomicInteger completed = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+        private final LatencyRecorder[] latencies = new LatencyRecorder[STAGES];
+        private long elapsedNanos;
+
+        Summary() {
+            for (int stage = 0; stage < STAGES; stage++) {
+                latencies[stage] = new LatencyRecorder();
+            }
+        }
+
+        /**
+         *
+         * @return the number of pairs that were written successfully
+         */
+        public int getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         *
+         * @return the pairs that failed
+         */
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+
+        /**
+         *
+         * @return the wall-clock time of the batch in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         *
+         * @return the number of completed pairs per second of wall-clock time
+         */
+        public double getPairsPerSecond() {
+            return elapsedNanos == 0 ? 0 : completed.get() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns a percentile of the latency of a stage, over the pairs that completed the stage.
+         * @param stage the name of the stage: decode, fill or encode
+         * @param percentile the percentile, in the range [0,100]
+         * @return the latency in milliseconds, or 0 if no pair completed the stage
+         */
+        public double getLatencyMillis(String stage, double percentile) {
+            int index = Arrays.asList(STAGE_NAMES).indexOf(stage);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+            }
+            return latencies[index].percentile(percentile) / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d pairs in %.1f s (%.2f pairs/s), %d failed%n", completed.get(),
+                    elapsedNanos / 1e9, getPairsPerSecond(), failures.size()));
+            for (String stage : STAGE_NAMES) {
+                text.append(String.format("  %-6s p50 %8.1f ms, p99 %8.1f ms%n", stage, getLatencyMillis(stage, 50),
+                        getLatencyMillis(stage, 99)));
+            }
+            Iterator<Failure> failure = failures.iterator();
+            while (failure.hasNext()) {
+                text.append("  ").append(failure.next()).append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Collects latencies from several threads, and computes their percentiles.
+     */
+    private static class LatencyRecorder {
+        private long[] values = new long[64];
+        private int count;
+
+        synchronized void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        synchronized double percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.holeFilling;
+
+/**
+ * A uniform grid over the boundary (B) pixels of a {@link BoundarySnapshot}, for visiting only the boundary pixels
+ * near a hole pixel.
+ * The pixels are reordered cell by cell, in row-major order of the cells, so the pixels of a cell are consecutive in
+ * the reordered arrays, and the cells of a grid row are consecutive too.
+ */
+final class BoundaryGrid {
+    // the cell size the grid was requested with, which the cells may exceed
+    final int requestedCellSize;
+    final int minX;
+    final int minY;
+    final int cellSize;
+    final int columns;
+    final int rows;
+    // the pixels of cell (cx, cy) are [cellStart[cy * columns + cx], cellStart[cy * columns + cx + 1])
+    final int[] cellStart;
+    final int[] x;
+    final int[] y;
+    final float[][] channels;
+
+    private BoundaryGrid(int requestedCellSize, int minX, int minY, int cellSize, int columns, int rows,
+                         int[] cellStart, int[] x, int[] y, float[][] channels) {
+        this.requestedCellSize = requestedCellSize;
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.x = x;
+        this.y = y;
+        this.channels = channels;
+    }
+
+    /**
+     * Builds a grid over the bounding box of the given boundary pixels. The cells are made larger than requested if
+     * the grid would otherwise have many more cells than pixels.
+     * @param boundary The boundary pixels
+     * @param cellSize The requested side of a cell, in pixels
+     * @return The grid
+     */
+    static BoundaryGrid of(BoundarySnapshot boundary, int cellSize) {
+        int n = boundary.size();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, boundary.x[i]);
+            minY = Math.min(minY, boundary.y[i]);
+            maxX = Math.max(maxX, boundary.x[i]);
+            maxY = Math.max(maxY, boundary.y[i]);
+        }
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        int requestedCellSize = cellSize;
+        cellSize = Math.max(1, cellSize);
+        long maxCells = Math.max(64, 4L * n);
+        while ((long) ((maxX - minX) / cellSize + 1) * ((maxY - minY) / cellSize + 1) > maxCells) {
+            cellSize *= 2;
+        }
+        int columns = (maxX - minX) / cellSize + 1;
+        int rows = (maxY - minY) / cellSize + 1;
+
+        // counting sort of the pixels by their cell
+        int[] cell = new int[n];
+        int[] cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cell[i] = ((boundary.y[i] - minY) / cellSize) * columns + (boundary.x[i] - minX) / cellSize;
+            cellStart[cell[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = new int[columns * rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        int[] x = new int[n];
+        int[] y = new int[n];
+        float[][] channels = new float[boundary.channels.length][n];
+        for (int i = 0; i < n; i++) {
+            int target = next[cell[i]]++;
+            x[target] = boundary.x[i];
+            y[target] = boundary.y[i];
+            for (int c = 0; c < channels.length; c++) {
+                channels[c][target] = boundary.channels[c][i];
+            }
+        }
+        return new BoundaryGrid(requestedCellSize, minX, minY, cellSize, columns, rows, cellStart, x, y, channels);
+    }
+}
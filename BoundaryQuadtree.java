@@ -0,0 +1,198 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * A quadtree over the boundary (B) pixels, where every node aggregates the pixels below it: their count, the sum of
+ * their values, their centroid and the radius of the smallest circle around the centroid containing all of them.
+ * It lets {@link ImageHoleFillerMultipole} replace a whole cluster of far-away boundary pixels with a single
+ * pseudo-pixel at the centroid (the Barnes-Hut approximation).
+ * The nodes are stored in flat primitive arrays, and the pixels are reordered so that the pixels of every node are
+ * contiguous.
+ */
+final class BoundaryQuadtree {
+    // nodes holding at most this many pixels are not split further
+    private static final int LEAF_SIZE = 16;
+
+    // the boundary pixels, reordered so that the pixels of every node are in the range [start, end)
+    final int[] x;
+    final int[] y;
+    final float[] value;
+
+    // node n holds the pixels [start[n], end[n]); its children, if any, are the nodes
+    // firstChild[n] .. firstChild[n]+childCount[n]-1
+    int[] start;
+    int[] end;
+    int[] firstChild;
+    int[] childCount;
+    double[] centroidX;
+    double[] centroidY;
+    double[] radius;
+    double[] valueSum;
+    private int nodeCount;
+    private int depth;
+
+    /**
+     * Builds the quadtree over the given boundary pixels.
+     * @param boundary A snapshot of the boundary pixels
+     */
+    BoundaryQuadtree(BoundarySnapshot boundary) {
+        int n = boundary.size();
+        this.x = Arrays.copyOf(boundary.x, n);
+        this.y = Arrays.copyOf(boundary.y, n);
+        this.value = Arrays.copyOf(boundary.value, n);
+        int capacity = Math.max(16, n / 4);
+        start = new int[capacity];
+        end = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        centroidX = new double[capacity];
+        centroidY = new double[capacity];
+        radius = new double[capacity];
+        valueSum = new double[capacity];
+        if (n > 0) {
+            int root = newNode(0, n);
+            build(root, 1);
+        }
+    }
+
+    /**
+     *
+     * @return The number of nodes in the tree, 0 if there are no boundary pixels. The root is node 0.
+     */
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     *
+     * @return The number of levels in the tree
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     *
+     * @param node A node of the tree
+     * @return true if the node has no children, so its pixels must be visited one by one
+     */
+    boolean isLeaf(int node) {
+        return childCount[node] == 0;
+    }
+
+    private int newNode(int from, int to) {
+        if (nodeCount == start.length) {
+            int capacity = nodeCount * 2;
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            centroidX = Arrays.copyOf(centroidX, capacity);
+            centroidY = Arrays.copyOf(centroidY, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            valueSum = Arrays.copyOf(valueSum, capacity);
+        }
+        int node = nodeCount++;
+        start[node] = from;
+        end[node] = to;
+        double sumX = 0;
+        double sumY = 0;
+        double sumValue = 0;
+        for (int i = from; i < to; i++) {
+            sumX += x[i];
+            sumY += y[i];
+            sumValue += value[i];
+        }
+        double cx = sumX / (to - from);
+        double cy = sumY / (to - from);
+        double maxSquaredDistance = 0;
+        for (int i = from; i < to; i++) {
+            double dx = x[i] - cx;
+            double dy = y[i] - cy;
+            maxSquaredDistance = Math.max(maxSquaredDistance, dx * dx + dy * dy);
+        }
+        centroidX[node] = cx;
+        centroidY[node] = cy;
+        radius[node] = Math.sqrt(maxSquaredDistance);
+        valueSum[node] = sumValue;
+        return node;
+    }
+
+    /**
+     * Splits a node into up to four children by the quadrants of its pixels' bounding box, and the children
+     * recursively, until they hold at most {@link #LEAF_SIZE} pixels.
+     */
+    private void build(int node, int level) {
+        depth = Math.max(depth, level);
+        int from = start[node];
+        int to = end[node];
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int midX = (minX + maxX) >> 1;
+        int midY = (minY + maxY) >> 1;
+        // partitions the pixels into the quadrants: first by x, then each half by y
+        int splitX = partition(from, to, midX, true);
+        int[] bounds = {from, partition(from, splitX, midY, false), splitX, partition(splitX, to, midY, false), to};
+        int children = 0;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                children++;
+            }
+        }
+        if (children < 2) {
+            return; // all pixels are in the same place, and there is nothing to split
+        }
+        int first = nodeCount;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                newNode(bounds[q], bounds[q + 1]);
+            }
+        }
+        firstChild[node] = first;
+        childCount[node] = children;
+        for (int child = first; child < first + children; child++) {
+            build(child, level + 1);
+        }
+    }
+
+    /**
+     * Reorders the pixels in the range [from, to) so that those with a coordinate at most the given pivot come first.
+     * @return The position of the first pixel with a coordinate above the pivot
+     */
+    private int partition(int from, int to, int pivot, boolean byX) {
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+            if ((byX ? x[i] : y[i]) <= pivot) {
+                i++;
+            } else {
+                swap(i, j--);
+            }
+        }
+        return i;
+    }
+
+    private void swap(int i, int j) {
+        int tx = x[i];
+        x[i] = x[j];
+        x[j] = tx;
+        int ty = y[i];
+        y[i] = y[j];
+        y[j] = ty;
+        float tv = value[i];
+        value[i] = value[j];
+        value[j] = tv;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.holeFilling;
+
+/**
+ * A read-only, structure-of-arrays copy of the boundary (B) pixels: their coordinates and "I" values, in the order of
+ * the boundary indices it was taken from. A snapshot of a multi-channel image holds the values of every channel, the
+ * first of which is also the snapshot's value.
+ * The boundary values never change while the hole is being filled, so a single snapshot can be shared by every thread
+ * filling hole pixels, and iterating it doesn't touch the image or convert indices back to coordinates.
+ */
+final class BoundarySnapshot {
+    final int[] x;
+    final int[] y;
+    final float[] value;
+    final float[][] channels;
+    // the grid over the pixels, built by the first kernel that needs it
+    private volatile BoundaryGrid grid;
+
+    private BoundarySnapshot(int[] x, int[] y, float[][] channels) {
+        this.x = x;
+        this.y = y;
+        this.value = channels[0];
+        this.channels = channels;
+    }
+
+    /**
+     * Copies the given boundary pixels out of the image.
+     * @param image The image holding the boundary pixels
+     * @param boundaries The indices of the boundary pixels in the image
+     * @return A snapshot of the boundary pixels
+     */
+    static BoundarySnapshot of(ImageMatrix image, int[] boundaries) {
+        int n = boundaries.length;
+        int[] x = new int[n];
+        int[] y = new int[n];
+        float[] value = new float[n];
+        for (int i = 0; i < n; i++) {
+            int v = boundaries[i];
+            x[i] = image.xOf(v);
+            y[i] = image.yOf(v);
+            value[i] = image.get(v);
+        }
+        return new BoundarySnapshot(x, y, new float[][] {value});
+    }
+
+    /**
+     * Copies the given boundary pixels out of the channels of a multi-channel image.
+     * @param image The image holding the boundary pixels
+     * @param boundaries The indices of the boundary pixels in the image
+     * @return A snapshot of the boundary pixels, with the values of every channel
+     */
+    static BoundarySnapshot of(MultiChannelImage image, int[] boundaries) {
+        int n = boundaries.length;
+        int width = image.getWidth();
+        int[] x = new int[n];
+        int[] y = new int[n];
+        float[][] channels = new float[image.getChannels()][n];
+        for (int i = 0; i < n; i++) {
+            int v = boundaries[i];
+            x[i] = v % width;
+            y[i] = v / width;
+        }
+        for (int c = 0; c < channels.length; c++) {
+            float[] plane = image.getPlane(c);
+            float[] value = channels[c];
+            for (int i = 0; i < n; i++) {
+                value[i] = plane[boundaries[i]];
+            }
+        }
+        return new BoundarySnapshot(x, y, channels);
+    }
+
+    /**
+     * Returns a grid over the boundary pixels, building it on the first call. The grid is shared by all the threads
+     * using the snapshot.
+     * @param cellSize The requested side of a grid cell, in pixels
+     * @return The grid over the boundary pixels
+     */
+    BoundaryGrid grid(int cellSize) {
+        BoundaryGrid result = grid;
+        if (result == null || result.requestedCellSize != cellSize) {
+            synchronized (this) {
+                result = grid;
+                if (result == null || result.requestedCellSize != cellSize) {
+                    result = BoundaryGrid.of(this, cellSize);
+                    grid = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return The number of boundary pixels in the snapshot
+     */
+    int size() {
+        return value.length;
+    }
+}
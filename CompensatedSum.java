@@ -0,0 +1,23 @@
+package com.example.holeFilling;
+
+/**
+ * The step of the Kahan-Babuska (Neumaier) compensated summation shared by the fill kernels for
+ * {@link Accumulation#KAHAN}: the rounding error of every float addition is computed exactly, summed in a second
+ * float, and added back to the sum at the end.
+ */
+final class CompensatedSum {
+    private CompensatedSum() {
+    }
+
+    /**
+     * Returns the rounding error of a float addition, exactly: sum + error equals a + b. The larger addend is the one
+     * of larger magnitude, so the error is exact for addends of any sign.
+     * @param a The first addend
+     * @param b The second addend
+     * @param sum The rounded sum, a + b
+     * @return The rounding error of the sum
+     */
+    static float error(float a, float b, float sum) {
+        return Math.abs(a) >= Math.abs(b) ? (a - sum) + b : (b - sum) + a;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.holeFilling;
+
+/**
+ * This class defines a weighting function that cuts another radial weighting function off at a given radius: it
+ * calculates the same weights as the base function up to the radius, and 0 beyond it.
+ * Far boundary pixels hardly contribute to the value of a hole pixel under a quickly decreasing weighting function,
+ * yet cost as much to weigh as the near ones. With a cutoff, hole fillers only visit the boundary pixels within the
+ * radius of each hole pixel, through a spatial index of the boundary, and look their weights up in a table indexed by
+ * the squared distance.
+ * A hole pixel farther than the radius from every boundary pixel gets no weight at all; it is filled with the base
+ * function from the whole boundary instead.
+ */
+public class CutoffWeightingFunc implements RadialWeightingFunc {
+    // the base function is evaluated up to this distance when looking for a relative cutoff
+    private static final double MAX_SEARCH_DISTANCE = 1 << 16;
+
+    private final RadialWeightingFunc base;
+    private final double radius;
+
+    /**
+     * Initializes a weighting function cutting the given function off at a fixed radius.
+     *
+     * @param base the weighting function calculating the weights within the radius
+     * @param radius the distance beyond which the weight is 0
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public CutoffWeightingFunc(RadialWeightingFunc base, double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("The cutoff radius must be positive: " + radius);
+        }
+        this.base = base;
+        this.radius = radius;
+    }
+
+    /**
+     * Creates a weighting function cutting the given function off where its weight falls below a fraction of the
+     * largest weight a boundary pixel can have, the weight of an adjacent pixel at distance 1.
+     *
+     * @param base the weighting function calculating the weights within the cutoff
+     * @param relativeWeight the fraction, in the range (0,1], of the largest weight below which weights are cut off
+     * @return the weighting function, or one with an infinite radius if the base function never falls below the
+     *         cutoff
+     * @throws IllegalArgumentException if the fraction is not in the range (0,1]
+     */
+    public static CutoffWeightingFunc withRelativeCutoff(RadialWeightingFunc base, double relativeWeight) {
+        if (!(relativeWeight > 0 && relativeWeight <= 1)) {
+            throw new IllegalArgumentException("The relative weight must be in the range (0,1]: " + relativeWeight);
+        }
+        double threshold = relativeWeight * base.weightAtDistance(1);
+        // the weight doesn't increase with the distance, so find the distance where it crosses the threshold by
+        // doubling the distance and then bisecting
+        double inside = 1;
+        double outside = 2;
+        while (base.weightAtDistance(outside) >= threshold) {
+            if (outside >= MAX_SEARCH_DISTANCE) {
+                return new CutoffWeightingFunc(base, Double.POSITIVE_INFINITY);
+            }
+            inside = outside;
+            outside *= 2;
+        }
+        for (int i = 0; i < 40; i++) {
+            double mid = (inside + outside) / 2;
+            if (base.weightAtDistance(mid) >= threshold) {
+                inside = mid;
+            } else {
+                outside = mid;
+            }
+        }
+        return new CutoffWeightingFunc(base, inside);
+    }
+
+    /**
+     * Calculates the weight of two points at the given distance from each other: the weight of the base function
+     * within the radius, and 0 beyond it.
+     *
+     * @param distance the non-negative Euclidean distance between the points
+     * @return the calculated weight as a float
+     */
+    @Override
+    public float weightAtDistance(double distance) {
+        return distance <= radius ? base.weightAtDistance(distance) : 0;
+    }
+
+    /**
+     *
+     * @return the distance beyond which the weight is 0
+     */
+    @Override
+    public double getSupportRadius() {
+        return radius;
+    }
+
+    /**
+     *
+     * @return the weighting function calculating the weights within the radius
+     */
+    public RadialWeightingFunc getBase() {
+        return base;
+    }
+
+    /**
+     * Two cutoff weighting functions are equal when they cut equal base functions off at the same radius.
+     *
+     * @param o the object to compare to
+     * @return true if the object is a com.example.holeFilling.CutoffWeightingFunc with an equal base function and the
+     *         same radius
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || o.getClass() != getClass()) {
+            return false;
+        }
+        CutoffWeightingFunc other = (CutoffWeightingFunc) o;
+        return Double.compare(radius, other.radius) == 0 && base.equals(other.base);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * base.hashCode() + Double.hashCode(radius);
+    }
+}
@@ -2,12 +2,12 @@ package com.example.holeFilling;
 
 /**
  * This class defines a defaulted weighting function for calculating the weight between two points. It implements
- * the interface {@link WeightingFunc} with its own implementation, which is based on calculating the Euclidean distance
- * between the points.
+ * the interface {@link RadialWeightingFunc} with its own implementation, which is based on calculating the Euclidean
+ * distance between the points.
  * The distance will influence on how much a neighboring pixel contributes to the value of a pixel being processed.
  */
 
-public class DefaultWeightingFunc implements WeightingFunc {
+public class DefaultWeightingFunc implements RadialWeightingFunc {
     private final double epsilon;
     private final int z;
 
@@ -24,6 +24,38 @@ public class DefaultWeightingFunc implements WeightingFunc {
         this.z = 3;
     }
 
+    /**
+     * Initializes a com.example.holeFilling.DefaultWeightingFunc with the given parameters, calculating the weight
+     * 1/(distance^z + epsilon).
+     *
+     * @param epsilon a small positive value, preventing division by zero
+     * @param z the non-negative power of the distance
+     * @throws IllegalArgumentException if epsilon is not positive or z is negative
+     */
+    public DefaultWeightingFunc(double epsilon, int z) {
+        if (!(epsilon > 0) || z < 0) {
+            throw new IllegalArgumentException("Invalid weighting parameters: epsilon=" + epsilon + ", z=" + z);
+        }
+        this.epsilon = epsilon;
+        this.z = z;
+    }
+
+    /**
+     *
+     * @return The small positive value added to the powered distance, preventing division by zero
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     *
+     * @return The power of the distance
+     */
+    public int getZ() {
+        return z;
+    }
+
     /**
      * Calculates the weight between two points, based on the Euclidean distance between them.
      * The distance will influence on how much a neighboring pixel contributes to the value of a pixel being processed.
@@ -34,10 +66,61 @@ public class DefaultWeightingFunc implements WeightingFunc {
      */
     @Override
     public float calculateWeight(Point u, Point v) {
-        float dx = u.getX() - v.getX(); // Difference in x
-        float dy = u.getY() - v.getY(); // Difference in y
+        return calculateWeight(u.getX(), u.getY(), v.getX(), v.getY());
+    }
+
+    /**
+     * Calculates the weight between two pixels given by their coordinates, based on the Euclidean distance between
+     * them, without allocating points.
+     *
+     * @param ux the X coordinate of the first pixel, typically a hole pixel that needs its value computed
+     * @param uy the Y coordinate of the first pixel
+     * @param vx the X coordinate of the second pixel, typically a boundary pixel
+     * @param vy the Y coordinate of the second pixel
+     * @return the calculated weight as a float, representing the influence of pixel v on pixel u
+     */
+    @Override
+    public float calculateWeight(int ux, int uy, int vx, int vy) {
+        float dx = ux - vx; // Difference in x
+        float dy = uy - vy; // Difference in y
         float distance = (float) Math.sqrt(dx * dx + dy * dy); // Euclidean distance
+        return weightAtDistance(distance);
+    }
+
+    /**
+     * Calculates the weight of two points at the given distance from each other, 1/(distance^z + epsilon).
+     *
+     * @param distance the non-negative Euclidean distance between the points
+     * @return the calculated weight as a float
+     */
+    @Override
+    public float weightAtDistance(double distance) {
         float distPowerZ = (float) Math.pow(distance, this.z);
         return (float)(1/(distPowerZ+this.epsilon));
     }
+
+    /**
+     * Two default weighting functions are equal when they have the same parameters, so that they calculate the same
+     * weights. This lets caches keyed by the weighting function, such as {@link FillPlanCache}, share entries between
+     * separately created instances.
+     *
+     * @param o the object to compare to
+     * @return true if the object is a com.example.holeFilling.DefaultWeightingFunc with the same epsilon and z
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || o.getClass() != getClass()) {
+            return false;
+        }
+        DefaultWeightingFunc other = (DefaultWeightingFunc) o;
+        return Double.compare(epsilon, other.epsilon) == 0 && z == other.z;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(epsilon) + z;
+    }
 }
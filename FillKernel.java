@@ -0,0 +1,200 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * Computes the new value of a single hole pixel from a snapshot of the boundary pixels.
+ * The value of a hole pixel depends only on the read-only boundary values, so a kernel may be called concurrently for
+ * different hole pixels.
+ */
+interface FillKernel {
+
+    /**
+     * Computes the numerator and the denominator of the weighted average of the boundary values separately, so that
+     * the sums over several sets of boundary pixels can be combined.
+     * @param ux The X coordinate of the hole pixel
+     * @param uy The Y coordinate of the hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     * @param sums Receives the sum of the weighted boundary values in sums[0] and the sum of the weights in sums[1]
+     */
+    void weightedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums);
+
+    /**
+     * Computes the weighted average of the boundary values, using the weights between the hole pixel and each of the
+     * boundary pixels.
+     * @param ux The X coordinate of the hole pixel
+     * @param uy The Y coordinate of the hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     * @return The new "I" value of the hole pixel
+     */
+    default float fillValue(int ux, int uy, BoundarySnapshot boundary) {
+        return fillValue(ux, uy, boundary, new float[2]);
+    }
+
+    /**
+     * Computes the weighted average of the boundary values like {@link #fillValue(int, int, BoundarySnapshot)},
+     * without allocating, so that filling a range of hole pixels allocates nothing per pixel.
+     * @param ux The X coordinate of the hole pixel
+     * @param uy The Y coordinate of the hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     * @param sums Scratch space for the weighted sums, of at least 2 elements
+     * @return The new "I" value of the hole pixel
+     */
+    default float fillValue(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        weightedSums(ux, uy, boundary, sums);
+        return sums[0] / sums[1];
+    }
+
+    /**
+     * Computes the weighted averages of every channel of the boundary values, calculating the weight between the hole
+     * pixel and each boundary pixel once for all the channels.
+     * @param ux The X coordinate of the hole pixel
+     * @param uy The Y coordinate of the hole pixel
+     * @param boundary A snapshot of the boundary pixels, with the values of every channel
+     * @param values Receives the new value of every channel of the hole pixel
+     */
+    void fillValues(int ux, int uy, BoundarySnapshot boundary, float[] values);
+
+    /**
+     * Returns the kernel used to fill holes with the given weighting function.
+     * {@link DefaultWeightingFunc} gets a specialized kernel, vectorized when the jdk.incubator.vector module is
+     * available (run with {@code --add-modules jdk.incubator.vector}) and scalar otherwise. A radial weighting function
+     * with a finite support radius gets a {@link LocalFillKernel}, which only visits the nearby boundary pixels; hole
+     * pixels out of reach of every boundary pixel of a {@link CutoffWeightingFunc} are filled with its base function.
+     * Any other weighting function, including subclasses of {@link DefaultWeightingFunc}, is called through the
+     * interface for every pair of pixels.
+     * The sums are accumulated in float, see {@link #forWeightingFunc(WeightingFunc, Accumulation)}.
+     * @param W The weighting function
+     * @return A kernel computing the fill values with the weighting function
+     */
+    static FillKernel forWeightingFunc(WeightingFunc W) {
+        return forWeightingFunc(W, Accumulation.FLOAT);
+    }
+
+    /**
+     * Returns the kernel used to fill holes with the given weighting function, like
+     * {@link #forWeightingFunc(WeightingFunc)}, accumulating the weighted sums of {@link #weightedSums} and
+     * {@link #fillValue} with the given precision. The sums of several channels in {@link #fillValues} are always
+     * accumulated in float.
+     * @param W The weighting function
+     * @param accumulation The precision of the weighted sums
+     * @return A kernel computing the fill values with the weighting function
+     */
+    static FillKernel forWeightingFunc(WeightingFunc W, Accumulation accumulation) {
+        if (W instanceof RadialWeightingFunc && W.getSupportRadius() <= LocalFillKernel.MAX_RADIUS) {
+            FillKernel fallback = W instanceof CutoffWeightingFunc
+                    ? forWeightingFunc(((CutoffWeightingFunc) W).getBase(), accumulation)
+                    : null;
+            return new LocalFillKernel((RadialWeightingFunc) W, fallback, accumulation);
+        }
+        if (W.getClass() == DefaultWeightingFunc.class) {
+            DefaultWeightingFunc defaultW = (DefaultWeightingFunc) W;
+            if (VectorSupport.AVAILABLE) {
+                return new VectorDefaultFillKernel(defaultW, accumulation);
+            }
+            return new ScalarDefaultFillKernel(defaultW, accumulation);
+        }
+        return new Generic(W, accumulation);
+    }
+
+    /**
+     * The kernel of any weighting function, calling it through the interface for every pair of pixels.
+     */
+    final class Generic implements FillKernel {
+        private final WeightingFunc W;
+        private final Accumulation accumulation;
+
+        Generic(WeightingFunc W, Accumulation accumulation) {
+            this.W = W;
+            this.accumulation = accumulation;
+        }
+
+        @Override
+        public void weightedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+            int[] bx = boundary.x;
+            int[] by = boundary.y;
+            float[] bValue = boundary.value;
+            if (accumulation == Accumulation.DOUBLE) {
+                double numerator = 0;
+                double dominator = 0;
+                for (int i = 0; i < bValue.length; i++) {
+                    float weightRes = W.calculateWeight(ux, uy, bx[i], by[i], bValue[i]);
+                    numerator += (double) weightRes * bValue[i];
+                    dominator += weightRes;
+                }
+                sums[0] = (float) numerator;
+                sums[1] = (float) dominator;
+            } else if (accumulation == Accumulation.KAHAN) {
+                float numerator = 0;
+                float numeratorError = 0;
+                float dominator = 0;
+                float dominatorError = 0;
+                for (int i = 0; i < bValue.length; i++) {
+                    float weightRes = W.calculateWeight(ux, uy, bx[i], by[i], bValue[i]);
+                    float term = weightRes * bValue[i];
+                    float sum = numerator + term;
+                    numeratorError += CompensatedSum.error(numerator, term, sum);
+                    numerator = sum;
+                    sum = dominator + weightRes;
+                    dominatorError += CompensatedSum.error(dominator, weightRes, sum);
+                    dominator = sum;
+                }
+                sums[0] = numerator + numeratorError;
+                sums[1] = dominator + dominatorError;
+            } else {
+                float numerator = 0;
+                float dominator = 0;
+                for (int i = 0; i < bValue.length; i++) {
+                    float weightRes = W.calculateWeight(ux, uy, bx[i], by[i], bValue[i]);
+                    numerator += weightRes * bValue[i];
+                    dominator += weightRes;
+                }
+                sums[0] = numerator;
+                sums[1] = dominator;
+            }
+        }
+
+        @Override
+        public void fillValues(int ux, int uy, BoundarySnapshot boundary, float[] values) {
+            int[] bx = boundary.x;
+            int[] by = boundary.y;
+            float[][] channels = boundary.channels;
+            Arrays.fill(values, 0);
+            float dominator = 0;
+            for (int i = 0; i < bx.length; i++) {
+                float weightRes = W.calculateWeight(ux, uy, bx[i], by[i], channels[0][i]);
+                for (int c = 0; c < channels.length; c++) {
+                    values[c] += weightRes * channels[c][i];
+                }
+                dominator += weightRes;
+            }
+            for (int c = 0; c < channels.length; c++) {
+                values[c] /= dominator;
+            }
+        }
+    }
+
+    /**
+     * Checks once whether the vectorized kernels can be used. They can be turned off by setting the system property
+     * {@code holeFilling.vector} to false.
+     */
+    final class VectorSupport {
+        static final boolean AVAILABLE = isAvailable();
+
+        private VectorSupport() {
+        }
+
+        private static boolean isAvailable() {
+            if (!Boolean.parseBoolean(System.getProperty("holeFilling.vector", "true"))
+                    || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                return false;
+            }
+            try {
+                Class.forName("com.example.holeFilling.VectorDefaultFillKernel");
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.holeFilling;
+
+/**
+ * A listener receiving the metrics of the hole filling runs, once every run is reported.
+ * Registering a listener with {@link FillMetrics#addListener(FillListener)} enables the collection of metrics.
+ * Runs processed concurrently, e.g. by a {@link BatchProcessor}, are reported from their own threads, so a listener
+ * may be called concurrently.
+ */
+@FunctionalInterface
+public interface FillListener {
+
+    /**
+     * Receives the metrics of a completed run.
+     * @param metrics The metrics of the run, which the listener shouldn't keep if the run may still be updated
+     */
+    void runCompleted(FillMetrics metrics);
+}
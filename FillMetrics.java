@@ -0,0 +1,354 @@
+package com.example.holeFilling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class holds the metrics of one run of the hole filling pipeline: the time and the bytes allocated in every
+ * stage, from decoding the image and the mask to encoding the filled image, the sizes of the hole (|H|) and of its
+ * boundaries (|B|), and the number of weights evaluated by the fill.
+ * Metrics are only collected while at least one {@link FillListener} is registered with
+ * {@link #addListener(FillListener)}; otherwise {@link ImageProcessor#getMetrics()} is null and the stages measure
+ * nothing. A run is reported to the listeners when its image is saved (see {@link ImageProcessor#saveGrayscaleImage}),
+ * or explicitly with {@link ImageProcessor#reportMetrics()}.
+ * The stages of a run are measured one after the other, so an instance isn't meant to be updated by several threads
+ * at once. The bytes of a stage are those allocated by the thread running it, and by the pool workers running the
+ * {@link HoleFillTask}s it creates.
+ */
+public final class FillMetrics {
+    private static final Logger LOGGER = Logger.getLogger(FillMetrics.class.getName());
+    private static final List<FillListener> LISTENERS = new CopyOnWriteArrayList<>();
+    // checked before any metrics are collected, so that disabled metrics cost a single volatile read per run
+    private static volatile boolean enabled;
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    // the workers' allocations of the stage the current thread is measuring, picked up by the tasks it creates
+    private static final ThreadLocal<WorkerAllocations> MEASURED = new ThreadLocal<>();
+
+    /**
+     * The stages of a run, in the order they run in.
+     */
+    public enum Stage {
+        /** Reading and decoding the image and the mask files */
+        DECODE,
+        /** Converting the decoded image and mask to a matrix with the hole pixels marked */
+        MASK_SCAN,
+        /** Finding the hole (H) pixels */
+        FIND_H,
+        /** Finding the boundary (B) pixels */
+        FIND_B,
+        /** Filling the hole pixels */
+        FILL,
+        /** Converting the filled matrix back to an image and encoding it */
+        ENCODE
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final long startTime = System.currentTimeMillis();
+    private final long[] stageNanos = new long[STAGES.length];
+    private final long[] stageBytes = new long[STAGES.length];
+    private final long[] startNanos = new long[STAGES.length];
+    private final long[] startBytes = new long[STAGES.length];
+    private final WorkerAllocations[] workerAllocations = new WorkerAllocations[STAGES.length];
+    // the workers' allocations the current thread was measuring before every stage began
+    private final WorkerAllocations[] enclosingAllocations = new WorkerAllocations[STAGES.length];
+    private int holePixels;
+    private int boundaryPixels;
+    private long weightEvaluations;
+
+    private FillMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers a listener receiving the metrics of every run reported from now on, and enables the collection of
+     * metrics for the runs started from now on.
+     * @param listener The listener
+     */
+    public static void addListener(FillListener listener) {
+        LISTENERS.add(listener);
+        enabled = true;
+    }
+
+    /**
+     * Unregisters a listener. Metrics are no longer collected for new runs once no listener is left.
+     * @param listener The listener
+     */
+    public static void removeListener(FillListener listener) {
+        LISTENERS.remove(listener);
+        enabled = !LISTENERS.isEmpty();
+    }
+
+    /**
+     *
+     * @return true if metrics are collected for the runs started now
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the metrics of a new run. Runs are only started by the entry points of the pipeline - the processors
+     * loading files, the tiled filler, the batch processor and the server - and passed on to the parts they drive.
+     * @return The metrics of the run, or null if metrics are disabled
+     */
+    static FillMetrics startRun() {
+        return enabled ? new FillMetrics() : null;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread. Reading the counters of all the threads instead would
+     * cost a walk over every thread of the JVM at every stage, and count the runs processed concurrently in each
+     * other's stages; the pool workers count their own allocations instead, see {@link WorkerAllocations}.
+     * @return The allocated bytes, or 0 if the JVM doesn't count them
+     */
+    static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Marks the start of a stage.
+     * @param stage The stage
+     */
+    void begin(Stage stage) {
+        if (THREADS != null) {
+            WorkerAllocations allocations = new WorkerAllocations();
+            workerAllocations[stage.ordinal()] = allocations;
+            enclosingAllocations[stage.ordinal()] = MEASURED.get();
+            MEASURED.set(allocations);
+        }
+        startBytes[stage.ordinal()] = allocatedBytes();
+        startNanos[stage.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a stage started with {@link #begin(Stage)}, adding its time and allocated bytes to the stage.
+     * @param stage The stage
+     */
+    void end(Stage stage) {
+        long nanos = System.nanoTime() - startNanos[stage.ordinal()];
+        long bytes = allocatedBytes() - startBytes[stage.ordinal()];
+        WorkerAllocations allocations = workerAllocations[stage.ordinal()];
+        if (allocations != null) {
+            bytes += allocations.bytes.sum();
+            workerAllocations[stage.ordinal()] = null;
+            MEASURED.set(enclosingAllocations[stage.ordinal()]);
+            enclosingAllocations[stage.ordinal()] = null;
+        }
+        add(stage, nanos, bytes);
+    }
+
+    /**
+     * The bytes allocated by the pool workers in a stage. The tasks created by the thread measuring a stage pick up
+     * its allocations with {@link #current()}, and add to them what every chunk they fill on another thread allocates;
+     * the chunks the measuring thread fills itself, e.g. while it waits for the pool, are already in its own counter.
+     */
+    static final class WorkerAllocations {
+        private final Thread owner = Thread.currentThread();
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * Returns the allocations of the stage the current thread is measuring.
+         * @return The allocations, or null if the current thread isn't measuring a stage
+         */
+        static WorkerAllocations current() {
+            return MEASURED.get();
+        }
+
+        /**
+         * Fills a chunk of a task, adding what it allocates unless it runs on the thread measuring the stage.
+         * @param fill The fill of the task
+         * @param from The first position to fill, inclusive
+         * @param to The last position to fill, exclusive
+         */
+        void fill(HoleFillTask.RangeFill fill, int from, int to) {
+            if (Thread.currentThread() == owner) {
+                fill.fill(from, to);
+                return;
+            }
+            long start = allocatedBytes();
+            try {
+                fill.fill(from, to);
+            } finally {
+                bytes.add(allocatedBytes() - start);
+            }
+        }
+    }
+
+    /**
+     * Adds the time and the allocated bytes of a stage measured by the caller.
+     * @param stage The stage
+     * @param nanos The time spent in the stage
+     * @param bytes The bytes allocated in the stage
+     */
+    void add(Stage stage, long nanos, long bytes) {
+        stageNanos[stage.ordinal()] += nanos;
+        stageBytes[stage.ordinal()] += Math.max(0, bytes);
+    }
+
+    void setHolePixels(int holePixels) {
+        this.holePixels = holePixels;
+    }
+
+    void setBoundaryPixels(int boundaryPixels) {
+        this.boundaryPixels = boundaryPixels;
+    }
+
+    void addWeightEvaluations(long weightEvaluations) {
+        this.weightEvaluations += weightEvaluations;
+    }
+
+    /**
+     * Reports the run to every registered listener. A listener that throws doesn't prevent the others from being
+     * called, nor fails the run.
+     */
+    void report() {
+        for (FillListener listener : LISTENERS) {
+            try {
+                listener.runCompleted(this);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Fill listener failed", e);
+            }
+        }
+    }
+
+    /**
+     *
+     * @return The time the run was started at, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     *
+     * @param stage The stage
+     * @return The time spent in the stage, in nanoseconds, or 0 if the stage didn't run
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Returns the bytes allocated during a stage by the thread running it. A fill running on a pool only counts the
+     * allocations of the calling thread, not those of the pool's threads.
+     * @param stage The stage
+     * @return The bytes allocated during the stage, or 0 if the stage didn't run
+     */
+    public long getStageAllocatedBytes(Stage stage) {
+        return stageBytes[stage.ordinal()];
+    }
+
+    /**
+     *
+     * @return The time spent in all the stages, in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     *
+     * @return The bytes allocated during all the stages
+     */
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (long bytes : stageBytes) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     *
+     * @return The number of hole pixels, |H|
+     */
+    public int getHolePixels() {
+        return holePixels;
+    }
+
+    /**
+     *
+     * @return The number of boundary pixels, |B|
+     */
+    public int getBoundaryPixels() {
+        return boundaryPixels;
+    }
+
+    /**
+     * Returns the number of weights evaluated by the fill, one per pair of a hole pixel and a boundary pixel it is
+     * filled from. A weighting function with a cutoff radius (see {@link CutoffWeightingFunc}) skips the pairs beyond
+     * its radius, but they are still counted. The approximate fillers count a pseudo-pixel standing for a cluster of
+     * boundary pixels as a single evaluation.
+     * @return The number of weights evaluated
+     */
+    public long getWeightEvaluations() {
+        return weightEvaluations;
+    }
+
+    /**
+     *
+     * @return The number of weights evaluated per second of the fill stage, or 0 if the fill didn't run
+     */
+    public double getPairsPerSecond() {
+        long nanos = stageNanos[Stage.FILL.ordinal()];
+        return nanos > 0 ? weightEvaluations * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Formats the metrics as a single line of JSON, with the stages as {@code "<stage>Nanos"} and
+     * {@code "<stage>Bytes"} fields, e.g. {@code "findHNanos"}.
+     * @return The JSON object, without a line separator
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"startTime\":").append(startTime)
+                .append(",\"holePixels\":").append(holePixels)
+                .append(",\"boundaryPixels\":").append(boundaryPixels)
+                .append(",\"weightEvaluations\":").append(weightEvaluations)
+                .append(",\"pairsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getPairsPerSecond()))
+                .append(",\"totalNanos\":").append(getTotalNanos())
+                .append(",\"allocatedBytes\":").append(getAllocatedBytes());
+        for (Stage stage : STAGES) {
+            String name = fieldName(stage);
+            json.append(",\"").append(name).append("Nanos\":").append(stageNanos[stage.ordinal()])
+                    .append(",\"").append(name).append("Bytes\":").append(stageBytes[stage.ordinal()]);
+        }
+        return json.append('}').toString();
+    }
+
+    // MASK_SCAN -> maskScan
+    private static String fieldName(Stage stage) {
+        String[] words = stage.name().toLowerCase(Locale.ROOT).split("_");
+        StringBuilder name = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) {
+            name.append(Character.toUpperCase(words[i].charAt(0))).append(words[i], 1, words[i].length());
+        }
+        return name.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
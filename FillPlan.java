@@ -0,0 +1,504 @@
+package com.example.holeFilling;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A fill plan precomputes everything about filling a hole that depends only on its geometry: the hole (H) and
+ * boundary (B) pixels of a mask and the normalized weight of every boundary pixel for every hole pixel.
+ * The value of a hole pixel u is sum(w(u,v) * I(v)) / sum(w(u,v)), so once the weights are divided by their sum,
+ * filling a frame is a sparse matrix-vector product of the plan's weights and the frame's boundary values, without
+ * detecting the hole or calculating a single weight. Since the weights are calculated before any frame is known, with
+ * {@link WeightingFunc#calculateWeight(int, int, int, int)}, a weighting function reading the pixel values can't be
+ * planned.
+ * This pays off when many frames share a mask, e.g. a sensor's dead-pixel map or a fixed overlay applied to every frame
+ * of a video; {@link FillPlanCache} keeps the plans of recently used masks.
+ * By default every hole pixel is weighted against all the boundary pixels of the mask, like the default fill of
+ * {@link ImageHoleFiller}. A plan can instead fill every connected component of the hole only from its own boundary
+ * pixels, like {@link ImageHoleFiller#setGlobalBoundary(boolean)} set to false, which keeps the plan of a mask of many
+ * small holes small.
+ * The weights are stored in compressed sparse rows of primitive arrays, one row per hole pixel, in row-major order.
+ * They can be pruned to the largest k weights of every hole pixel, which bounds the plan's size to k weights per hole
+ * pixel, and quantized to 16 bits. Both options trade accuracy for memory and speed, and the remaining weights of a
+ * hole pixel are normalized again so that they still sum to 1.
+ */
+public final class FillPlan {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final int connectivityType;
+    private final int maxWeightsPerPixel;
+    private final boolean globalBoundary;
+    // the hole pixels, one row of weights each, and the distinct boundary pixels the rows refer to, in row-major order
+    private final int[] hole;
+    private final int[] boundary;
+    // row r holds the entries [rowStart[r], rowStart[r+1]) of boundarySlot and of the weights
+    private final int[] rowStart;
+    private final int[] boundarySlot;
+    // the normalized weights, or null when the plan is quantized
+    private final float[] weight;
+    // the quantized weights of a row are relative to its largest weight, and rowScale normalizes them
+    private final char[] quantizedWeight;
+    private final float[] rowScale;
+
+    private FillPlan(int width, int height, int stride, int connectivityType, int maxWeightsPerPixel,
+                     boolean globalBoundary, int[] hole, int[] boundary, int[] rowStart, int[] boundarySlot,
+                     float[] weight, char[] quantizedWeight, float[] rowScale) {
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.connectivityType = connectivityType;
+        this.maxWeightsPerPixel = maxWeightsPerPixel;
+        this.globalBoundary = globalBoundary;
+        this.hole = hole;
+        this.boundary = boundary;
+        this.rowStart = rowStart;
+        this.boundarySlot = boundarySlot;
+        this.weight = weight;
+        this.quantizedWeight = quantizedWeight;
+        this.rowScale = rowScale;
+    }
+
+    /**
+     * Compiles the plan filling the hole of the given mask from all its boundary pixels, with all the weights of every
+     * hole pixel, unquantized.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @return The fill plan
+     */
+    public static FillPlan compile(BufferedImage mask, int connectivityType, WeightingFunc W) {
+        return compile(mask, connectivityType, W, 0, false);
+    }
+
+    /**
+     * Compiles the plan filling the hole of the given mask from all its boundary pixels.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @return The fill plan
+     * @throws IllegalArgumentException if maxWeightsPerPixel is negative, or the plan has more weights than an array
+     *                                  can hold
+     */
+    public static FillPlan compile(BufferedImage mask, int connectivityType, WeightingFunc W, int maxWeightsPerPixel,
+                                   boolean quantized) {
+        return compile(mask, connectivityType, W, maxWeightsPerPixel, quantized, true);
+    }
+
+    /**
+     * Compiles the plan filling the hole of the given mask.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @param globalBoundary true to fill every hole pixel from all the boundary pixels, false to fill every connected
+     *                       component of the hole only from its own boundary pixels
+     * @return The fill plan
+     * @throws IllegalArgumentException if maxWeightsPerPixel is negative, or the plan has more weights than an array
+     *                                  can hold
+     */
+    public static FillPlan compile(BufferedImage mask, int connectivityType, WeightingFunc W, int maxWeightsPerPixel,
+                                   boolean quantized, boolean globalBoundary) {
+        return compile(new ImageProcessor(RasterIO.holeMatrix(mask), connectivityType), W, maxWeightsPerPixel,
+                quantized, globalBoundary);
+    }
+
+    /**
+     * Compiles the plan filling the hole detected by the given processor from all its boundary pixels.
+     * @param img The processor holding the hole and the boundaries
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @return The fill plan
+     * @throws IllegalArgumentException if maxWeightsPerPixel is negative, or the plan has more weights than an array
+     *                                  can hold
+     */
+    public static FillPlan compile(ImageProcessor img, WeightingFunc W, int maxWeightsPerPixel, boolean quantized) {
+        return compile(img, W, maxWeightsPerPixel, quantized, true);
+    }
+
+    /**
+     * Compiles the plan filling the hole detected by the given processor. The values of the processor's image are not
+     * used, only which pixels are hole pixels.
+     * @param img The processor holding the hole and the boundaries
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @param globalBoundary true to fill every hole pixel from all the boundary pixels, false to fill every connected
+     *                       component of the hole only from its own boundary pixels
+     * @return The fill plan
+     * @throws IllegalArgumentException if maxWeightsPerPixel is negative, or the plan has more weights than an array
+     *                                  can hold
+     */
+    public static FillPlan compile(ImageProcessor img, WeightingFunc W, int maxWeightsPerPixel, boolean quantized,
+                                   boolean globalBoundary) {
+        if (maxWeightsPerPixel < 0) {
+            throw new IllegalArgumentException("The number of weights per pixel must not be negative: "
+                    + maxWeightsPerPixel);
+        }
+        if (W == null) {
+            W = new DefaultWeightingFunc();
+        }
+        ImageMatrix image = img.getImage();
+        int[] hole = img.getHoleIndices();
+        int[] boundary = img.getBoundaryIndices();
+        // the parts of the hole filled from the same boundary pixels: the whole hole, or every component
+        HoleComponent[] components = globalBoundary ? null : img.getComponents();
+        int[][] partHoles = new int[globalBoundary ? 1 : components.length][];
+        int[][] partBoundaries = new int[partHoles.length][];
+        for (int i = 0; i < partHoles.length; i++) {
+            partHoles[i] = globalBoundary ? hole : components[i].getHoleIndices();
+            partBoundaries[i] = globalBoundary ? boundary : components[i].getBoundaryIndices();
+        }
+
+        // the rows are laid out in the order of H, so first find the length of every row
+        int[] rowStart = new int[hole.length + 1];
+        for (int i = 0; i < partHoles.length; i++) {
+            int rowLength = rowLength(partBoundaries[i].length, maxWeightsPerPixel);
+            for (int u : partHoles[i]) {
+                rowStart[Arrays.binarySearch(hole, u) + 1] = rowLength;
+            }
+        }
+        long entries = 0;
+        for (int r = 0; r < hole.length; r++) {
+            entries += rowStart[r + 1];
+            if (entries > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("The fill plan has too many weights; limit the weights per pixel");
+            }
+            rowStart[r + 1] = (int) entries;
+        }
+        int[] boundarySlot = new int[(int) entries];
+        float[] weight = quantized ? null : new float[(int) entries];
+        char[] quantizedWeight = quantized ? new char[(int) entries] : null;
+        float[] rowScale = quantized ? new float[hole.length] : null;
+
+        WeightingFunc weighting = W;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (int part = 0; part < partHoles.length; part++) {
+            int[] partHole = partHoles[part];
+            int[] partBoundary = partBoundaries[part];
+            int[] slots = new int[partBoundary.length];
+            for (int j = 0; j < slots.length; j++) {
+                slots[j] = Arrays.binarySearch(boundary, partBoundary[j]);
+            }
+            BoundarySnapshot snapshot = BoundarySnapshot.of(image, partBoundary);
+            int chunkSize = HoleFillTask.chunkSizeFor(partHole.length, pool.getParallelism());
+            pool.invoke(new HoleFillTask(0, partHole.length, chunkSize, (from, to) -> {
+                RowBuilder builder = new RowBuilder(snapshot.size(), maxWeightsPerPixel);
+                for (int i = from; i < to; i++) {
+                    int u = partHole[i];
+                    int row = Arrays.binarySearch(hole, u);
+                    builder.build(image.xOf(u), image.yOf(u), snapshot, slots, weighting);
+                    builder.store(rowStart[row], boundarySlot, weight, quantizedWeight);
+                    if (rowScale != null) {
+                        rowScale[row] = builder.quantizedScale;
+                    }
+                }
+            }));
+        }
+        return new FillPlan(image.getWidth(), image.getHeight(), image.getStride(), img.getConnectivityType(),
+                maxWeightsPerPixel, globalBoundary, hole, boundary, rowStart, boundarySlot, weight, quantizedWeight,
+                rowScale);
+    }
+
+    private static int rowLength(int boundaries, int maxWeightsPerPixel) {
+        return maxWeightsPerPixel == 0 ? boundaries : Math.min(boundaries, maxWeightsPerPixel);
+    }
+
+    /**
+     * Computes the row of weights of a single hole pixel, keeping the largest ones when the row is pruned.
+     * Every thread compiling rows uses its own builder.
+     */
+    private static final class RowBuilder {
+        private final int capacity;
+        // a min-heap of the largest weights when pruning, otherwise all the weights in the boundary's order
+        private final float[] rowWeight;
+        private final int[] rowSlot;
+        private final long[] sortKeys;
+        private int size;
+        float quantizedScale;
+
+        RowBuilder(int boundaries, int maxWeightsPerPixel) {
+            this.capacity = rowLength(boundaries, maxWeightsPerPixel);
+            this.rowWeight = new float[capacity];
+            this.rowSlot = new int[capacity];
+            this.sortKeys = capacity < boundaries ? new long[capacity] : null;
+        }
+
+        void build(int ux, int uy, BoundarySnapshot boundary, int[] slots, WeightingFunc W) {
+            size = 0;
+            int n = boundary.size();
+            for (int j = 0; j < n; j++) {
+                float w = W.calculateWeight(ux, uy, boundary.x[j], boundary.y[j]);
+                if (sortKeys == null) {
+                    rowWeight[size] = w;
+                    rowSlot[size++] = slots[j];
+                } else if (size < capacity) {
+                    rowWeight[size] = w;
+                    rowSlot[size] = slots[j];
+                    siftUp(size++);
+                } else if (w > rowWeight[0]) {
+                    rowWeight[0] = w;
+                    rowSlot[0] = slots[j];
+                    siftDown(0);
+                }
+            }
+            if (sortKeys != null) {
+                // visit the kept boundary pixels in memory order when the plan is applied
+                for (int i = 0; i < size; i++) {
+                    sortKeys[i] = ((long) rowSlot[i] << 32) | (Float.floatToRawIntBits(rowWeight[i]) & 0xffffffffL);
+                }
+                Arrays.sort(sortKeys, 0, size);
+                for (int i = 0; i < size; i++) {
+                    rowSlot[i] = (int) (sortKeys[i] >>> 32);
+                    rowWeight[i] = Float.intBitsToFloat((int) sortKeys[i]);
+                }
+            }
+        }
+
+        void store(int offset, int[] boundarySlot, float[] weight, char[] quantizedWeight) {
+            double sum = 0;
+            float max = 0;
+            for (int i = 0; i < size; i++) {
+                sum += rowWeight[i];
+                max = Math.max(max, rowWeight[i]);
+            }
+            System.arraycopy(rowSlot, 0, boundarySlot, offset, size);
+            if (weight != null) {
+                for (int i = 0; i < size; i++) {
+                    weight[offset + i] = (float) (rowWeight[i] / sum);
+                }
+                return;
+            }
+            long quantizedSum = 0;
+            for (int i = 0; i < size; i++) {
+                int q = max == 0 ? 0 : (int) Math.round(rowWeight[i] / (double) max * Character.MAX_VALUE);
+                quantizedWeight[offset + i] = (char) q;
+                quantizedSum += q;
+            }
+            quantizedScale = quantizedSum == 0 ? 0 : (float) (1.0 / quantizedSum);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (rowWeight[parent] <= rowWeight[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && rowWeight[left] < rowWeight[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && rowWeight[right] < rowWeight[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            float w = rowWeight[i];
+            rowWeight[i] = rowWeight[j];
+            rowWeight[j] = w;
+            int s = rowSlot[i];
+            rowSlot[i] = rowSlot[j];
+            rowSlot[j] = s;
+        }
+    }
+
+    /**
+     * Fills the hole pixels of a frame in place. The frame's values at the hole pixels are ignored and overwritten.
+     * @param frame The frame, of the same size as the plan's mask
+     * @throws IllegalArgumentException if the frame is not of the same size as the mask
+     */
+    public void apply(ImageMatrix frame) {
+        float[] values = boundaryValues(frame);
+        applyRows(frame, values, 0, hole.length);
+    }
+
+    /**
+     * Fills the hole pixels of a frame in place like {@link #apply(ImageMatrix)}, splitting the hole pixels between the
+     * threads of the given pool. Every hole pixel is computed from the same boundary values, so the result is identical
+     * to the sequential fill.
+     * @param frame The frame, of the same size as the plan's mask
+     * @param pool The pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     * @throws IllegalArgumentException if the frame is not of the same size as the mask
+     */
+    public void apply(ImageMatrix frame, ForkJoinPool pool) {
+        float[] values = boundaryValues(frame);
+        int chunkSize = HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism());
+        pool.invoke(new HoleFillTask(0, hole.length, chunkSize, (from, to) -> applyRows(frame, values, from, to)));
+    }
+
+    /**
+     * Fills the hole of a decoded frame, converting it to grayscale first.
+     * @param frame The frame, of the same size as the plan's mask
+     * @return The filled grayscale frame, of type TYPE_BYTE_GRAY
+     * @throws IllegalArgumentException if the frame is not of the same size as the mask
+     */
+    public BufferedImage apply(BufferedImage frame) {
+        checkSize(frame.getWidth(), frame.getHeight());
+        ImageMatrix matrix = new ImageMatrix(width, height);
+        float[] data = matrix.getData();
+        RasterIO.GrayRows rows = RasterIO.grayRows(frame);
+        int[] gray = new int[width];
+        for (int y = 0; y < height; y++) {
+            rows.read(y, gray);
+            int rowStart = matrix.index(0, y);
+            for (int x = 0; x < width; x++) {
+                data[rowStart + x] = (float) gray[x] / 255;
+            }
+        }
+        apply(matrix);
+        return RasterIO.toGrayImage(matrix);
+    }
+
+    private float[] boundaryValues(ImageMatrix frame) {
+        checkSize(frame.getWidth(), frame.getHeight());
+        // gather the boundary values once, so that the rows read a small dense array instead of the whole frame
+        float[] values = new float[boundary.length];
+        for (int j = 0; j < boundary.length; j++) {
+            values[j] = frame.get(frame.index(boundary[j] % stride, boundary[j] / stride));
+        }
+        return values;
+    }
+
+    private void applyRows(ImageMatrix frame, float[] values, int from, int to) {
+        for (int r = from; r < to; r++) {
+            float sum = 0;
+            int end = rowStart[r + 1];
+            if (weight != null) {
+                for (int e = rowStart[r]; e < end; e++) {
+                    sum += weight[e] * values[boundarySlot[e]];
+                }
+            } else {
+                for (int e = rowStart[r]; e < end; e++) {
+                    sum += quantizedWeight[e] * values[boundarySlot[e]];
+                }
+                sum *= rowScale[r];
+            }
+            frame.set(frame.index(hole[r] % stride, hole[r] / stride), sum);
+        }
+    }
+
+    private void checkSize(int frameWidth, int frameHeight) {
+        if (frameWidth != width || frameHeight != height) {
+            throw new IllegalArgumentException("The frame must be of the same size as the mask: expected " + width
+                    + "x" + height + ", got " + frameWidth + "x" + frameHeight);
+        }
+    }
+
+    /**
+     *
+     * @return The width of the mask in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return The height of the mask in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @return The distance between the beginnings of two consecutive rows in the plan's hole and boundary indices
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     *
+     * @return The type of connectivity (4 or 8) used to detect the boundaries
+     */
+    public int getConnectivityType() {
+        return connectivityType;
+    }
+
+    /**
+     *
+     * @return The number of largest weights kept for every hole pixel, or 0 if all of them are kept
+     */
+    public int getMaxWeightsPerPixel() {
+        return maxWeightsPerPixel;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is filled from all the boundary pixels, false if from those of its component
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if the weights are stored in 16 bits
+     */
+    public boolean isQuantized() {
+        return weight == null;
+    }
+
+    /**
+     * This function returns the indices, in row-major order of an image {@link #getStride()} pixels wide, of the hole
+     * pixels the plan fills.
+     * @return The indices of the hole pixels
+     */
+    public int[] getHoleIndices() {
+        return hole;
+    }
+
+    /**
+     * This function returns the indices, in row-major order of an image {@link #getStride()} pixels wide, of the
+     * boundary pixels the plan reads.
+     * @return The indices of the boundary pixels
+     */
+    public int[] getBoundaryIndices() {
+        return boundary;
+    }
+
+    /**
+     *
+     * @return The number of weights stored in the plan
+     */
+    public int getWeightCount() {
+        return boundarySlot.length;
+    }
+
+    /**
+     * Estimates the memory held by the plan's arrays.
+     * @return The size of the plan in bytes
+     */
+    public long getMemoryBytes() {
+        long bytes = 4L * (hole.length + boundary.length + rowStart.length + boundarySlot.length);
+        if (weight != null) {
+            bytes += 4L * weight.length;
+        } else {
+            bytes += 2L * quantizedWeight.length + 4L * rowScale.length;
+        }
+        // the object headers of the plan and its arrays
+        return bytes + 128;
+    }
+}
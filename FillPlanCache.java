@@ -0,0 +1,246 @@
+package com.example.holeFilling;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A least-recently-used cache of {@link FillPlan}s, keyed by the hole of their mask, the connectivity type, the
+ * weighting function and the plan options, and bounded by the total memory of the cached plans.
+ * A mask is packed into a {@link HoleMask}, a bit per pixel, and looked up by a 64-bit hash of its words; a hit is
+ * confirmed by comparing the words themselves, so two masks with the same hole share a plan even when they are
+ * different images, and a hash collision never returns a wrong plan. The hole and its boundaries are only detected
+ * when the plan is compiled, on a miss. Weighting functions are compared with equals, so a custom weighting function
+ * should implement equals and hashCode if separately created instances are meant to share plans.
+ * The cache is safe to use from several threads. Plans are compiled outside its lock, so a slow compile doesn't block
+ * the lookups of other masks.
+ */
+public class FillPlanCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> plans = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Initializes a new, empty cache.
+     * @param maxBytes The largest total size, in bytes, of the cached plans and of the masks they are looked up by; a
+     *                 plan larger than that is compiled but not cached
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public FillPlanCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The memory limit must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the plan filling the hole of the given mask from all its boundary pixels, with all the weights of every
+     * hole pixel, unquantized, compiling it if it is not cached.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @return The fill plan
+     */
+    public FillPlan get(BufferedImage mask, int connectivityType, WeightingFunc W) {
+        return get(mask, connectivityType, W, 0, false);
+    }
+
+    /**
+     * Returns the plan filling the hole of the given mask from all its boundary pixels, compiling it if it is not
+     * cached.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @return The fill plan
+     * @see FillPlan#compile(BufferedImage, int, WeightingFunc, int, boolean)
+     */
+    public FillPlan get(BufferedImage mask, int connectivityType, WeightingFunc W, int maxWeightsPerPixel,
+                        boolean quantized) {
+        return get(mask, connectivityType, W, maxWeightsPerPixel, quantized, true);
+    }
+
+    /**
+     * Returns the plan filling the hole of the given mask, compiling it if it is not cached.
+     * @param mask The image representing the hole
+     * @param connectivityType The type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W The weighting function, or null to use the default one
+     * @param maxWeightsPerPixel The number of largest weights kept for every hole pixel, or 0 to keep all of them
+     * @param quantized true to store the weights in 16 bits instead of 32
+     * @param globalBoundary true to fill every hole pixel from all the boundary pixels, false to fill every connected
+     *                       component of the hole only from its own boundary pixels
+     * @return The fill plan
+     * @see FillPlan#compile(BufferedImage, int, WeightingFunc, int, boolean, boolean)
+     */
+    public FillPlan get(BufferedImage mask, int connectivityType, WeightingFunc W, int maxWeightsPerPixel,
+                        boolean quantized, boolean globalBoundary) {
+        if (W == null) {
+            W = new DefaultWeightingFunc();
+        }
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        long[] words = RasterIO.holeMask(mask).getWords();
+        Key key = new Key(hash(width, height, words), width, height, connectivityType, W, maxWeightsPerPixel,
+                quantized, globalBoundary);
+        synchronized (this) {
+            Entry entry = plans.get(key);
+            if (entry != null && Arrays.equals(entry.words, words)) {
+                hits++;
+                return entry.plan;
+            }
+            misses++;
+        }
+        HoleMask holes = new HoleMask(width, height, words);
+        ImageMatrix matrix = new ImageMatrix(width, height);
+        for (int p : holes.indices(matrix.getStride())) {
+            matrix.set(p, ImageMatrix.HOLE);
+        }
+        FillPlan plan = FillPlan.compile(new ImageProcessor(matrix, connectivityType), W, maxWeightsPerPixel,
+                quantized, globalBoundary);
+        put(key, new Entry(words, plan));
+        return plan;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        long size = entry.getMemoryBytes();
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = plans.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.getMemoryBytes();
+        }
+        bytes += size;
+        // evict the least recently used plans, which come first in the access order
+        Iterator<Map.Entry<Key, Entry>> eldest = plans.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<Key, Entry> cached = eldest.next();
+            bytes -= cached.getValue().getMemoryBytes();
+            eldest.remove();
+        }
+    }
+
+    private static long hash(int width, int height, long[] words) {
+        long h = ((long) width << 32) ^ height;
+        for (long word : words) {
+            h = mix(h ^ word);
+        }
+        return mix(h ^ words.length);
+    }
+
+    // the finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Removes all the cached plans.
+     */
+    public synchronized void clear() {
+        plans.clear();
+        bytes = 0;
+    }
+
+    /**
+     *
+     * @return The number of cached plans
+     */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /**
+     *
+     * @return The total size, in bytes, of the cached plans and of their masks
+     */
+    public synchronized long getMemoryBytes() {
+        return bytes;
+    }
+
+    /**
+     *
+     * @return The largest total size, in bytes, of the cached plans
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     *
+     * @return The number of lookups that found their plan in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     *
+     * @return The number of lookups that compiled their plan
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // a cached plan, with the words of the mask it was compiled from to confirm the hits
+    private static final class Entry {
+        private final long[] words;
+        private final FillPlan plan;
+
+        Entry(long[] words, FillPlan plan) {
+            this.words = words;
+            this.plan = plan;
+        }
+
+        long getMemoryBytes() {
+            return plan.getMemoryBytes() + 8L * words.length;
+        }
+    }
+
+    private static final class Key {
+        private final long maskHash;
+        private final int width;
+        private final int height;
+        private final int connectivityType;
+        private final WeightingFunc W;
+        private final int maxWeightsPerPixel;
+        private final boolean quantized;
+        private final boolean globalBoundary;
+
+        Key(long maskHash, int width, int height, int connectivityType, WeightingFunc W, int maxWeightsPerPixel,
+            boolean quantized, boolean globalBoundary) {
+            this.maskHash = maskHash;
+            this.width = width;
+            this.height = height;
+            this.connectivityType = connectivityType;
+            this.W = W;
+            this.maxWeightsPerPixel = maxWeightsPerPixel;
+            this.quantized = quantized;
+            this.globalBoundary = globalBoundary;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return maskHash == other.maskHash && width == other.width && height == other.height
+                    && connectivityType == other.connectivityType && maxWeightsPerPixel == other.maxWeightsPerPixel
+                    && quantized == other.quantized && globalBoundary == other.globalBoundary && W.equals(other.W);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maskHash, width, height, connectivityType, W, maxWeightsPerPixel, quantized,
+                    globalBoundary);
+        }
+    }
+}
@@ -0,0 +1,648 @@
+package com.example.holeFilling;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is a resident hole filling service over HTTP, built on the JDK's {@link HttpServer}, so the JVM startup,
+ * the class loading and the compilation of the fill loop are paid once for all the requests instead of once per
+ * image.
+ * {@code POST /fill} fills an image and returns the filled grayscale image as a PNG. The image and the mask are either
+ * sent in the request body, as the length of the image file as a 4-byte big-endian integer followed by the image file
+ * and the mask file, or, once a file root is set with {@link #setFileRoot(Path)}, read from the files given by the
+ * {@code image} and {@code mask} query parameters. With an {@code output} query parameter, the filled image is written
+ * to that file instead, and the response has no body. The paths are resolved against the file root, following their
+ * links, and a path leading out of it is answered with 403 (Forbidden), as is any path without a file root. A request
+ * carrying an {@code Origin} header, which browsers add to the requests of web pages, is answered with 403 too, so that
+ * a page can't make the browser post to the server.
+ * A {@code connectivity} query parameter overrides the connectivity type of the server. {@code GET /health} answers
+ * once the server is warm.
+ * At most {@code threads} requests are filled at a time, each on its own worker, and at most the queue capacity of
+ * requests wait for a worker; the requests beyond them are answered at once with 503 (Service Unavailable). A request
+ * that isn't filled within the timeout, including the time it waited, is answered with 504 (Gateway Timeout), and its
+ * worker is interrupted, which stops the fill before the next hole pixel and frees the worker. A body larger than the
+ * maximum body size is answered with 413 (Content Too Large) without being read. The requests are handled on a fixed
+ * number of threads, enough for the filled and the waiting requests plus one to answer the rejections, so that the
+ * bodies held in memory are bounded too. Before the server accepts requests, every worker fills a synthetic image
+ * repeatedly, so the first requests already run compiled code.
+ * The server listens on the loopback interface unless given another address.
+ */
+public class FillServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(FillServer.class.getName());
+    /** The default number of requests waiting for a worker */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    /** The default time, in milliseconds, a request may take from its arrival to its response */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    /** The default number of fills of the synthetic image run by every worker before the server accepts requests */
+    public static final int DEFAULT_WARMUP_ITERATIONS = 20;
+    /** The default size, in bytes, of the largest request body accepted */
+    public static final long DEFAULT_MAX_BODY_BYTES = 64L << 20;
+    // the side of the synthetic image filled by the warmup
+    private static final int WARMUP_SIZE = 512;
+
+    private final InetSocketAddress address;
+    private final int connectivityType;
+    private final int threads;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+    private long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+    // the directory the paths of the requests are confined to, or null to refuse paths
+    private Path fileRoot;
+    private WeightingFunc W;
+
+    private HttpServer server;
+    private ThreadPoolExecutor workers;
+    private ExecutorService handlers;
+
+    /**
+     * Initializes a new server listening on the given port of the loopback interface.
+     * @param port the port to listen on, or 0 for any free port (see {@link #getPort()})
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param threads the number of requests filled at a time
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public FillServer(int port, int connectivityType, int threads) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), connectivityType, threads);
+    }
+
+    /**
+     * Initializes a new server listening on the given address.
+     * @param address the address to listen on
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param threads the number of requests filled at a time
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public FillServer(InetSocketAddress address, int connectivityType, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.address = address;
+        this.connectivityType = connectivityType;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of requests that may wait for a worker, beyond which requests are rejected.
+     * @param queueCapacity the number of waiting requests, 0 to reject every request that finds no idle worker
+     * @throws IllegalArgumentException if the capacity is negative
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity must not be negative: " + queueCapacity);
+        }
+        checkNotStarted();
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets the time a request may take, from its arrival to its response, including the time it waited for a worker.
+     * @param timeoutMillis the timeout in milliseconds
+     * @throws IllegalArgumentException if the timeout is not positive
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("The timeout must be positive: " + timeoutMillis);
+        }
+        checkNotStarted();
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets the number of fills of a synthetic image run by every worker in {@link #start()} before the server accepts
+     * requests.
+     * @param warmupIterations the number of fills per worker, 0 to skip the warmup
+     * @throws IllegalArgumentException if the number of fills is negative
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setWarmupIterations(int warmupIterations) {
+        if (warmupIterations < 0) {
+            throw new IllegalArgumentException("The number of warmup fills must not be negative: " + warmupIterations);
+        }
+        checkNotStarted();
+        this.warmupIterations = warmupIterations;
+    }
+
+    /**
+     * Sets the size of the largest request body accepted, beyond which requests are answered with 413. The image and
+     * the mask of a request are held in memory until it is filled.
+     * @param maxBodyBytes the size in bytes
+     * @throws IllegalArgumentException if the size is not positive
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setMaxBodyBytes(long maxBodyBytes) {
+        if (maxBodyBytes <= 0) {
+            throw new IllegalArgumentException("The maximum body size must be positive: " + maxBodyBytes);
+        }
+        checkNotStarted();
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Allows the requests to read their image and mask from files and to write their output to a file, within the
+     * given directory. Paths are resolved against it and their links are followed, and the requests whose paths lead
+     * out of it are refused, so a link within the directory doesn't give access to the files it leads to. Without a
+     * file root, which is the default, the image and the mask can only be sent in the request body.
+     * @param fileRoot the directory the paths are confined to, or null to refuse paths
+     * @throws IllegalArgumentException if the file root isn't an existing directory
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setFileRoot(Path fileRoot) {
+        checkNotStarted();
+        if (fileRoot == null) {
+            this.fileRoot = null;
+            return;
+        }
+        if (!Files.isDirectory(fileRoot)) {
+            throw new IllegalArgumentException("The file root is not a directory: " + fileRoot);
+        }
+        try {
+            this.fileRoot = fileRoot.toRealPath();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid file root " + fileRoot + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sets the weighting function the holes are filled with.
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     * @throws IllegalStateException if the server was already started
+     */
+    public void setWeightingFunc(WeightingFunc W) {
+        checkNotStarted();
+        this.W = W;
+    }
+
+    private synchronized void checkNotStarted() {
+        if (server != null) {
+            throw new IllegalStateException("The server was already started");
+        }
+    }
+
+    /**
+     * Warms the fill up, then starts accepting requests. Returns once the server is listening.
+     * @throws IOException if the server can't listen on its address
+     * @throws IllegalStateException if the server was already started
+     */
+    public synchronized void start() throws IOException {
+        checkNotStarted();
+        ImageIO.setUseCache(false);
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                namedThreads("fill-server-worker"));
+        // a handler waits for the fill of its request, so the filled and the waiting requests each hold one, and one
+        // more answers the requests rejected meanwhile
+        handlers = Executors.newFixedThreadPool(threads + queueCapacity + 1, namedThreads("fill-server-http"));
+        try {
+            warmUp();
+            server = HttpServer.create(address, 0);
+        } catch (IOException | RuntimeException e) {
+            workers.shutdownNow();
+            handlers.shutdownNow();
+            throw e;
+        }
+        server.setExecutor(handlers);
+        server.createContext("/fill", this::handleFill);
+        server.createContext("/health", this::handleHealth);
+        server.start();
+        LOGGER.log(Level.INFO, "Fill server listening on {0}", server.getAddress());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Fills a synthetic image with a round hole repeatedly on every worker, through the same decoding, filling and
+     * encoding as the requests, so that they are compiled before the first request arrives.
+     */
+    private void warmUp() throws IOException {
+        if (warmupIterations == 0) {
+            return;
+        }
+        BufferedImage image = new BufferedImage(WARMUP_SIZE, WARMUP_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage mask = new BufferedImage(WARMUP_SIZE, WARMUP_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        int center = WARMUP_SIZE / 2;
+        int radius = WARMUP_SIZE / 16;
+        for (int y = 0; y < WARMUP_SIZE; y++) {
+            for (int x = 0; x < WARMUP_SIZE; x++) {
+                image.getRaster().setSample(x, y, 0, (x + y) & 0xff);
+                boolean hole = (x - center) * (x - center) + (y - center) * (y - center) < radius * radius;
+                mask.getRaster().setSample(x, y, 0, hole ? 0 : 255);
+            }
+        }
+        Request request = new Request(encode(image), encode(mask), connectivityType);
+        long start = System.nanoTime();
+        // the queue may be smaller than the warmup, so each worker runs its fills in turn
+        List<Future<byte[]>> fills = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            fills.add(workers.submit(() -> {
+                for (int j = 0; j < warmupIterations; j++) {
+                    fill(request);
+                }
+                return null;
+            }));
+        }
+        for (Future<byte[]> fill : fills) {
+            await(fill);
+        }
+        LOGGER.log(Level.INFO, "Fill server warmed up with {0} fills on each of {1} workers in {2} ms",
+                new Object[] {warmupIterations, threads, (System.nanoTime() - start) / 1_000_000});
+    }
+
+    private static void await(Future<byte[]> fill) throws IOException {
+        try {
+            fill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while warming up", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Warmup failed", e.getCause());
+        }
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IOException("No png image writer");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the port the server listens on, which is useful when it was created with port 0.
+     * @return the port
+     * @throws IllegalStateException if the server wasn't started
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The server wasn't started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, lets the requests being handled complete for up to a second, and stops the workers.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        workers.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, "ok");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleFill(HttpExchange exchange) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Use POST");
+                return;
+            }
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                respond(exchange, 403, "Requests from web pages are not accepted");
+                return;
+            }
+            Request request;
+            try {
+                request = parse(exchange);
+            } catch (BodyTooLargeException e) {
+                respond(exchange, 413, e.getMessage());
+                return;
+            } catch (ForbiddenPathException e) {
+                respond(exchange, 403, e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            }
+            Future<byte[]> result;
+            try {
+                result = workers.submit(() -> fill(request));
+            } catch (RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Too many requests");
+                return;
+            }
+            byte[] png;
+            try {
+                png = result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                result.cancel(true);
+                // drops the cancelled fill from the queue if it didn't start yet, freeing its place
+                workers.purge();
+                respond(exchange, 504, "The fill took more than " + timeoutMillis + " ms");
+                return;
+            } catch (InterruptedException e) {
+                result.cancel(true);
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "The server is stopping");
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                boolean badInput = cause instanceof IOException || cause instanceof IllegalArgumentException;
+                respond(exchange, badInput ? 400 : 500, String.valueOf(cause.getMessage()));
+                if (!badInput) {
+                    LOGGER.log(Level.WARNING, "Fill failed", cause);
+                }
+                return;
+            }
+            if (png == null) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(png);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads a fill request from the query parameters and the body of an exchange.
+     * @throws BodyTooLargeException if the body is larger than the maximum body size
+     * @throws ForbiddenPathException if the request has a path, and paths are refused or it leads out of the file root
+     * @throws IllegalArgumentException if the request is malformed
+     */
+    private Request parse(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int connectivity = connectivityType;
+        if (query.containsKey("connectivity")) {
+            connectivity = Integer.parseInt(query.get("connectivity"));
+            if (connectivity != 4 && connectivity != 8) {
+                throw new IllegalArgumentException("The connectivity type must be 4 or 8: " + connectivity);
+            }
+        }
+        Request request;
+        if (query.containsKey("image") || query.containsKey("mask")) {
+            if (!query.containsKey("image") || !query.containsKey("mask")) {
+                throw new IllegalArgumentException("Both the image and the mask paths are required");
+            }
+            request = new Request(resolve(query.get("image"), false), resolve(query.get("mask"), false),
+                    connectivity);
+        } else {
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && Long.parseLong(contentLength.trim()) > maxBodyBytes) {
+                throw new BodyTooLargeException(maxBodyBytes);
+            }
+            // a chunked body has no length, so it is read up to one byte past the maximum
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes((int) Math.min(maxBodyBytes + 1, Integer.MAX_VALUE - 8));
+            }
+            if (body.length > maxBodyBytes) {
+                throw new BodyTooLargeException(maxBodyBytes);
+            }
+            if (body.length < 4) {
+                throw new IllegalArgumentException("Expected the length of the image, the image and the mask");
+            }
+            int imageLength = ByteBuffer.wrap(body).getInt();
+            if (imageLength <= 0 || imageLength > body.length - 4) {
+                throw new IllegalArgumentException("Invalid image length: " + imageLength);
+            }
+            request = new Request(body, imageLength, connectivity);
+        }
+        if (query.containsKey("output")) {
+            request.output = resolve(query.get("output"), true);
+        }
+        return request;
+    }
+
+    /**
+     * Resolves a path of a request against the file root, following its links, and refuses the paths leading out of
+     * it. The file to read must exist; the file to write may not, but its directory must.
+     * @return the real path of the file
+     */
+    private String resolve(String path, boolean output) {
+        if (fileRoot == null) {
+            throw new ForbiddenPathException("Reading and writing files is disabled");
+        }
+        Path resolved;
+        try {
+            resolved = fileRoot.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid path: " + path);
+        }
+        if (!resolved.startsWith(fileRoot) || resolved.equals(fileRoot)) {
+            throw new ForbiddenPathException("The path is outside the file root: " + path);
+        }
+        Path real;
+        try {
+            // a link to write through must lead to an existing file, whose real path is checked like any other
+            real = output && !Files.isSymbolicLink(resolved)
+                    ? resolved.getParent().toRealPath().resolve(resolved.getFileName())
+                    : resolved.toRealPath();
+        } catch (IOException e) {
+            if (Files.isSymbolicLink(resolved)) {
+                // writing through a link to no file would create it, wherever it leads
+                throw new ForbiddenPathException("The path is a link to no file: " + path);
+            }
+            throw new IllegalArgumentException("No such file: " + path);
+        }
+        if (!real.startsWith(fileRoot)) {
+            throw new ForbiddenPathException("The path is outside the file root: " + path);
+        }
+        return real.toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * Fills a request on a worker: decodes the image and the mask, fills the hole and encodes the result, checking
+     * between the stages whether the request was cancelled.
+     * @return the filled image as a PNG, or null if it was written to the output file of the request
+     */
+    private byte[] fill(Request request) throws IOException {
+        FillMetrics metrics = FillMetrics.startRun();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.DECODE);
+        }
+        BufferedImage image = request.readImage();
+        BufferedImage mask = request.readMask();
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.DECODE);
+        }
+        checkCancelled();
+        ImageProcessor processor = new ImageProcessor(image, mask, request.connectivityType, metrics);
+        new ImageHoleFiller(processor, this.W).fillHoles();
+        checkCancelled();
+        BufferedImage filled = processor.toGrayscaleImage();
+        byte[] png = null;
+        if (request.output != null) {
+            if (!ImageIO.write(filled, "png", new File(request.output))) {
+                throw new IOException("No png image writer");
+            }
+        } else {
+            png = encode(filled);
+        }
+        processor.reportMetrics();
+        return png;
+    }
+
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The request timed out");
+        }
+    }
+
+    /**
+     * Thrown when the body of a request is larger than the maximum body size.
+     */
+    private static class BodyTooLargeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(long maxBodyBytes) {
+            super("The body must not be larger than " + maxBodyBytes + " bytes");
+        }
+    }
+
+    /**
+     * Thrown when a request has a path that isn't allowed.
+     */
+    private static class ForbiddenPathException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        ForbiddenPathException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A fill request: the image and the mask, either as the bytes of their files or as paths, and where the result
+     * goes.
+     */
+    private static class Request {
+        private final byte[] body;
+        private final int imageLength;
+        private final String imagePath;
+        private final String maskPath;
+        final int connectivityType;
+        String output;
+
+        Request(byte[] body, int imageLength, int connectivityType) {
+            this.body = body;
+            this.imageLength = imageLength;
+            this.imagePath = null;
+            this.maskPath = null;
+            this.connectivityType = connectivityType;
+        }
+
+        Request(byte[] image, byte[] mask, int connectivityType) {
+            this(ByteBuffer.allocate(4 + image.length + mask.length).putInt(image.length).put(image).put(mask).array(),
+                    image.length, connectivityType);
+        }
+
+        Request(String imagePath, String maskPath, int connectivityType) {
+            this.body = null;
+            this.imageLength = 0;
+            this.imagePath = imagePath;
+            this.maskPath = maskPath;
+            this.connectivityType = connectivityType;
+        }
+
+        BufferedImage readImage() throws IOException {
+            if (imagePath != null) {
+                return checked(ImageIO.read(new File(imagePath)), imagePath);
+            }
+            return checked(ImageIO.read(new ByteArrayInputStream(body, 4, imageLength)), "the image");
+        }
+
+        BufferedImage readMask() throws IOException {
+            if (maskPath != null) {
+                return checked(ImageIO.read(new File(maskPath)), maskPath);
+            }
+            int maskStart = 4 + imageLength;
+            return checked(ImageIO.read(new ByteArrayInputStream(body, maskStart, body.length - maskStart)),
+                    "the mask");
+        }
+
+        private static BufferedImage checked(BufferedImage image, String name) throws IOException {
+            if (image == null) {
+                throw new IOException("Unsupported image format: " + name);
+            }
+            return image;
+        }
+    }
+}
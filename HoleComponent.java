@@ -0,0 +1,100 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a single connected component of the hole: its hole pixels (H_i) and the boundary pixels
+ * adjacent to them (B_i). Filling every component only from its own boundary costs the sum of |H_i|*|B_i| instead of
+ * |H|*|B|, which matters for masks with many small, scattered holes.
+ * Pixels are given as indices into the {@link ImageMatrix} of the image, in row-major order.
+ */
+public class HoleComponent {
+    private final int[] H;
+    private final int[] B;
+
+    /**
+     * Initializes a new hole component.
+     * @param H The indices of the component's hole pixels, in row-major order
+     * @param B The indices of the component's boundary pixels, in row-major order
+     */
+    HoleComponent(int[] H, int[] B) {
+        this.H = H;
+        this.B = B;
+    }
+
+    /**
+     * This function returns the indices, in row-major order, of the pixels of this component of the hole.
+     * @return the indices of the component's hole pixels
+     */
+    public int[] getHoleIndices() {
+        return H;
+    }
+
+    /**
+     * This function returns the indices, in row-major order, of the boundary pixels adjacent to this component.
+     * @return the indices of the component's boundary pixels
+     */
+    public int[] getBoundaryIndices() {
+        return B;
+    }
+
+    /**
+     * Splits a hole into its connected components. The components are labeled in a single pass over the mask of the
+     * hole with {@link HoleRunLabeler}, using the same connectivity that defines the boundaries, so the boundary
+     * pixels of a component are never hole pixels of another one. The mask is used rather than the values of the
+     * image, so the components are the same once the hole is filled.
+     * @param mask The mask of the hole pixels
+     * @param stride The distance, in array elements, between the beginnings of two consecutive rows of the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency
+     * @return The components, in row-major order of their first pixel
+     */
+    static HoleComponent[] label(HoleMask mask, int stride, int connectivityType) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        HoleRunLabeler labeler = new HoleRunLabeler(connectivityType);
+        boolean[] isHole = new boolean[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                isHole[x] = mask.get(x, y);
+            }
+            labeler.addRow(y, isHole, width);
+        }
+        labeler.finish();
+        int[][] directions = ImageProcessor.neighbourDirections(connectivityType);
+        int[] boundary = new int[16];
+        HoleComponent[] components = new HoleComponent[labeler.componentCount()];
+        for (int c = 0; c < components.length; c++) {
+            int[] hole = new int[(int) labeler.pixelCount(c)];
+            int n = 0;
+            int boundaryCount = 0;
+            for (int i = labeler.componentRunStart(c); i < labeler.componentRunStart(c + 1); i++) {
+                int run = labeler.componentRun(i);
+                int y = labeler.runY(run);
+                for (int x = labeler.runX0(run); x < labeler.runX1(run); x++) {
+                    hole[n++] = y * stride + x;
+                    for (int[] dir : directions) {
+                        int nx = x + dir[0];
+                        int ny = y + dir[1];
+                        if (nx < 0 || ny < 0 || nx >= width || ny >= height || mask.get(nx, ny)) {
+                            continue;
+                        }
+                        if (boundaryCount == boundary.length) {
+                            boundary = Arrays.copyOf(boundary, boundaryCount * 2);
+                        }
+                        boundary[boundaryCount++] = ny * stride + nx;
+                    }
+                }
+            }
+            // a boundary pixel is found once from every adjacent hole pixel, so the duplicates are dropped once sorted
+            Arrays.sort(boundary, 0, boundaryCount);
+            int unique = 0;
+            for (int i = 0; i < boundaryCount; i++) {
+                if (unique == 0 || boundary[i] != boundary[unique - 1]) {
+                    boundary[unique++] = boundary[i];
+                }
+            }
+            components[c] = new HoleComponent(hole, Arrays.copyOf(boundary, unique));
+        }
+        return components;
+    }
+}
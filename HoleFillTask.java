@@ -0,0 +1,120 @@
+package com.example.holeFilling;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task filling a range of hole pixels. The range is split in halves until it is no larger than a given
+ * chunk size, and each chunk is then filled sequentially by a {@link RangeFill}.
+ * When every hole pixel is computed independently of the others and of the way the range was split, e.g. by the same
+ * kernel, from the same boundary snapshot, in the same order as in a sequential fill, the results are identical
+ * regardless of the number of threads.
+ */
+class HoleFillTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+    private final RangeFill fill;
+    // the stage of the run whose allocations the workers add to, or null if none is measured
+    private final FillMetrics.WorkerAllocations allocations;
+
+    /**
+     * Fills a range of positions in the hole indices sequentially.
+     */
+    interface RangeFill {
+
+        /**
+         * Fills the hole pixels in the range [from, to) of the hole indices.
+         * @param from The first position in the hole indices to fill, inclusive
+         * @param to The last position in the hole indices to fill, exclusive
+         */
+        void fill(int from, int to);
+    }
+
+    /**
+     * Initializes a new task filling the hole pixels in the range [from, to) of the hole indices.
+     * @param from The first position in the hole indices to fill, inclusive
+     * @param to The last position in the hole indices to fill, exclusive
+     * @param chunkSize The largest range that is filled without splitting it further
+     * @param fill Fills each chunk sequentially
+     */
+    HoleFillTask(int from, int to, int chunkSize, RangeFill fill) {
+        this(from, to, chunkSize, fill, FillMetrics.WorkerAllocations.current());
+    }
+
+    private HoleFillTask(int from, int to, int chunkSize, RangeFill fill, FillMetrics.WorkerAllocations allocations) {
+        this.from = from;
+        this.to = to;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.fill = fill;
+        this.allocations = allocations;
+    }
+
+    /**
+     * Initializes a new task filling the hole pixels in the range [from, to) of the given hole indices with a
+     * {@link FillKernel}.
+     * @param image The image whose hole pixels are filled
+     * @param hole The indices of the hole pixels in the image
+     * @param from The first position in the hole indices to fill, inclusive
+     * @param to The last position in the hole indices to fill, exclusive
+     * @param chunkSize The largest range that is filled without splitting it further
+     * @param kernel The kernel computing the value of each hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     */
+    HoleFillTask(ImageMatrix image, int[] hole, int from, int to, int chunkSize, FillKernel kernel,
+                 BoundarySnapshot boundary) {
+        this(from, to, chunkSize, (start, end) -> fillRange(image, hole, start, end, kernel, boundary));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= chunkSize) {
+            if (allocations == null) {
+                fill.fill(from, to);
+            } else {
+                allocations.fill(fill, from, to);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new HoleFillTask(from, mid, chunkSize, fill, allocations),
+                new HoleFillTask(mid, to, chunkSize, fill, allocations));
+    }
+
+    /**
+     * Sequentially fills the hole pixels in the range [from, to) of the given hole indices. The fill stops between two
+     * hole pixels once the current thread is interrupted, e.g. by a server cancelling a request that timed out.
+     * @param image The image whose hole pixels are filled
+     * @param hole The indices of the hole pixels in the image
+     * @param from The first position in the hole indices to fill, inclusive
+     * @param to The last position in the hole indices to fill, exclusive
+     * @param kernel The kernel computing the value of each hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     * @throws CancellationException if the current thread is interrupted
+     */
+    static void fillRange(ImageMatrix image, int[] hole, int from, int to, FillKernel kernel,
+                          BoundarySnapshot boundary) {
+        float[] sums = new float[2];
+        Thread thread = Thread.currentThread();
+        for (int i = from; i < to; i++) {
+            // a hole pixel costs |B| weights, so checking before every one of them costs nothing measurable
+            if (thread.isInterrupted()) {
+                throw new CancellationException("The fill was interrupted");
+            }
+            int u = hole[i];
+            image.set(u, kernel.fillValue(image.xOf(u), image.yOf(u), boundary, sums));
+        }
+    }
+
+    /**
+     * Chooses a chunk size splitting the hole into several chunks per thread, so that threads finishing early can
+     * steal work from the others.
+     * @param holeSize The number of hole pixels
+     * @param parallelism The number of threads filling the hole
+     * @return The chunk size to use
+     */
+    static int chunkSizeFor(int holeSize, int parallelism) {
+        return Math.max(1, holeSize / (Math.max(1, parallelism) * 8));
+    }
+}
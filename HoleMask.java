@@ -0,0 +1,214 @@
+package com.example.holeFilling;
+
+/**
+ * A bitmap of the hole pixels of an image: one bit per pixel, packed 64 pixels to a long word, with every row starting
+ * at a new word. Bit {@code x & 63} of word {@code y * wordsPerRow + (x >>> 6)} is set when pixel (x,y) is a hole
+ * pixel, and the bits past the width of the image in the last word of a row are always clear.
+ * Whole words are combined at once, so detecting the boundaries of the hole, a dilation of the hole minus the hole
+ * itself, costs a few operations per 64 pixels, and no object is created per pixel.
+ */
+final class HoleMask {
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Initializes an empty mask of the given size.
+     * @param width The width of the mask in pixels
+     * @param height The height of the mask in pixels
+     */
+    HoleMask(int width, int height) {
+        this(width, height, new long[Math.multiplyExact(wordsPerRow(width), height)]);
+    }
+
+    /**
+     * Initializes a mask on top of existing words, laid out as described by the class. The words are used as is,
+     * without copying them.
+     * @param width The width of the mask in pixels
+     * @param height The height of the mask in pixels
+     * @param words The words of the mask, whose bits past the width of every row must be clear
+     * @throws IllegalArgumentException if the number of words doesn't match the size of the mask
+     */
+    HoleMask(int width, int height, long[] words) {
+        if (width <= 0 || height <= 0 || (long) wordsPerRow(width) * height != words.length) {
+            throw new IllegalArgumentException("Invalid mask dimensions: " + width + "x" + height + ", "
+                    + words.length + " words");
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = wordsPerRow(width);
+        this.words = words;
+    }
+
+    /**
+     *
+     * @param width The width of a mask in pixels
+     * @return The number of words holding a row of the mask
+     */
+    static int wordsPerRow(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    /**
+     * Marks the pixels of the image whose value is {@link ImageMatrix#HOLE}.
+     * @param image The image, with its hole pixels marked
+     * @return The mask of the hole pixels of the image
+     */
+    static HoleMask of(ImageMatrix image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = image.getStride();
+        float[] data = image.getData();
+        HoleMask mask = new HoleMask(width, height);
+        long[] words = mask.words;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * stride;
+            int wordStart = y * mask.wordsPerRow;
+            for (int w = 0; w < mask.wordsPerRow; w++) {
+                int x0 = w << 6;
+                int bits = Math.min(64, width - x0);
+                long word = 0;
+                for (int b = 0; b < bits; b++) {
+                    word |= (data[rowStart + x0 + b] == ImageMatrix.HOLE ? 1L : 0L) << b;
+                }
+                words[wordStart + w] = word;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Dilates the mask by one pixel: a pixel is set in the result if it or any of its neighbours, according to the
+     * connectivity type, is set in the mask. Neighbours outside the mask are ignored.
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency
+     * @return A new mask holding the dilation
+     */
+    HoleMask dilate(int connectivityType) {
+        HoleMask result = new HoleMask(width, height);
+        long[] out = result.words;
+        long lastWordMask = -1L >>> ((wordsPerRow << 6) - width);
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : -1;
+            int below = y < height - 1 ? row + wordsPerRow : -1;
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word;
+                if (connectivityType == 8) {
+                    // the diagonal neighbours are the horizontal neighbours of the vertical ones
+                    word = horizontal(row, w, above, below);
+                } else {
+                    word = horizontal(row, w, -1, -1) | rowWord(above, w) | rowWord(below, w);
+                }
+                out[row + w] = w == wordsPerRow - 1 ? word & lastWordMask : word;
+            }
+        }
+        return result;
+    }
+
+    // the word of the given row dilated horizontally, together with the words of up to two other rows, or -1 for none
+    private long horizontal(int row, int w, int otherRow1, int otherRow2) {
+        long word = rowWord(row, w) | rowWord(otherRow1, w) | rowWord(otherRow2, w);
+        long previous = rowWord(row, w - 1) | rowWord(otherRow1, w - 1) | rowWord(otherRow2, w - 1);
+        long next = rowWord(row, w + 1) | rowWord(otherRow1, w + 1) | rowWord(otherRow2, w + 1);
+        // bit x moves to x+1 and x-1, carrying the bits that cross a word into the neighbouring word
+        return word | (word << 1) | (previous >>> 63) | (word >>> 1) | (next << 63);
+    }
+
+    private long rowWord(int row, int w) {
+        return row < 0 || w < 0 || w >= wordsPerRow ? 0 : words[row + w];
+    }
+
+    /**
+     * Removes the pixels of another mask of the same size from this one.
+     * @param other The mask of the pixels to remove
+     * @return A new mask of the pixels set in this mask and not in the other one
+     */
+    HoleMask andNot(HoleMask other) {
+        HoleMask result = new HoleMask(width, height);
+        for (int i = 0; i < words.length; i++) {
+            result.words[i] = words[i] & ~other.words[i];
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return The number of pixels set in the mask
+     */
+    int cardinality() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return Math.toIntExact(count);
+    }
+
+    /**
+     * Lists the pixels set in the mask as indices of an image with the given stride, in row-major order.
+     * @param stride The distance, in array elements, between the beginnings of two consecutive rows of the image
+     * @return The indices {@code y * stride + x} of the pixels set in the mask
+     */
+    int[] indices(int stride) {
+        int[] indices = new int[cardinality()];
+        int n = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = words[row + w];
+                int base = y * stride + (w << 6);
+                while (word != 0) {
+                    indices[n++] = base + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+        }
+        return indices;
+    }
+
+    /**
+     *
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @return true if the pixel is set in the mask
+     */
+    boolean get(int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets or clears a pixel of the mask.
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @param hole true to set the pixel, false to clear it
+     */
+    void set(int x, int y, boolean hole) {
+        int w = y * wordsPerRow + (x >>> 6);
+        words[w] = hole ? words[w] | (1L << x) : words[w] & ~(1L << x);
+    }
+
+    /**
+     *
+     * @return The width of the mask in pixels
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return The height of the mask in pixels
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the words of the mask, laid out as described by the class. Changes to the array are reflected in the
+     * mask.
+     * @return The words of the mask
+     */
+    long[] getWords() {
+        return words;
+    }
+}
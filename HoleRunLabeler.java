@@ -0,0 +1,239 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * Labels the connected components of the hole in a single pass over the mask, row by row.
+ * Every row is stored as runs of consecutive hole pixels, and a union-find over the runs joins each run with the runs
+ * of the previous row it touches, according to the connectivity type (4 or 8). Only the runs are kept, so the memory
+ * depends on the shape of the hole and not on the size of the image, and the mask can be fed one strip at a time.
+ * Rows must be added in increasing order. After {@link #finish()}, every run has a dense component label, and the
+ * runs of every component are available in row-major order.
+ */
+final class HoleRunLabeler {
+    private final boolean eightConnected;
+    private int runCount;
+    private int[] runY = new int[64];
+    private int[] runX0 = new int[64];
+    private int[] runX1 = new int[64];
+    private int[] parent = new int[64];
+    // the runs of the last added row are [previousRowStart, currentRowStart)
+    private int previousRowStart;
+    private int previousRowY = -2;
+
+    private int componentCount;
+    private int[] label;
+    private int[] componentRunStart;
+    private int[] componentRuns;
+    private int[] minX;
+    private int[] minY;
+    private int[] maxX;
+    private int[] maxY;
+    private long[] pixelCount;
+
+    /**
+     * Initializes a new labeler.
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency between hole pixels
+     */
+    HoleRunLabeler(int connectivityType) {
+        this.eightConnected = connectivityType == 8;
+    }
+
+    /**
+     * Adds a row of the mask.
+     * @param y The Y coordinate of the row, greater than that of the previous row
+     * @param isHole For every X coordinate in the row, whether the pixel is a hole pixel
+     * @param width The number of pixels in the row
+     */
+    void addRow(int y, boolean[] isHole, int width) {
+        int rowStart = runCount;
+        int x = 0;
+        while (x < width) {
+            if (!isHole[x]) {
+                x++;
+                continue;
+            }
+            int x0 = x;
+            while (x < width && isHole[x]) {
+                x++;
+            }
+            addRun(y, x0, x);
+        }
+        connectToPreviousRow(y, rowStart);
+        previousRowStart = rowStart;
+        previousRowY = y;
+    }
+
+    private void addRun(int y, int x0, int x1) {
+        if (runCount == runY.length) {
+            int capacity = runCount * 2;
+            runY = Arrays.copyOf(runY, capacity);
+            runX0 = Arrays.copyOf(runX0, capacity);
+            runX1 = Arrays.copyOf(runX1, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+        }
+        runY[runCount] = y;
+        runX0[runCount] = x0;
+        runX1[runCount] = x1;
+        parent[runCount] = runCount;
+        runCount++;
+    }
+
+    /**
+     * Joins every run of the current row with the runs of the previous row it touches. Both rows are sorted, so they
+     * are merged in linear time.
+     */
+    private void connectToPreviousRow(int y, int rowStart) {
+        if (previousRowY != y - 1) {
+            return;
+        }
+        // with 8-connectivity, runs touching diagonally are also adjacent
+        int reach = eightConnected ? 1 : 0;
+        int p = previousRowStart;
+        for (int c = rowStart; c < runCount; c++) {
+            while (p < rowStart && runX1[p] + reach <= runX0[c]) {
+                p++;
+            }
+            for (int q = p; q < rowStart && runX0[q] < runX1[c] + reach; q++) {
+                union(c, q);
+            }
+        }
+    }
+
+    private int find(int run) {
+        int root = run;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[run] != root) {
+            int next = parent[run];
+            parent[run] = root;
+            run = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        // the earlier run becomes the root, so components are numbered in the order of their first pixel
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Assigns the component labels, once all rows were added. Components are numbered in row-major order of their
+     * first pixel.
+     */
+    void finish() {
+        label = new int[runCount];
+        int[] componentOfRoot = new int[runCount];
+        componentCount = 0;
+        for (int r = 0; r < runCount; r++) {
+            int root = find(r);
+            if (root == r) {
+                componentOfRoot[r] = componentCount++;
+            }
+            label[r] = componentOfRoot[root];
+        }
+        componentRunStart = new int[componentCount + 1];
+        for (int r = 0; r < runCount; r++) {
+            componentRunStart[label[r] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            componentRunStart[c + 1] += componentRunStart[c];
+        }
+        componentRuns = new int[runCount];
+        int[] next = Arrays.copyOf(componentRunStart, componentCount);
+        minX = new int[componentCount];
+        minY = new int[componentCount];
+        maxX = new int[componentCount];
+        maxY = new int[componentCount];
+        pixelCount = new long[componentCount];
+        Arrays.fill(minX, Integer.MAX_VALUE);
+        Arrays.fill(minY, Integer.MAX_VALUE);
+        Arrays.fill(maxX, Integer.MIN_VALUE);
+        Arrays.fill(maxY, Integer.MIN_VALUE);
+        for (int r = 0; r < runCount; r++) {
+            int c = label[r];
+            componentRuns[next[c]++] = r;
+            minX[c] = Math.min(minX[c], runX0[r]);
+            maxX[c] = Math.max(maxX[c], runX1[r] - 1);
+            minY[c] = Math.min(minY[c], runY[r]);
+            maxY[c] = Math.max(maxY[c], runY[r]);
+            pixelCount[c] += runX1[r] - runX0[r];
+        }
+    }
+
+    /**
+     *
+     * @return The number of runs of hole pixels, in row-major order
+     */
+    int runCount() {
+        return runCount;
+    }
+
+    int runY(int run) {
+        return runY[run];
+    }
+
+    int runX0(int run) {
+        return runX0[run];
+    }
+
+    int runX1(int run) {
+        return runX1[run];
+    }
+
+    /**
+     *
+     * @param run A run of hole pixels
+     * @return The label of the run's component, after {@link #finish()}
+     */
+    int label(int run) {
+        return label[run];
+    }
+
+    /**
+     *
+     * @return The number of connected components of the hole, after {@link #finish()}
+     */
+    int componentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the runs of a component, in row-major order, as the range [componentRunStart(c), componentRunStart(c+1))
+     * of {@link #componentRun(int)}.
+     */
+    int componentRunStart(int component) {
+        return componentRunStart[component];
+    }
+
+    int componentRun(int position) {
+        return componentRuns[position];
+    }
+
+    int minX(int component) {
+        return minX[component];
+    }
+
+    int minY(int component) {
+        return minY[component];
+    }
+
+    int maxX(int component) {
+        return maxX[component];
+    }
+
+    int maxY(int component) {
+        return maxY[component];
+    }
+
+    long pixelCount(int component) {
+        return pixelCount[component];
+    }
+}
@@ -1,16 +1,27 @@
 package com.example.holeFilling;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class is responsible for filling holes in an image using a specified weighting function.
  * It uses an {@link ImageProcessor} to handle image loading, hole and boundaries detection based on a mask.
  * The filling algorithm uses a specified or default weighting function to determine the fill values based on
  * surrounding pixel data.
+ * By default, every hole pixel is filled from all the boundary pixels of the image. With
+ * {@link #setGlobalBoundary(boolean)} set to false, every connected component of the hole is instead filled
+ * independently, only from its own boundary pixels (see {@link HoleComponent}), which is much faster for a mask of many
+ * small holes but gives other values wherever the hole has more than one component.
+ * The weighted sums are accumulated in float by default; {@link #setAccumulation(Accumulation)} trades some speed for
+ * precision on large boundaries.
  */
 public class ImageHoleFiller {
     private WeightingFunc W;
     private final ImageProcessor img;
+    private boolean globalBoundary = true;
+    private Accumulation accumulation = Accumulation.FLOAT;
 
     /**
      * Initializes a new instance of the com.example.holeFilling.ImageHoleFiller class with a specific weighting function.
@@ -40,29 +51,175 @@ public class ImageHoleFiller {
         this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
     }
 
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageHoleFiller on an image that was already loaded and
+     * had its hole and boundaries detected.
+     *
+     * @param img the processor holding the image, the hole and the boundaries
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     */
+    public ImageHoleFiller(ImageProcessor img, WeightingFunc W){
+        this.img = img;
+        this.W = W;
+    }
+
+    /**
+     * Sets whether every hole pixel is filled from all the boundary pixels of the image (B), rather than only from the
+     * boundary pixels of its own connected component of the hole (B_i). Filling per component costs the sum of
+     * |H_i|*|B_i| instead of |H|*|B|, and gives the same result when the hole has a single component.
+     *
+     * @param globalBoundary true (the default) to fill from all the boundary pixels, false to fill per component
+     */
+    public void setGlobalBoundary(boolean globalBoundary) {
+        this.globalBoundary = globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is filled from all the boundary pixels of the image
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     * Sets the precision in which the weighted sums of every hole pixel are accumulated. Every precision gives the
+     * same result on every run, with any number of threads.
+     *
+     * @param accumulation the precision of the sums, {@link Accumulation#FLOAT} by default
+     */
+    public void setAccumulation(Accumulation accumulation) {
+        this.accumulation = accumulation;
+    }
+
+    /**
+     *
+     * @return the precision in which the weighted sums of every hole pixel are accumulated
+     */
+    public Accumulation getAccumulation() {
+        return accumulation;
+    }
+
     /**
      * Fills the holes identified in the image using the specified weighting function.
      * If no weighting function is set, a default is used. The method iterates over each hole pixel, computes
      * a new value based on the algorithm, and updates the image's pixel values.
+     *
+     * @throws java.util.concurrent.CancellationException if the calling thread is interrupted during the fill, which
+     *                                                    then stops
      */
     public void fillHoles() {
         if (this.W == null){
             this.W = new DefaultWeightingFunc();
         }
-        Set<Point> hole = this.img.getH();
-        Set<Point> boundaries = this.img.getB();
-        for (Point u: hole){
-            float numerator = 0;
-            float dominator = 0;
-            for (Point v: boundaries){
-                float valV = v.getPixelValue();
-                float weightRes = W.calculateWeight(v,u);
-                numerator += weightRes*valV;
-                dominator += weightRes;
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        ImageMatrix image = this.img.getImage();
+        FillKernel kernel = FillKernel.forWeightingFunc(this.W, this.accumulation);
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            BoundarySnapshot boundary = BoundarySnapshot.of(image, this.img.getBoundaryIndices());
+            HoleFillTask.fillRange(image, hole, 0, hole.length, kernel, boundary);
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                BoundarySnapshot boundary = BoundarySnapshot.of(image, component.getBoundaryIndices());
+                HoleFillTask.fillRange(image, hole, 0, hole.length, kernel, boundary);
             }
-            float newValU = numerator/dominator;
-            u.setPixelValue(newValU);
         }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(weightedPairs());
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, splitting the hole pixels between the given
+     * number of threads. Each hole pixel is computed independently from a snapshot of the boundary values, so the
+     * result is identical to the sequential fill.
+     *
+     * @param threads the number of threads to use
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void fillHoles(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        if (threads == 1) {
+            fillHoles();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            fillHoles(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, running the work on the given pool.
+     * Each hole pixel is computed independently from a snapshot of the boundary values, so the result is identical to
+     * the sequential fill.
+     *
+     * @param pool the pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public void fillHoles(ForkJoinPool pool) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        fillHoles(pool, FillKernel.forWeightingFunc(this.W, this.accumulation));
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(weightedPairs());
+        }
+    }
+
+    // fills the hole on the given pool, with the kernel of the weighting function
+    private void fillHoles(ForkJoinPool pool, FillKernel kernel) {
+        ImageMatrix image = this.img.getImage();
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            BoundarySnapshot boundary = BoundarySnapshot.of(image, this.img.getBoundaryIndices());
+            int chunkSize = HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism());
+            pool.invoke(new HoleFillTask(image, hole, 0, hole.length, chunkSize, kernel, boundary));
+            return;
+        }
+        // the components are filled concurrently, and a large component is split further, into chunks of about the
+        // same number of weight evaluations
+        HoleComponent[] components = this.img.getComponents();
+        long totalPairs = 0;
+        for (HoleComponent component : components) {
+            totalPairs += (long) component.getHoleIndices().length * component.getBoundaryIndices().length;
+        }
+        long pairsPerChunk = Math.max(1, totalPairs / (Math.max(1, pool.getParallelism()) * 8L));
+        List<HoleFillTask> tasks = new ArrayList<>(components.length);
+        for (HoleComponent component : components) {
+            int[] hole = component.getHoleIndices();
+            int[] boundaries = component.getBoundaryIndices();
+            int chunkSize = (int) Math.min(hole.length, pairsPerChunk / Math.max(1, boundaries.length));
+            tasks.add(new HoleFillTask(image, hole, 0, hole.length, chunkSize, kernel,
+                    BoundarySnapshot.of(image, boundaries)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    // the number of weights the fill evaluates: |H|*|B|, or the sum of |H_i|*|B_i| per component
+    private long weightedPairs() {
+        if (this.globalBoundary) {
+            return (long) this.img.getHoleIndices().length * this.img.getBoundaryIndices().length;
+        }
+        long pairs = 0;
+        for (HoleComponent component : this.img.getComponents()) {
+            pairs += (long) component.getHoleIndices().length * component.getBoundaryIndices().length;
+        }
+        return pairs;
     }
 
     /**
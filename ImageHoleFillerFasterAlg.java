@@ -1,16 +1,37 @@
 package com.example.holeFilling;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class is responsible for filling holes in an image using a specified weighting function.
  * It uses an {@link ImageProcessor} to handle image loading, hole and boundaries detection based on a mask.
  * The filling algorithm uses a specified or default weighting function to determine the fill values based on
  * surrounding pixel data.
+ * Every hole pixel is filled from a sample of k boundary pixels; when the boundary has no more than k pixels, the hole
+ * is filled exactly, like {@link ImageHoleFiller}.
+ * Like {@link ImageHoleFiller}, every hole pixel is sampled from all the boundary pixels of the image by default, and
+ * {@link #setGlobalBoundary(boolean)} samples it only from the boundary pixels of its own connected component.
+ * The weighted sums of the sampled boundary pixels are accumulated in float by default, see
+ * {@link #setAccumulation(Accumulation)}.
  */
 public class ImageHoleFillerFasterAlg {
+    /**
+     * The default number of boundary pixels sampled for every hole pixel.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 10;
+    // the SplitMix64 increment, also used to derive the seed of each hole pixel from the seed of the fill
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
     private WeightingFunc W;
     private final ImageProcessor img;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private Long seed;
+    private Accumulation accumulation = Accumulation.FLOAT;
+    private boolean globalBoundary = true;
 
     /**
      * Initializes a new instance of the com.example.holeFilling.ImageHoleFillerFasterAlg class with a specific weighting function.
@@ -40,43 +61,330 @@ public class ImageHoleFillerFasterAlg {
         this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
     }
 
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageHoleFillerFasterAlg on an image that was already
+     * loaded and had its hole and boundaries detected.
+     *
+     * @param img the processor holding the image, the hole and the boundaries
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     */
+    public ImageHoleFillerFasterAlg(ImageProcessor img, WeightingFunc W){
+        this.img = img;
+        this.W = W;
+    }
+
+    /**
+     * Sets the number of boundary pixels sampled for every hole pixel. When the boundary has no more pixels, all of
+     * them are used, and the result is the exact fill of {@link ImageHoleFiller}.
+     *
+     * @param k the number of boundary pixels to sample
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public void setSampleSize(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The sample size must be positive: " + k);
+        }
+        this.sampleSize = k;
+    }
+
+    /**
+     *
+     * @return the number of boundary pixels sampled for every hole pixel
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets whether every hole pixel is sampled from all the boundary pixels of the image (B), rather than only from
+     * the boundary pixels of its own connected component of the hole (B_i).
+     *
+     * @param globalBoundary true (the default) to sample from all the boundary pixels, false to sample per component
+     */
+    public void setGlobalBoundary(boolean globalBoundary) {
+        this.globalBoundary = globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is sampled from all the boundary pixels of the image
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     * Sets the seed of the random sampling, making the fill reproducible: with the same seed, every hole pixel gets
+     * the same sample in every run, regardless of the number of threads filling the hole.
+     * Without a seed, a different random seed is chosen for every fill.
+     *
+     * @param seed the seed of the random sampling
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the precision in which the weighted sums of every hole pixel are accumulated. With a seed (see
+     * {@link #setSeed(long)}), every precision gives the same result on every run, with any number of threads.
+     *
+     * @param accumulation the precision of the sums, {@link Accumulation#FLOAT} by default
+     */
+    public void setAccumulation(Accumulation accumulation) {
+        this.accumulation = accumulation;
+    }
+
+    /**
+     *
+     * @return the precision in which the weighted sums of every hole pixel are accumulated
+     */
+    public Accumulation getAccumulation() {
+        return accumulation;
+    }
+
     /**
      * Fills the holes identified in the image using the specified weighting function.
      * If no weighting function is specified, a default is used. The method iterates over each hole pixel, and a set of
      * k random boundary pixels, computes a new value based on the algorithm, and updates the image's pixel values.
      */
     public void fillHoles() {
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        long baseSeed = baseSeed();
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            sampledFill(hole, this.img.getBoundaryIndices(), baseSeed).fill(0, hole.length);
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                sampledFill(hole, component.getBoundaryIndices(), baseSeed).fill(0, hole.length);
+            }
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(sampledPairs());
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, splitting the hole pixels between the given
+     * number of threads.
+     *
+     * @param threads the number of threads to use
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void fillHoles(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        if (threads == 1) {
+            fillHoles();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            fillHoles(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, running the work on the given pool.
+     *
+     * @param pool the pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public void fillHoles(ForkJoinPool pool) {
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        long baseSeed = baseSeed();
+        List<HoleFillTask> tasks = new ArrayList<>();
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            tasks.add(new HoleFillTask(0, hole.length, HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                    sampledFill(hole, this.img.getBoundaryIndices(), baseSeed)));
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                tasks.add(new HoleFillTask(0, hole.length,
+                        HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                        sampledFill(hole, component.getBoundaryIndices(), baseSeed)));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(sampledPairs());
+        }
+    }
+
+    // the number of weights the fill evaluates: k per hole pixel, or all the boundary pixels when there are fewer
+    private long sampledPairs() {
+        if (this.globalBoundary) {
+            return (long) this.img.getHoleIndices().length
+                    * Math.min(this.sampleSize, this.img.getBoundaryIndices().length);
+        }
+        long pairs = 0;
+        for (HoleComponent component : this.img.getComponents()) {
+            pairs += (long) component.getHoleIndices().length
+                    * Math.min(this.sampleSize, component.getBoundaryIndices().length);
+        }
+        return pairs;
+    }
+
+    // the seed of the fill, from which the seed of every hole pixel is derived
+    private long baseSeed() {
+        return (this.seed != null) ? this.seed : new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Prepares a sampled fill of the given hole pixels: takes a snapshot of their boundary pixels once. The sample of
+     * every hole pixel is drawn from a seed derived from the seed of the fill and the pixel's index, so it doesn't
+     * depend on how the hole is split. When the boundary has no more than k pixels, the hole pixels are filled
+     * exactly, with the kernel of {@link ImageHoleFiller}.
+     * @param hole The indices of the hole pixels
+     * @param boundaries The indices of the boundary pixels they are filled from
+     * @param baseSeed The seed of the fill
+     * @return Fills a range of the hole pixels, each from its own sample of boundary pixels
+     */
+    private HoleFillTask.RangeFill sampledFill(int[] hole, int[] boundaries, long baseSeed) {
         if (this.W == null){
             this.W = new DefaultWeightingFunc();
         }
-        Set<Point> hole = this.img.getH();
-        Set<Point> boundaries = this.img.getB();
-        for (Point u: hole){
-            Point[] sampleB = sampleBoundaryPixels(boundaries, 10); //sampling a random subset of 10 boundary pixels
+        WeightingFunc W = this.W;
+        ImageMatrix image = this.img.getImage();
+        BoundarySnapshot boundary = BoundarySnapshot.of(image, boundaries);
+        Accumulation accumulation = this.accumulation;
+        if (this.sampleSize >= boundary.size()) {
+            FillKernel kernel = FillKernel.forWeightingFunc(W, accumulation);
+            return (from, to) -> HoleFillTask.fillRange(image, hole, from, to, kernel, boundary);
+        }
+        int k = this.sampleSize;
+        return (from, to) -> {
+            // each chunk shuffles its own copy of the boundary positions, so chunks can run concurrently
+            int[] permutation = new int[boundary.size()];
+            for (int i = 0; i < permutation.length; i++) {
+                permutation[i] = i;
+            }
+            int[] swaps = new int[k];
+            for (int i = from; i < to; i++) {
+                int u = hole[i];
+                int ux = image.xOf(u);
+                int uy = image.yOf(u);
+                sampleBoundaryPixels(permutation, swaps, k, mix(baseSeed + u * SEED_INCREMENT));
+                float newValU = weightedAverage(W, ux, uy, boundary, permutation, k, accumulation);
+                image.set(u, newValU);
+                restorePermutation(permutation, swaps, k);
+            }
+        };
+    }
+
+    /**
+     * Computes the weighted average of the values of the sampled boundary pixels.
+     * @param W The weighting function
+     * @param ux The X coordinate of the hole pixel
+     * @param uy The Y coordinate of the hole pixel
+     * @param boundary A snapshot of the boundary pixels
+     * @param permutation The positions of the boundary pixels, whose first k positions hold the sample
+     * @param k The size of the sample
+     * @param accumulation The precision of the weighted sums
+     * @return The new "I" value of the hole pixel
+     */
+    private static float weightedAverage(WeightingFunc W, int ux, int uy, BoundarySnapshot boundary,
+                                         int[] permutation, int k, Accumulation accumulation) {
+        if (accumulation == Accumulation.DOUBLE) {
+            double numerator = 0;
+            double dominator = 0;
+            for (int j = 0; j < k; j++) {
+                int v = permutation[j];
+                float weightRes = W.calculateWeight(ux, uy, boundary.x[v], boundary.y[v], boundary.value[v]);
+                numerator += (double) weightRes * boundary.value[v];
+                dominator += weightRes;
+            }
+            return (float) (numerator / dominator);
+        }
+        if (accumulation == Accumulation.KAHAN) {
             float numerator = 0;
+            float numeratorError = 0;
             float dominator = 0;
-            for (Point v: sampleB){
-                float valV = v.getPixelValue();
-                float weightRes = W.calculateWeight(u,v);
-                numerator += weightRes*valV;
-                dominator += weightRes;
+            float dominatorError = 0;
+            for (int j = 0; j < k; j++) {
+                int v = permutation[j];
+                float weightRes = W.calculateWeight(ux, uy, boundary.x[v], boundary.y[v], boundary.value[v]);
+                float term = weightRes * boundary.value[v];
+                float sum = numerator + term;
+                numeratorError += CompensatedSum.error(numerator, term, sum);
+                numerator = sum;
+                sum = dominator + weightRes;
+                dominatorError += CompensatedSum.error(dominator, weightRes, sum);
+                dominator = sum;
             }
-            float newValU = numerator/dominator;
-            u.setPixelValue(newValU);
+            return (numerator + numeratorError) / (dominator + dominatorError);
+        }
+        float numerator = 0;
+        float dominator = 0;
+        for (int j = 0; j < k; j++) {
+            int v = permutation[j];
+            float valV = boundary.value[v];
+            float weightRes = W.calculateWeight(ux, uy, boundary.x[v], boundary.y[v], boundary.value[v]);
+            numerator += weightRes*valV;
+            dominator += weightRes;
+        }
+        return numerator/dominator;
+    }
+
+    /**
+     * Samples a random subset of k boundary pixels to evaluate the value of a hole pixel, using a partial
+     * Fisher-Yates shuffle: after the call, the first k positions of the permutation hold the sample.
+     * The shuffle doesn't allocate, and the random numbers are derived only from the given seed, so the same seed
+     * always gives the same sample.
+     * @param permutation The positions of all the boundary pixels in the boundary snapshot, in their initial order
+     * @param swaps Receives the position swapped into each of the first k positions, see {@link #restorePermutation}
+     * @param k The desired size of the random subset, at most the number of boundary pixels
+     * @param seed The seed of the random subset
+     */
+    private static void sampleBoundaryPixels(int[] permutation, int[] swaps, int k, long seed) {
+        long state = seed;
+        int n = permutation.length;
+        for (int j = 0; j < k; j++) {
+            state += SEED_INCREMENT;
+            long random = mix(state);
+            // maps the upper 32 random bits to [0, n - j)
+            int r = j + (int) (((random >>> 32) * (n - j)) >>> 32);
+            swaps[j] = r;
+            int tmp = permutation[j];
+            permutation[j] = permutation[r];
+            permutation[r] = tmp;
         }
+    }
 
+    /**
+     * Undoes the swaps of {@link #sampleBoundaryPixels}, in reverse order, returning the permutation to its initial
+     * order in O(k), so that the next sample doesn't depend on the previous ones.
+     * @param permutation The positions of the boundary pixels, as left by the sampling
+     * @param swaps The positions swapped by the sampling
+     * @param k The size of the sample
+     */
+    private static void restorePermutation(int[] permutation, int[] swaps, int k) {
+        for (int j = k - 1; j >= 0; j--) {
+            int r = swaps[j];
+            int tmp = permutation[j];
+            permutation[j] = permutation[r];
+            permutation[r] = tmp;
+        }
     }
 
     /**
-     * Samples a random subset of k boundary pixels to evaluate the value of a hole pixel
-     * @param boundaries The "B" set - a set of points representing the hole pixels
-     * @param k - The desired size of the random subset
-     * @return Random subset of k boundary pixels
+     * The SplitMix64 finalizer, turning a sequence of states into well distributed random bits.
      */
-    private Point[] sampleBoundaryPixels(Set<Point> boundaries, int k) {
-        List<Point> boundaryList = new ArrayList<>(boundaries);
-        Collections.shuffle(boundaryList, new Random());
-        return boundaryList.subList(0, k).toArray(new Point[0]);
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
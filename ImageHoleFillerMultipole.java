@@ -0,0 +1,305 @@
+package com.example.holeFilling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is responsible for filling holes in an image using a specified radial weighting function, approximating
+ * the exact algorithm of {@link ImageHoleFiller} in O(|H| log |B|) instead of O(|H|*|B|).
+ * The boundary pixels are grouped in a quadtree ({@link BoundaryQuadtree}), and a cluster of boundary pixels that is
+ * far enough from a hole pixel contributes as a single pseudo-pixel at its centroid, holding the sum of the cluster's
+ * values (the Barnes-Hut approximation).
+ * Placing the pseudo-pixel at the centroid cancels the first-order error terms, so the error of a cluster's summed
+ * weight is governed by the curvature of the weighting function over the cluster's radius. A cluster is far enough
+ * when this second-order error, estimated from the weights at the centroid's distance plus and minus the radius, is at
+ * most the error bound relative to the pseudo-pixel's weight.
+ * Like {@link ImageHoleFiller}, every hole pixel is filled from all the boundary pixels of the image by default, and
+ * {@link #setGlobalBoundary(boolean)} fills it only from the boundary pixels of its own connected component, with a
+ * quadtree per component.
+ * When metrics are enabled (see {@link FillMetrics}), a pseudo-pixel counts as a single weight evaluation.
+ */
+public class ImageHoleFillerMultipole {
+    /**
+     * The default relative error bound of the weight of every boundary pixel.
+     */
+    public static final double DEFAULT_ERROR_BOUND = 0.01;
+
+    private RadialWeightingFunc W;
+    private final ImageProcessor img;
+    private double errorBound = DEFAULT_ERROR_BOUND;
+    private boolean globalBoundary = true;
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageHoleFillerMultipole class with a specific radial
+     * weighting function.
+     * Initializes the image processing and sets up the environment to fill holes using the provided weighting function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W the custom radial weighting function to use for hole filling
+     */
+    public ImageHoleFillerMultipole(String inputImage, String inputMask, int connectivityType, RadialWeightingFunc W){
+        this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
+        this.W = W;
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageHoleFillerMultipole with the default weighting
+     * function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public ImageHoleFillerMultipole(String inputImage, String inputMask, int connectivityType){
+        this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageHoleFillerMultipole on an image that was already
+     * loaded and had its hole and boundaries detected.
+     *
+     * @param img the processor holding the image, the hole and the boundaries
+     * @param W the custom radial weighting function to use for hole filling, or null to use the default one
+     */
+    public ImageHoleFillerMultipole(ImageProcessor img, RadialWeightingFunc W){
+        this.img = img;
+        this.W = W;
+    }
+
+    /**
+     * Sets the error bound of the approximation: the largest estimated error of a cluster's summed weight allowed when
+     * it is replaced by a pseudo-pixel, relative to the pseudo-pixel's weight. A bound of 0 gives the exact fill.
+     * The actual error of the filled values can be checked with {@link #measureError(int)}.
+     *
+     * @param errorBound the non-negative relative error bound
+     * @throws IllegalArgumentException if the error bound is negative
+     */
+    public void setErrorBound(double errorBound) {
+        if (!(errorBound >= 0)) {
+            throw new IllegalArgumentException("The error bound must not be negative: " + errorBound);
+        }
+        this.errorBound = errorBound;
+    }
+
+    /**
+     *
+     * @return the relative error bound of the approximation
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    /**
+     * Sets whether every hole pixel is filled from all the boundary pixels of the image (B), rather than only from the
+     * boundary pixels of its own connected component of the hole (B_i).
+     *
+     * @param globalBoundary true (the default) to fill from all the boundary pixels, false to fill per component
+     */
+    public void setGlobalBoundary(boolean globalBoundary) {
+        this.globalBoundary = globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is filled from all the boundary pixels of the image
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     * Fills the holes identified in the image using the specified weighting function.
+     * If no weighting function is set, a default is used. The method iterates over each hole pixel, computes an
+     * approximation of its value from the boundary quadtree, and updates the image's pixel values.
+     */
+    public void fillHoles() {
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        LongAdder evaluations = new LongAdder();
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            approximateFill(hole, this.img.getBoundaryIndices(), evaluations).fill(0, hole.length);
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                approximateFill(hole, component.getBoundaryIndices(), evaluations).fill(0, hole.length);
+            }
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(evaluations.sum());
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, splitting the hole pixels between the given
+     * number of threads. The result is identical to the sequential fill.
+     *
+     * @param threads the number of threads to use
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void fillHoles(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        if (threads == 1) {
+            fillHoles();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            fillHoles(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, running the work on the given pool.
+     * The result is identical to the sequential fill.
+     *
+     * @param pool the pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public void fillHoles(ForkJoinPool pool) {
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        LongAdder evaluations = new LongAdder();
+        List<HoleFillTask> tasks = new ArrayList<>();
+        if (this.globalBoundary) {
+            int[] hole = this.img.getHoleIndices();
+            tasks.add(new HoleFillTask(0, hole.length, HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                    approximateFill(hole, this.img.getBoundaryIndices(), evaluations)));
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                tasks.add(new HoleFillTask(0, hole.length,
+                        HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                        approximateFill(hole, component.getBoundaryIndices(), evaluations)));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(evaluations.sum());
+        }
+    }
+
+    /**
+     * Measures the error of the filled hole against the exact fill of {@link ImageHoleFiller} with the same weighting
+     * function, from the same boundary pixels. Must be called after the hole was filled. Computing the exact value is
+     * O(|B|) per hole pixel, so at most maxSamples hole pixels, evenly spread over the hole, are measured.
+     *
+     * @param maxSamples the largest number of hole pixels to measure
+     * @return the max and mean absolute error of the measured hole pixels
+     */
+    public ApproximationError measureError(int maxSamples) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        if (!this.globalBoundary) {
+            return ApproximationError.measure(this.img.getImage(), this.img.getComponents(), this.W, maxSamples);
+        }
+        return ApproximationError.measure(this.img.getImage(), this.img.getHoleIndices(),
+                this.img.getBoundaryIndices(), this.W, maxSamples);
+    }
+
+    /**
+     * Prepares an approximate fill of the given hole pixels: builds the quadtree of their boundary pixels once, to be
+     * shared by all threads.
+     * @param hole The indices of the hole pixels
+     * @param boundaries The indices of the boundary pixels they are filled from
+     * @param evaluations Counts the pseudo-pixels and the boundary pixels whose weight is evaluated
+     * @return Fills a range of the hole pixels
+     */
+    private HoleFillTask.RangeFill approximateFill(int[] hole, int[] boundaries, LongAdder evaluations) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        RadialWeightingFunc W = this.W;
+        double errorBound = this.errorBound;
+        ImageMatrix image = this.img.getImage();
+        BoundaryQuadtree tree = new BoundaryQuadtree(BoundarySnapshot.of(image, boundaries));
+        return (from, to) -> {
+            int[] stack = new int[3 * tree.depth() + 1];
+            // the weights evaluated in the range, added up once rather than per hole pixel
+            long[] rangeEvaluations = new long[1];
+            for (int i = from; i < to; i++) {
+                int u = hole[i];
+                image.set(u, approximateValue(image.xOf(u), image.yOf(u), tree, W, errorBound, stack,
+                        rangeEvaluations));
+            }
+            evaluations.add(rangeEvaluations[0]);
+        };
+    }
+
+    /**
+     * Computes the approximate value of a single hole pixel, walking the quadtree from its root: a node that is far
+     * enough is used as a pseudo-pixel, a leaf that is too near is summed pixel by pixel, and any other node is
+     * replaced by its children. The pseudo-pixels and the boundary pixels used are added to evaluations[0].
+     */
+    private static float approximateValue(int ux, int uy, BoundaryQuadtree tree, RadialWeightingFunc W,
+                                          double errorBound, int[] stack, long[] evaluations) {
+        double numerator = 0;
+        double dominator = 0;
+        int top = 0;
+        if (tree.nodeCount() > 0) {
+            stack[top++] = 0;
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            double dx = ux - tree.centroidX[node];
+            double dy = uy - tree.centroidY[node];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            double radius = tree.radius[node];
+            if (distance > radius) {
+                float nearWeight = W.weightAtDistance(distance - radius);
+                float farWeight = W.weightAtDistance(distance + radius);
+                float weightRes = W.weightAtDistance(distance);
+                // the curvature of the weight along the direction to the centroid, and across it
+                double radialError = Math.abs(nearWeight + farWeight - 2.0 * weightRes);
+                double tangentialError = (nearWeight - farWeight) * radius / (2 * distance);
+                if (Math.max(radialError, tangentialError) <= 2 * errorBound * weightRes) {
+                    numerator += weightRes * tree.valueSum[node];
+                    dominator += (double) weightRes * (tree.end[node] - tree.start[node]);
+                    evaluations[0]++;
+                    continue;
+                }
+            }
+            if (tree.isLeaf(node)) {
+                for (int j = tree.start[node]; j < tree.end[node]; j++) {
+                    float weightRes = W.calculateWeight(ux, uy, tree.x[j], tree.y[j], tree.value[j]);
+                    numerator += weightRes * tree.value[j];
+                    dominator += weightRes;
+                }
+                evaluations[0] += tree.end[node] - tree.start[node];
+            } else {
+                for (int child = tree.firstChild[node] + tree.childCount[node] - 1; child >= tree.firstChild[node];
+                     child--) {
+                    stack[top++] = child;
+                }
+            }
+        }
+        return (float) (numerator / dominator);
+    }
+
+    /**
+     * Returns the com.example.holeFilling.ImageProcessor instance used by this hole filler.
+     * This processor is responsible for all image handling and processing tasks including loading the image and
+     * detecting holes and boundaries.
+     *
+     * @return the com.example.holeFilling.ImageProcessor instance used by this hole filler.
+     */
+    public ImageProcessor getImg() {
+        return img;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.example.holeFilling;
+
+/**
+ * This class represents a grayscale image as a single flat, row-major array of "I" values.
+ * Each pixel holds a float in the range [0,1], or {@link #HOLE} (-1) in case of a hole pixel before applying the
+ * algorithm calculation.
+ * Pixels are addressed either by their (x,y) coordinates or by their packed index {@code y * stride + x}, which is the
+ * representation used for the hole (H) and boundaries (B) pixel sets by {@link ImageProcessor}.
+ * Keeping the whole image in one primitive array avoids allocating an object per pixel, which matters for large images.
+ */
+public class ImageMatrix {
+    /**
+     * The "I" value marking a hole pixel that was not filled yet.
+     */
+    public static final float HOLE = -1;
+
+    private final float[] data;
+    private final int width;
+    private final int height;
+    private final int stride;
+
+    /**
+     * Initializes a new image matrix of the given size, with all pixel values set to 0.
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     */
+    public ImageMatrix(int width, int height) {
+        this(new float[checkedSize(width, height)], width, height, width);
+    }
+
+    /**
+     * Initializes a new image matrix on top of an existing row-major array of "I" values.
+     * The array is used as is, without copying it.
+     * @param data The row-major array of pixel values
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param stride The distance, in array elements, between the beginnings of two consecutive rows
+     * @throws IllegalArgumentException if the dimensions don't match the given array
+     */
+    public ImageMatrix(float[] data, int width, int height, int stride) {
+        if (width <= 0 || height <= 0 || stride < width) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + width + "x" + height + ", stride "
+                    + stride);
+        }
+        if ((long) stride * (height - 1) + width > data.length) {
+            throw new IllegalArgumentException("The data array is too small for a " + width + "x" + height + " image");
+        }
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    private static int checkedSize(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + width + "x" + height);
+        }
+        return width * height;
+    }
+
+    /**
+     *
+     * @return The width of the image in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return The height of the image in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @return The distance, in array elements, between the beginnings of two consecutive rows
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Returns the underlying row-major array of "I" values. Changes to the array are reflected in the image.
+     * @return The underlying array of pixel values
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Packs the given coordinates into a pixel index.
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @return The index of the pixel in the underlying array
+     */
+    public int index(int x, int y) {
+        return y * stride + x;
+    }
+
+    /**
+     *
+     * @param index The index of a pixel in the underlying array
+     * @return The X coordinate of the pixel
+     */
+    public int xOf(int index) {
+        return index % stride;
+    }
+
+    /**
+     *
+     * @param index The index of a pixel in the underlying array
+     * @return The Y coordinate of the pixel
+     */
+    public int yOf(int index) {
+        return index / stride;
+    }
+
+    /**
+     *
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @return The "I" value of the pixel
+     */
+    public float get(int x, int y) {
+        return data[y * stride + x];
+    }
+
+    /**
+     * Sets the "I" value of the pixel in the given coordinates.
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @param pixelValue The "I" value of the pixel
+     */
+    public void set(int x, int y, float pixelValue) {
+        data[y * stride + x] = pixelValue;
+    }
+
+    /**
+     *
+     * @param index The index of a pixel in the underlying array
+     * @return The "I" value of the pixel
+     */
+    public float get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Sets the "I" value of the pixel in the given index.
+     * @param index The index of a pixel in the underlying array
+     * @param pixelValue The "I" value of the pixel
+     */
+    public void set(int index, float pixelValue) {
+        data[index] = pixelValue;
+    }
+
+    /**
+     *
+     * @param index The index of a pixel in the underlying array
+     * @return true if the pixel is a hole pixel that was not filled yet
+     */
+    public boolean isHole(int index) {
+        return data[index] == HOLE;
+    }
+}
@@ -2,23 +2,39 @@ package com.example.holeFilling;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
  * This class processes images by loading them along with a mask, identifying holes and their boundaries,
  * and preparers image's data for the manipulation of filling the hole using {@link ImageHoleFiller}.
  * The class also provides methods to convert the processed image data back into a grayscale image.
+ * When metrics are enabled (see {@link FillMetrics}), a processor loading its image from files starts a run, every
+ * stage of the processing is measured, and the run is reported when the image is saved. A processor of an image that
+ * is already in memory measures nothing, since it is usually a part of a larger run, e.g. a band of a tiled fill or the
+ * mask of a fill plan; the code driving the run passes it in instead.
  *
  */
 public class ImageProcessor {
-    private Point[][] matrixImage;
-    private Set<Point> H;
-    private Set<Point> B;
+    private static final Logger LOGGER = Logger.getLogger(ImageProcessor.class.getName());
+    private ImageMatrix image;
+    private int[] H;
+    private int[] B;
+    private int connectivityType;
+    private HoleComponent[] components;
+    private Point[][] matrixView;
+    // the hole pixels found by the last hole detection, which the boundaries are detected from
+    private HoleMask holeMask;
+    // the mask plane of a raw file, which the next hole detection uses instead of scanning the image
+    private HoleMask loadedMask;
+    // the raw file the image was loaded from, if any, which a fill is written back to in place
+    private RawImage rawSource;
+    private final FillMetrics metrics;
 
 
     /**
@@ -31,11 +47,12 @@ public class ImageProcessor {
      * @throws RuntimeException if there is an error processing the image files, throws the original IOException
      */
     public ImageProcessor(String inputImage, String inputMask, int connectivityType){
+        this.metrics = FillMetrics.startRun();
         try{
             loadImage(inputImage,inputMask);
-            System.out.println("Successfully loaded image");
+            LOGGER.log(Level.INFO, "Successfully loaded image {0}", inputImage);
         } catch (IOException e) {
-            System.out.println("Error processing image: " + e.getMessage());
+            LOGGER.log(Level.SEVERE, "Error processing image: " + e.getMessage(), e);
             throw new RuntimeException("Failed to load images due to an I/O error.", e);
         }
         findH();
@@ -43,7 +60,77 @@ public class ImageProcessor {
     }
 
     /**
-     * Loads the image and the mask from specified file paths, converting them to a matrix representation.
+     * Initializes a new instance of the com.example.holeFilling.ImageProcessor class from an image and a mask that are
+     * already decoded in memory, finding the hole (H) and boundary (B) pixels based on the provided connectivity type.
+     *
+     * @param image the original image
+     * @param mask the image representing the hole in the image, of the same size as the original image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public ImageProcessor(BufferedImage image, BufferedImage mask, int connectivityType){
+        this(image, mask, connectivityType, null);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageProcessor class from an image and a mask that are
+     * already decoded in memory, measuring its stages in the given run.
+     *
+     * @param image the original image
+     * @param mask the image representing the hole in the image, of the same size as the original image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param metrics the run the stages are measured in, or null to measure nothing
+     */
+    ImageProcessor(BufferedImage image, BufferedImage mask, int connectivityType, FillMetrics metrics){
+        this.metrics = metrics;
+        loadImage(image, mask);
+        findH();
+        findB(connectivityType);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageProcessor class from memory-mapped raw files (see
+     * {@link RawImage}), finding the hole (H) and boundary (B) pixels based on the provided connectivity type.
+     *
+     * @param image the raw file holding the original image
+     * @param mask the raw file holding the mask plane of the hole, which may be the image file itself
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public ImageProcessor(RawImage image, RawImage mask, int connectivityType){
+        this.metrics = FillMetrics.startRun();
+        loadImage(image, mask);
+        findH();
+        findB(connectivityType);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageProcessor class on an image matrix whose hole
+     * pixels are already marked with {@link ImageMatrix#HOLE}, finding the hole (H) and boundary (B) pixels based on
+     * the provided connectivity type. The matrix is used as is, without copying it.
+     *
+     * @param image the flat representation of the image, with its hole pixels marked
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public ImageProcessor(ImageMatrix image, int connectivityType){
+        this(image, connectivityType, null);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.ImageProcessor class on an image matrix whose hole
+     * pixels are already marked with {@link ImageMatrix#HOLE}, measuring its stages in the given run.
+     *
+     * @param image the flat representation of the image, with its hole pixels marked
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param metrics the run the stages are measured in, or null to measure nothing
+     */
+    ImageProcessor(ImageMatrix image, int connectivityType, FillMetrics metrics){
+        this.metrics = metrics;
+        this.image = image;
+        findH();
+        findB(connectivityType);
+    }
+
+    /**
+     * Loads the image and the mask from specified file paths, converting them to a flat {@link ImageMatrix}.
      * Each pixel in the image is compared to the mask to determine if it is part of the hole.
      * Pixels identified as part of a hole are assigned a value of -1, others are assigned their grayscale value.
      * @param inputImage a String path to the original image
@@ -51,136 +138,342 @@ public class ImageProcessor {
      */
 
     public void loadImage(String inputImage, String inputMask) throws IOException{
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.DECODE);
+        }
         BufferedImage image = ImageIO.read(new File(inputImage));
         BufferedImage mask = ImageIO.read(new File(inputMask));
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.DECODE);
+        }
+        loadImage(image, mask);
+    }
+
+    /**
+     * Converts an image and a mask that are already decoded in memory to a flat {@link ImageMatrix}.
+     * Pixels identified as part of a hole are assigned a value of -1, others are assigned their grayscale value.
+     * @param image the original image
+     * @param mask the image representing the hole in the image, of the same size as the original image
+     * @throws IllegalArgumentException if the image and the mask are not of the same size
+     */
+    public void loadImage(BufferedImage image, BufferedImage mask) {
+        if (image.getWidth() != mask.getWidth() || image.getHeight() != mask.getHeight()) {
+            throw new IllegalArgumentException("The mask must be of the same size as the image");
+        }
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.MASK_SCAN);
+        }
         int width = image.getWidth();
         int height = image.getHeight();
-        float pixelValue;
-        matrixImage = new Point[height][width];
-        for (int x = 0; x < width; x++){
-            for (int y = 0; y < height; y++){
-                // first check if the pixel is a part of the hole
-                Color rgbHole = new Color(mask.getRGB(x,y));
-                if (convertRgbToGray(rgbHole) < 0.5){
-                    pixelValue = -1;
-                }
-                // if not, assign the grayscale normalized value (i.e. "I" value) to the point
-                else {
-                    Color rgbImage = new Color(image.getRGB(x,y));
-                    pixelValue = convertRgbToGray(rgbImage);
-                }
-                matrixImage[y][x] = new Point(y,x,pixelValue);
+        ImageMatrix matrix = new ImageMatrix(width, height);
+        float[] data = matrix.getData();
+        RasterIO.GrayRows imageRows = RasterIO.grayRows(image);
+        RasterIO.GrayRows maskRows = RasterIO.grayRows(mask);
+        int[] imageGray = new int[width];
+        int[] maskGray = new int[width];
+        for (int y = 0; y < height; y++){
+            imageRows.read(y, imageGray);
+            maskRows.read(y, maskGray);
+            int rowStart = matrix.index(0, y);
+            for (int x = 0; x < width; x++){
+                // first check if the pixel is a part of the hole, if not, assign the grayscale normalized value
+                // (i.e. "I" value) to the point
+                data[rowStart + x] = RasterIO.isHoleLevel(maskGray[x]) ? ImageMatrix.HOLE : (float) imageGray[x] / 255;
             }
         }
-
+        this.image = matrix;
+        this.matrixView = null;
+        this.components = null;
+        this.holeMask = null;
+        this.loadedMask = null;
+        this.rawSource = null;
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.MASK_SCAN);
+        }
     }
 
+
     /**
-     * Gets a color object and converts it to a grayscale rgb representation, normalized to the range [0,1]
-     * @param rgb The original color of the given pixel
-     * @return The "I" representation of the given color
+     * Reads the image plane of a raw file to a flat {@link ImageMatrix}, and marks the pixels set in the mask plane
+     * of the mask file as hole pixels, with the value -1. The mask plane is kept for the next hole detection, so the
+     * image isn't scanned for its hole.
+     * If the mask file is the image file and it holds no mask plane, the hole pixels are the ones already marked with
+     * -1 in a float32 image plane.
+     * @param image the raw file holding the original image
+     * @param mask the raw file holding the mask plane of the hole, which may be the image file itself
+     * @throws IllegalArgumentException if the mask file has no mask plane, or is not of the same size as the image
      */
-     private float convertRgbToGray(Color rgb){
-         int converted = (int)(rgb.getRed() * 0.299 + rgb.getGreen() * 0.587 + rgb.getBlue() * 0.114);
-         return (float)converted/255;
-
-     }
+    public void loadImage(RawImage image, RawImage mask) {
+        if (image.getWidth() != mask.getWidth() || image.getHeight() != mask.getHeight()) {
+            throw new IllegalArgumentException("The mask must be of the same size as the image");
+        }
+        if (mask != image && !mask.hasMask()) {
+            throw new IllegalArgumentException("The raw mask file holds no mask plane");
+        }
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.DECODE);
+        }
+        ImageMatrix matrix = image.readImage();
+        HoleMask holes = mask.hasMask() ? mask.readMask() : null;
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.DECODE);
+            metrics.begin(FillMetrics.Stage.MASK_SCAN);
+        }
+        if (holes != null) {
+            float[] data = matrix.getData();
+            for (int u : holes.indices(matrix.getStride())) {
+                data[u] = ImageMatrix.HOLE;
+            }
+        }
+        this.image = matrix;
+        this.matrixView = null;
+        this.components = null;
+        this.holeMask = null;
+        this.loadedMask = holes;
+        this.rawSource = image;
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.MASK_SCAN);
+        }
+    }
 
 
     /**
-     * Finds all points in the image's matrix representation, that belong to the hole,
-     * and adds them to a set of points H - property of the class
+     * Finds all pixels in the image's matrix representation, that belong to the hole,
+     * and stores their indices, in row-major order, as the H property of the class.
+     * The hole pixels are first packed into a {@link HoleMask}, a bit per pixel, which the boundaries are then
+     * detected from.
      */
     public void findH(){
-        Set<Point> H = new HashSet<>();
-        for (Point[] points : this.matrixImage) {
-            for (int j = 0; j < this.matrixImage[0].length; j++) {
-                if (points[j].getPixelValue() == -1) {
-                    H.add(points[j]);
-                }
-            }
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FIND_H);
         }
+        // the mask plane of a raw file that was just loaded spares scanning the image
+        this.holeMask = this.loadedMask != null ? this.loadedMask : HoleMask.of(this.image);
+        this.loadedMask = null;
+        int[] H = this.holeMask.indices(this.image.getStride());
         this.H = H;
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FIND_H);
+            metrics.setHolePixels(H.length);
+        }
     }
 
 
     /**
-     * Finds all points in the image's matrix representation, that adjacent to the hole, according to the given
-     * connectivity type and adds them to a set of points B - the boundaries property of the class.
+     * Finds all pixels in the image's matrix representation, that adjacent to the hole, according to the given
+     * connectivity type and stores their indices, in row-major order, as the B - the boundaries property of the class.
+     * Neighbours that fall outside the image are ignored.
+     * The boundaries are the dilation of the hole minus the hole itself, computed 64 pixels at a time on the
+     * {@link HoleMask} of the last hole detection.
      * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
      */
     public void findB(int connectivityType){
-        Set<Point> B = new HashSet<>();
-        // first determine which neighbours we need to traverse, according to the connectivity type
-        int[][] directions = (connectivityType == 8) ?
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FIND_B);
+        }
+        if (this.holeMask == null) {
+            this.holeMask = HoleMask.of(this.image);
+        }
+        int[] B = this.holeMask.dilate(connectivityType).andNot(this.holeMask).indices(this.image.getStride());
+        this.B = B;
+        this.connectivityType = connectivityType;
+        this.components = null;
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FIND_B);
+            metrics.setBoundaryPixels(B.length);
+        }
+    }
+
+    /**
+     * Returns the offsets of the neighbours of a pixel, according to the connectivity type
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency
+     * @return {dx, dy} pairs of the 4 or 8 neighbours of a pixel
+     */
+    static int[][] neighbourDirections(int connectivityType){
+        return (connectivityType == 8) ?
                 new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}} :
                 new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
-        for (Point p: this.H){
-            int x = p.getX();
-            int y = p.getY();
-            for (int[] dir : directions) {
-                int nx = x + dir[0];
-                int ny = y + dir[1];
-                // Check if the neighbor is not part of the hole
-                if (this.matrixImage[ny][nx].getPixelValue() != -1) {
-                    B.add(matrixImage[ny][nx]);
-                }
+    }
+
+    /**
+     * Splits the hole into its connected components, each with its own hole pixels (H_i) and boundary pixels (B_i),
+     * using the connectivity type of the last boundaries detection. The components are computed on the first call
+     * after the image is loaded or the boundaries are detected, from the {@link HoleMask} of the last hole detection,
+     * so they still describe the hole once it is filled.
+     * @return the connected components of the hole, in row-major order of their first pixel
+     */
+    public HoleComponent[] getComponents() {
+        if (components == null) {
+            if (this.holeMask == null) {
+                this.holeMask = HoleMask.of(this.image);
             }
+            components = HoleComponent.label(this.holeMask, this.image.getStride(), this.connectivityType);
         }
-        this.B = B;
+        return components;
     }
 
     /**
      * This function converts the image's matrix representation, according to the "I" values of the pixels, back to
-     * a grayscale image and saves the image
+     * a grayscale image and saves the image. The metrics of the run, if enabled, are then reported.
      * @param outPath a String path to the output image
      */
     public void saveGrayscaleImage(String outPath){
-        int height = matrixImage.length;
-        int width = matrixImage[0].length;
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++){
-                // converting back to none normalized values
-                int rgbValue = (int)(matrixImage[i][j].getPixelValue() * 255);
-                // bitwise assigning the same value to all 3 rgb component
-                int rgb = (rgbValue << 16) | (rgbValue << 8) | rgbValue;
-                image.setRGB(j,i,rgb);
-            }
+        BufferedImage image = toGrayscaleImage();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.ENCODE);
         }
-
         try {
             File outputFile = new File(outPath);
             ImageIO.write(image, "png", outputFile);
-            System.out.println("Image saved successfully to " + outPath);
+            LOGGER.log(Level.INFO, "Image saved successfully to {0}", outPath);
         } catch (IOException e) {
-            System.out.println("Error saving the image: " + e.getMessage());
+            LOGGER.log(Level.SEVERE, "Error saving the image: " + e.getMessage(), e);
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.ENCODE);
+        }
+        reportMetrics();
+    }
+
+    /**
+     * This function writes the image's matrix representation to a raw file (see {@link RawImage}) and flushes it.
+     * If the file is the one the image was loaded from, only the hole pixels are written, in place; otherwise the
+     * whole image is written, together with the hole as the mask plane if the file has one. The metrics of the run,
+     * if enabled, are then reported.
+     * @param target the raw file, writable and of the same size as the image
+     */
+    public void saveRawImage(RawImage target){
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.ENCODE);
+        }
+        if (target == this.rawSource) {
+            target.writePixels(this.image, this.H);
+        } else {
+            target.writeImage(this.image);
+            if (target.hasMask() && this.holeMask != null) {
+                target.writeMask(this.holeMask);
+            }
+        }
+        target.force();
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.ENCODE);
+        }
+        reportMetrics();
+    }
+
+    /**
+     * This function converts the image's matrix representation, according to the "I" values of the pixels, back to
+     * a grayscale image, without encoding it
+     * @return the grayscale image
+     */
+    public BufferedImage toGrayscaleImage(){
+        if (metrics == null) {
+            return RasterIO.toGrayImage(this.image);
+        }
+        metrics.begin(FillMetrics.Stage.ENCODE);
+        BufferedImage image = RasterIO.toGrayImage(this.image);
+        metrics.end(FillMetrics.Stage.ENCODE);
+        return image;
+    }
+
+    /**
+     * This function returns the metrics of the processing of the image, which the fillers add their fill to.
+     * @return the metrics of the run, or null if metrics were disabled when the processor was created, or the
+     *         processor wasn't given a run
+     */
+    public FillMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reports the metrics of the run to the registered listeners (see {@link FillMetrics#addListener}), for runs that
+     * don't save the image with {@link #saveGrayscaleImage(String)}. Does nothing if metrics are disabled.
+     */
+    public void reportMetrics() {
+        if (metrics != null) {
+            metrics.report();
         }
     }
 
+    /**
+     * This function returns the current flat representation of the image which is being processed.
+     * @return current flat representation of the image which is being processed.
+     */
+    public ImageMatrix getImage() {
+        return image;
+    }
+
     /**
      * This function returns the current matrix representation of the image which is being processed.
      * The matrix is a matrix of points, representing the pixels of the image and the "I" value for each pixel.
+     * The points are a view of {@link #getImage()}: reading or setting their pixel value reads or sets the value in
+     * the image. The view is created on the first call, so callers working with {@link #getImage()} don't pay for it.
      * @return current matrix representation of the image which is being processed.
      */
     public Point[][] getMatrixImage() {
-        return matrixImage;
+        if (matrixView == null) {
+            int height = this.image.getHeight();
+            int width = this.image.getWidth();
+            Point[][] view = new Point[height][width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    view[y][x] = new MatrixPoint(this.image, y, x);
+                }
+            }
+            matrixView = view;
+        }
+        return matrixView;
+    }
+
+    /**
+     * This function returns the type of connectivity (4 or 8) used by the last boundaries detection.
+     * @return the type of connectivity used to define adjacency in the boundaries detection
+     */
+    public int getConnectivityType() {
+        return connectivityType;
+    }
+
+    /**
+     * This function returns the indices, in row-major order, of the pixels representing the hole in the image.
+     * @return current indices of the pixels representing the hole in the image.
+     */
+    public int[] getHoleIndices() {
+        return H;
+    }
+
+    /**
+     * This function returns the indices, in row-major order, of the pixels representing the hole's boundaries in the
+     * image.
+     * @return current indices of the pixels representing the hole's boundaries in the image.
+     */
+    public int[] getBoundaryIndices() {
+        return B;
     }
 
     /**
      * This function returns the current set of points representing the hole in the image.
+     * The points are taken from the view returned by {@link #getMatrixImage()}.
      * @return current set of points representing the hole in the image.
      */
     public Set<Point> getH() {
-        return H;
+        return toPoints(H);
     }
 
     /**
      * This function returns the current set of points representing the hole's boundaries in the image.
+     * The points are taken from the view returned by {@link #getMatrixImage()}.
      * @return current set of points representing the hole's boundaries in the image.
      */
     public Set<Point> getB() {
-        return B;
+        return toPoints(B);
     }
-}
 
+    private Set<Point> toPoints(int[] indices) {
+        Point[][] view = getMatrixImage();
+        Set<Point> points = new LinkedHashSet<>();
+        for (int p : indices) {
+            points.add(view[this.image.yOf(p)][this.image.xOf(p)]);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.holeFilling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A {@link FillListener} committing the metrics of every run as a JDK Flight Recorder event, named
+ * {@code com.example.holeFilling.Fill}, so runs can be correlated with GC pauses, allocation and thread activity in a
+ * recording, e.g. one started with {@code -XX:StartFlightRecording}. When no recording is running, the events are
+ * dropped and cost almost nothing.
+ */
+public class JfrFillListener implements FillListener {
+
+    /**
+     * Commits the metrics of a run as an event, if a recording is enabled for it.
+     * @param metrics The metrics of the run
+     */
+    @Override
+    public void runCompleted(FillMetrics metrics) {
+        FillEvent event = new FillEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.decode = metrics.getStageNanos(FillMetrics.Stage.DECODE);
+        event.maskScan = metrics.getStageNanos(FillMetrics.Stage.MASK_SCAN);
+        event.findH = metrics.getStageNanos(FillMetrics.Stage.FIND_H);
+        event.findB = metrics.getStageNanos(FillMetrics.Stage.FIND_B);
+        event.fill = metrics.getStageNanos(FillMetrics.Stage.FILL);
+        event.encode = metrics.getStageNanos(FillMetrics.Stage.ENCODE);
+        event.holePixels = metrics.getHolePixels();
+        event.boundaryPixels = metrics.getBoundaryPixels();
+        event.weightEvaluations = metrics.getWeightEvaluations();
+        event.pairsPerSecond = metrics.getPairsPerSecond();
+        event.allocatedBytes = metrics.getAllocatedBytes();
+        event.commit();
+    }
+
+    /**
+     * The event of a run, holding its metrics. It has no duration of its own, since the stages of a run may run on
+     * different threads.
+     */
+    @Name("com.example.holeFilling.Fill")
+    @Label("Hole Fill")
+    @Category("Hole Filling")
+    @Description("The metrics of a hole filling run")
+    @StackTrace(false)
+    static class FillEvent extends Event {
+        @Label("Decode")
+        @Timespan(Timespan.NANOSECONDS)
+        long decode;
+
+        @Label("Mask Scan")
+        @Timespan(Timespan.NANOSECONDS)
+        long maskScan;
+
+        @Label("Find H")
+        @Timespan(Timespan.NANOSECONDS)
+        long findH;
+
+        @Label("Find B")
+        @Timespan(Timespan.NANOSECONDS)
+        long findB;
+
+        @Label("Fill")
+        @Timespan(Timespan.NANOSECONDS)
+        long fill;
+
+        @Label("Encode")
+        @Timespan(Timespan.NANOSECONDS)
+        long encode;
+
+        @Label("Hole Pixels")
+        int holePixels;
+
+        @Label("Boundary Pixels")
+        int boundaryPixels;
+
+        @Label("Weight Evaluations")
+        long weightEvaluations;
+
+        @Label("Pairs Per Second")
+        double pairsPerSecond;
+
+        @Label("Allocated")
+        @DataAmount(DataAmount.BYTES)
+        long allocatedBytes;
+    }
+}
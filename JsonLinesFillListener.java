@@ -0,0 +1,57 @@
+package com.example.holeFilling;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link FillListener} writing the metrics of every run as a line of JSON (see {@link FillMetrics#toJson()}), so a
+ * run is exported as soon as it is reported, and the file can be read line by line while it is being written.
+ */
+public class JsonLinesFillListener implements FillListener, Closeable {
+    private final Writer out;
+
+    /**
+     * Initializes a new listener writing to the given writer. Every line is flushed once written.
+     * @param out The writer receiving the lines
+     */
+    public JsonLinesFillListener(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Initializes a new listener appending to the given file, creating it if it doesn't exist.
+     * @param path The file receiving the lines
+     * @throws IOException if the file can't be opened
+     */
+    public JsonLinesFillListener(Path path) throws IOException {
+        this(Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Writes the metrics of a run as a line.
+     * @param metrics The metrics of the run
+     * @throws UncheckedIOException if the line can't be written
+     */
+    @Override
+    public synchronized void runCompleted(FillMetrics metrics) {
+        try {
+            out.write(metrics.toJson());
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * A {@link FillKernel} for radial weighting functions with a finite support radius (see
+ * {@link WeightingFunc#getSupportRadius()}): it only visits the boundary pixels within the radius of a hole pixel,
+ * through a {@link BoundaryGrid}, and looks their weights up in a table indexed by the integer squared distance, so
+ * no square root or power is computed in the inner loop.
+ * A hole pixel with no boundary pixel within the radius gets no weight at all. Its value is then computed by a
+ * fallback kernel over the whole boundary, e.g. the kernel of the base function of a {@link CutoffWeightingFunc}.
+ * The weighted sums themselves never fall back, since they may be combined over several sets of boundary pixels.
+ * The sums of {@link #weightedSums} are accumulated with the precision given by an {@link Accumulation}.
+ */
+final class LocalFillKernel implements FillKernel {
+    // the largest radius handled by the kernel, so that squared distances within the grid cells fit an int
+    static final double MAX_RADIUS = 1 << 15;
+    // the largest table of weights, in entries; larger radii calculate the weights instead
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+
+    private final RadialWeightingFunc W;
+    private final int radius;
+    private final int maxSquaredDistance;
+    private final float[] table;
+    private final FillKernel fallback;
+    private final Accumulation accumulation;
+
+    /**
+     * Initializes a new kernel for the given weighting function, accumulating in float.
+     * @param W the weighting function, with a finite support radius of at most {@link #MAX_RADIUS}
+     * @param fallback the kernel computing the values of hole pixels with no boundary pixel within the radius, or
+     *                 null to leave them undefined, like a weighting function whose weights are all 0
+     */
+    LocalFillKernel(RadialWeightingFunc W, FillKernel fallback) {
+        this(W, fallback, Accumulation.FLOAT);
+    }
+
+    /**
+     * Initializes a new kernel for the given weighting function.
+     * @param W the weighting function, with a finite support radius of at most {@link #MAX_RADIUS}
+     * @param fallback the kernel computing the values of hole pixels with no boundary pixel within the radius, or
+     *                 null to leave them undefined, like a weighting function whose weights are all 0
+     * @param accumulation the precision of the weighted sums
+     */
+    LocalFillKernel(RadialWeightingFunc W, FillKernel fallback, Accumulation accumulation) {
+        double supportRadius = W.getSupportRadius();
+        this.W = W;
+        this.radius = (int) Math.ceil(supportRadius);
+        this.maxSquaredDistance = (int) Math.floor(supportRadius * supportRadius);
+        this.table = maxSquaredDistance < MAX_TABLE_SIZE ? W.tabulate(maxSquaredDistance) : null;
+        this.fallback = fallback;
+        this.accumulation = accumulation;
+    }
+
+    private float weight(int squaredDistance) {
+        return table != null ? table[squaredDistance] : W.weightAtDistance((float) Math.sqrt(squaredDistance));
+    }
+
+    @Override
+    public void weightedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        BoundaryGrid grid = boundary.grid((radius + 1) / 2);
+        float[] bValue = grid.channels[0];
+        float numerator = 0;
+        float dominator = 0;
+        int firstColumn = Math.max(0, (ux - radius - grid.minX) / grid.cellSize);
+        int lastColumn = Math.min(grid.columns - 1, Math.floorDiv(ux + radius - grid.minX, grid.cellSize));
+        int firstRow = Math.max(0, (uy - radius - grid.minY) / grid.cellSize);
+        int lastRow = Math.min(grid.rows - 1, Math.floorDiv(uy + radius - grid.minY, grid.cellSize));
+        if (firstColumn > lastColumn) {
+            firstRow = lastRow + 1;
+        }
+        if (accumulation != Accumulation.FLOAT) {
+            preciseSums(ux, uy, grid, firstColumn, lastColumn, firstRow, lastRow, sums);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            // the cells of a grid row are consecutive, so their pixels are one range
+            int end = grid.cellStart[row * grid.columns + lastColumn + 1];
+            for (int i = grid.cellStart[row * grid.columns + firstColumn]; i < end; i++) {
+                int dx = ux - grid.x[i];
+                int dy = uy - grid.y[i];
+                int squaredDistance = dx * dx + dy * dy;
+                if (squaredDistance <= maxSquaredDistance) {
+                    float weightRes = weight(squaredDistance);
+                    numerator += weightRes * bValue[i];
+                    dominator += weightRes;
+                }
+            }
+        }
+        sums[0] = numerator;
+        sums[1] = dominator;
+    }
+
+    // the weighted sums over the given cells of the grid, in double or compensated float
+    private void preciseSums(int ux, int uy, BoundaryGrid grid, int firstColumn, int lastColumn, int firstRow,
+                             int lastRow, float[] sums) {
+        float[] bValue = grid.channels[0];
+        boolean compensated = accumulation == Accumulation.KAHAN;
+        double numerator = 0;
+        double dominator = 0;
+        float floatNumerator = 0;
+        float numeratorError = 0;
+        float floatDominator = 0;
+        float dominatorError = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int end = grid.cellStart[row * grid.columns + lastColumn + 1];
+            for (int i = grid.cellStart[row * grid.columns + firstColumn]; i < end; i++) {
+                int dx = ux - grid.x[i];
+                int dy = uy - grid.y[i];
+                int squaredDistance = dx * dx + dy * dy;
+                if (squaredDistance > maxSquaredDistance) {
+                    continue;
+                }
+                float weightRes = weight(squaredDistance);
+                if (compensated) {
+                    float term = weightRes * bValue[i];
+                    float sum = floatNumerator + term;
+                    numeratorError += CompensatedSum.error(floatNumerator, term, sum);
+                    floatNumerator = sum;
+                    sum = floatDominator + weightRes;
+                    dominatorError += CompensatedSum.error(floatDominator, weightRes, sum);
+                    floatDominator = sum;
+                } else {
+                    numerator += (double) weightRes * bValue[i];
+                    dominator += weightRes;
+                }
+            }
+        }
+        if (compensated) {
+            sums[0] = floatNumerator + numeratorError;
+            sums[1] = floatDominator + dominatorError;
+        } else {
+            sums[0] = (float) numerator;
+            sums[1] = (float) dominator;
+        }
+    }
+
+    @Override
+    public float fillValue(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        weightedSums(ux, uy, boundary, sums);
+        if (sums[1] == 0 && fallback != null) {
+            return fallback.fillValue(ux, uy, boundary, sums);
+        }
+        return sums[0] / sums[1];
+    }
+
+    @Override
+    public void fillValues(int ux, int uy, BoundarySnapshot boundary, float[] values) {
+        BoundaryGrid grid = boundary.grid((radius + 1) / 2);
+        float[][] channels = grid.channels;
+        Arrays.fill(values, 0);
+        float dominator = 0;
+        int firstColumn = Math.max(0, (ux - radius - grid.minX) / grid.cellSize);
+        int lastColumn = Math.min(grid.columns - 1, Math.floorDiv(ux + radius - grid.minX, grid.cellSize));
+        int firstRow = Math.max(0, (uy - radius - grid.minY) / grid.cellSize);
+        int lastRow = Math.min(grid.rows - 1, Math.floorDiv(uy + radius - grid.minY, grid.cellSize));
+        if (firstColumn > lastColumn) {
+            firstRow = lastRow + 1;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            int end = grid.cellStart[row * grid.columns + lastColumn + 1];
+            for (int i = grid.cellStart[row * grid.columns + firstColumn]; i < end; i++) {
+                int dx = ux - grid.x[i];
+                int dy = uy - grid.y[i];
+                int squaredDistance = dx * dx + dy * dy;
+                if (squaredDistance <= maxSquaredDistance) {
+                    float weightRes = weight(squaredDistance);
+                    for (int c = 0; c < channels.length; c++) {
+                        values[c] += weightRes * channels[c][i];
+                    }
+                    dominator += weightRes;
+                }
+            }
+        }
+        if (dominator == 0 && fallback != null) {
+            fallback.fillValues(ux, uy, boundary, values);
+            return;
+        }
+        for (int c = 0; c < channels.length; c++) {
+            values[c] /= dominator;
+        }
+    }
+}
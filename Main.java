@@ -1,13 +1,76 @@
 package com.example.holeFilling;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 
 public class Main {
+    private static final String USAGE = "Usage: java com.example.holeFilling.Main <inputImage> <inputMask> <connectivityType> <outputImage>\n"
+            + "       java com.example.holeFilling.Main --color <inputImage> <inputMask> <connectivityType> <outputImage>\n"
+            + "       java com.example.holeFilling.Main --pyramid <levels> <inputImage> <inputMask> <connectivityType> <outputImage>\n"
+            + "       java com.example.holeFilling.Main --batch <manifest> <connectivityType> [threads]\n"
+            + "       java com.example.holeFilling.Main --batch-dir <imageDir> <maskDir> <outputDir> <glob> <connectivityType> [threads]\n"
+            + "       java com.example.holeFilling.Main --serve <port> <connectivityType> [threads [fileRoot]]\n"
+            + "       java com.example.holeFilling.Main --metrics <metricsFile> <any of the above>";
+
     public static void main(String[] args) {
          /* Command line utility:
-        java -cp "<proj_path>" com.example.holeFilling.Main <inputImage> <inputMask> <connectivityType> <outputImage> */
+        java -cp "<proj_path>" com.example.holeFilling.Main <inputImage> <inputMask> <connectivityType> <outputImage>
+        Add "--add-modules jdk.incubator.vector" to the java options to use the vectorized default weighting kernel.
+        Files with the ".raw" extension are read and written memory-mapped in the raw format of RawImage, and the
+        others as PNG. A raw image is filled in place when the output is the input image itself, and its mask may be
+        the image too, when it holds a mask plane.
+
+        Color mode, keeping the channels and the 8, 16 or 32-bit samples of the image (see MultiChannelHoleFiller),
+        writing the output in the format of its extension, e.g. png, or tiff for floating point images:
+        java -cp "<proj_path>" com.example.holeFilling.Main --color <inputImage> <inputMask> <connectivityType> <outputImage>
+
+        Pyramid mode, approximating the fill of large holes coarse to fine with the given number of levels above the
+        image, 0 being exact (see PyramidHoleFiller):
+        java -cp "<proj_path>" com.example.holeFilling.Main --pyramid <levels> <inputImage> <inputMask> <connectivityType> <outputImage>
+
+        Batch mode, processing many image/mask pairs in one JVM (see BatchProcessor):
+        java -cp "<proj_path>" com.example.holeFilling.Main --batch <manifest> <connectivityType> [threads]
+        where every line of the manifest is "<inputImage> <inputMask> <outputImage>", or
+        java -cp "<proj_path>" com.example.holeFilling.Main --batch-dir <imageDir> <maskDir> <outputDir> <glob> <connectivityType> [threads]
+        where every image matching the glob is paired with the mask of the same name.
+
+        Server mode, filling the images posted to http://localhost:<port>/fill until the JVM is stopped (see
+        FillServer), and with a file root, the image, mask and output files within it given as query parameters:
+        java -cp "<proj_path>" com.example.holeFilling.Main --serve <port> <connectivityType> [threads [fileRoot]]
+
+        Every mode fills each hole pixel from all the boundary pixels of the image, like the default of
+        ImageHoleFiller; filling every connected component of the hole only from its own boundary is available through
+        setGlobalBoundary(false) of the fillers.
+
+        Any mode can be preceded by "--metrics <metricsFile>" to append the metrics of every run to the file as a line
+        of JSON, and to commit them as JFR events when a flight recording is running (see FillMetrics). */
+
+        if (args.length > 0 && args[0].equals("--metrics")) {
+            runWithMetrics(args);
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith("--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--color")) {
+            runColor(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--pyramid")) {
+            runPyramid(args);
+            return;
+        }
 
         if (args.length < 4) {
-            System.out.println("Usage: java com.example.holeFilling.Main <inputImage> <inputMask> <connectivityType> <outputImage>");
+            System.out.println(USAGE);
             return;
         }
 
@@ -17,16 +80,151 @@ public class Main {
         String outputImage = args[3];
 
         try {
+            if (RawImage.isRawPath(inputImage)) {
+                fillRaw(inputImage, inputMask, connectivityType, outputImage);
+                System.out.println("Processing complete. Output saved to " + outputImage);
+                return;
+            }
             /* Initializes with the default weighting function as asked.
              * To use a custom weighting function, create a new class that implements
              * the WeightingFunc interface and pass its instance. */
             ImageHoleFiller res = new ImageHoleFiller(inputImage, inputMask, connectivityType);
-            res.fillHoles();
+            res.fillHoles(Runtime.getRuntime().availableProcessors());
             ImageProcessor img = res.getImg();
+            saveImage(img, outputImage, RawImage.SampleType.UINT8);
+            System.out.println("Processing complete. Output saved to " + outputImage);
+        } catch (Exception e) {
+            System.err.println("Error processing image: " + e.getMessage());
+        }
+    }
+
+    private static void fillRaw(String inputImage, String inputMask, int connectivityType, String outputImage)
+            throws IOException {
+        Path imagePath = Path.of(inputImage).toAbsolutePath().normalize();
+        Path maskPath = Path.of(inputMask).toAbsolutePath().normalize();
+        boolean inPlace = imagePath.equals(Path.of(outputImage).toAbsolutePath().normalize());
+        try (RawImage image = RawImage.open(imagePath, inPlace);
+             RawImage mask = maskPath.equals(imagePath) ? null : RawImage.open(maskPath, false)) {
+            ImageProcessor img = new ImageProcessor(image, mask == null ? image : mask, connectivityType);
+            new ImageHoleFiller(img, null).fillHoles(Runtime.getRuntime().availableProcessors());
+            if (inPlace) {
+                img.saveRawImage(image);
+            } else {
+                saveImage(img, outputImage, image.getSampleType());
+            }
+        }
+    }
+
+    // saves in the raw format, with the given sample type and the hole as the mask plane, or as PNG by the extension
+    private static void saveImage(ImageProcessor img, String outputImage, RawImage.SampleType sampleType)
+            throws IOException {
+        if (!RawImage.isRawPath(outputImage)) {
             img.saveGrayscaleImage(outputImage);
+            return;
+        }
+        ImageMatrix image = img.getImage();
+        try (RawImage output = RawImage.create(Path.of(outputImage), image.getWidth(), image.getHeight(), sampleType,
+                true)) {
+            img.saveRawImage(output);
+        }
+    }
+
+    private static void runWithMetrics(String[] args) {
+        if (args.length < 3) {
+            System.out.println(USAGE);
+            return;
+        }
+        JsonLinesFillListener json;
+        try {
+            json = new JsonLinesFillListener(Path.of(args[1]));
+        } catch (IOException e) {
+            System.err.println("Error opening the metrics file: " + e.getMessage());
+            return;
+        }
+        // the listeners stay registered until the JVM exits, so a server keeps reporting its requests
+        FillMetrics.addListener(json);
+        FillMetrics.addListener(new JfrFillListener());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                json.close();
+            } catch (IOException e) {
+                System.err.println("Error writing the metrics: " + e.getMessage());
+            }
+        }));
+        main(Arrays.copyOfRange(args, 2, args.length));
+    }
+
+    private static void runServer(String[] args) {
+        if (args.length < 3) {
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            FillServer server = new FillServer(Integer.parseInt(args[1]), Integer.parseInt(args[2]), threads);
+            if (args.length > 4) {
+                server.setFileRoot(Path.of(args[4]));
+            }
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.out.println("Listening on http://localhost:" + server.getPort() + "/fill");
+            // the server's dispatcher thread keeps the JVM running until it is stopped
+        } catch (Exception e) {
+            System.err.println("Error starting the server: " + e.getMessage());
+        }
+    }
+
+    private static void runColor(String[] args) {
+        if (args.length < 5) {
+            System.out.println(USAGE);
+            return;
+        }
+        String outputImage = args[4];
+        try {
+            MultiChannelHoleFiller res = new MultiChannelHoleFiller(args[1], args[2], Integer.parseInt(args[3]), null);
+            res.fillHoles(Runtime.getRuntime().availableProcessors());
+            res.saveImage(outputImage);
             System.out.println("Processing complete. Output saved to " + outputImage);
         } catch (Exception e) {
             System.err.println("Error processing image: " + e.getMessage());
         }
     }
+
+    private static void runPyramid(String[] args) {
+        if (args.length < 6) {
+            System.out.println(USAGE);
+            return;
+        }
+        String outputImage = args[5];
+        try {
+            PyramidHoleFiller res = new PyramidHoleFiller(args[2], args[3], Integer.parseInt(args[4]));
+            res.setLevels(Integer.parseInt(args[1]));
+            res.fillHoles(Runtime.getRuntime().availableProcessors());
+            res.getImg().saveGrayscaleImage(outputImage);
+            System.out.println("Processing complete. Output saved to " + outputImage);
+        } catch (Exception e) {
+            System.err.println("Error processing image: " + e.getMessage());
+        }
+    }
+
+    private static void runBatch(String[] args) {
+        boolean directory = args[0].equals("--batch-dir");
+        int required = directory ? 6 : 3;
+        if ((!directory && !args[0].equals("--batch")) || args.length < required) {
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            List<BatchProcessor.Pair> pairs = directory
+                    ? BatchProcessor.listDirectory(args[1], args[2], args[3], args[4])
+                    : BatchProcessor.readManifest(args[1]);
+            int connectivityType = Integer.parseInt(args[required - 1]);
+            int threads = args.length > required ? Integer.parseInt(args[required])
+                    : Runtime.getRuntime().availableProcessors();
+            BatchProcessor.Summary summary = new BatchProcessor(connectivityType, threads).process(pairs);
+            System.out.print(summary);
+        } catch (Exception e) {
+            System.err.println("Error processing batch: " + e.getMessage());
+        }
+    }
 }
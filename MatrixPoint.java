@@ -0,0 +1,33 @@
+package com.example.holeFilling;
+
+/**
+ * A {@link Point} that doesn't hold its own pixel value, but reads and writes it through to a pixel of an
+ * {@link ImageMatrix}. It is used to expose the flat image representation to callers that still work with points,
+ * so changes made through the point are reflected in the image and vice versa.
+ */
+class MatrixPoint extends Point {
+    private final ImageMatrix image;
+    private final int index;
+
+    /**
+     * Initializes a new point viewing the pixel in the given coordinates of the image
+     * @param image The image holding the pixel's value
+     * @param y The Y coordinate of this point
+     * @param x The X coordinate of this point
+     */
+    MatrixPoint(ImageMatrix image, int y, int x) {
+        super(y, x, 0);
+        this.image = image;
+        this.index = image.index(x, y);
+    }
+
+    @Override
+    public float getPixelValue() {
+        return image.get(index);
+    }
+
+    @Override
+    public void setPixelValue(float pixelValue) {
+        image.set(index, pixelValue);
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.holeFilling;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class is responsible for filling holes in color and high bit depth images, keeping all their channels and the
+ * precision of their samples (see {@link MultiChannelImage}), using a specified weighting function.
+ * The hole and its boundaries are detected from the mask like in {@link ImageHoleFiller}, and every channel of a hole
+ * pixel is the weighted average of the same channel of the boundary pixels. The weight between a hole pixel and a
+ * boundary pixel is calculated once for all the channels, so filling an RGB image costs little more than filling its
+ * grayscale version.
+ * Like {@link ImageHoleFiller}, every hole pixel is filled from all the boundary pixels of the image by default, and
+ * {@link #setGlobalBoundary(boolean)} set to false fills every connected component of the hole from its own boundary
+ * pixels.
+ * When metrics are enabled (see {@link FillMetrics}), the file constructor starts a run, which is measured on the
+ * processor holding the hole and reported when the image is saved with {@link #saveImage(String)}.
+ */
+public class MultiChannelHoleFiller {
+    private WeightingFunc W;
+    private final MultiChannelImage image;
+    private final ImageProcessor holes;
+    private boolean globalBoundary = true;
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.MultiChannelHoleFiller class with a specific weighting
+     * function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     * @throws IOException if the image or the mask can't be read
+     * @throws IllegalArgumentException if the image and the mask are not of the same size
+     */
+    public MultiChannelHoleFiller(String inputImage, String inputMask, int connectivityType, WeightingFunc W)
+            throws IOException {
+        FillMetrics metrics = FillMetrics.startRun();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.DECODE);
+        }
+        MultiChannelImage image = MultiChannelImage.read(inputImage);
+        BufferedImage mask = readMask(inputMask);
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.DECODE);
+        }
+        if (image.getWidth() != mask.getWidth() || image.getHeight() != mask.getHeight()) {
+            throw new IllegalArgumentException("The mask must be of the same size as the image");
+        }
+        this.image = image;
+        this.holes = new ImageProcessor(RasterIO.holeMatrix(mask), connectivityType, metrics);
+        this.W = W;
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.MultiChannelHoleFiller class on an image and a mask
+     * that are already in memory. The image is filled in place.
+     *
+     * @param image the original image
+     * @param mask the image representing the hole in the image, of the same size as the original image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     * @throws IllegalArgumentException if the image and the mask are not of the same size
+     */
+    public MultiChannelHoleFiller(MultiChannelImage image, BufferedImage mask, int connectivityType, WeightingFunc W) {
+        if (image.getWidth() != mask.getWidth() || image.getHeight() != mask.getHeight()) {
+            throw new IllegalArgumentException("The mask must be of the same size as the image");
+        }
+        this.image = image;
+        this.holes = new ImageProcessor(RasterIO.holeMatrix(mask), connectivityType);
+        this.W = W;
+    }
+
+    private static BufferedImage readMask(String inputMask) throws IOException {
+        BufferedImage mask = ImageIO.read(new File(inputMask));
+        if (mask == null) {
+            throw new IOException("Unsupported image format: " + inputMask);
+        }
+        return mask;
+    }
+
+    /**
+     * Sets whether every hole pixel is filled from all the boundary pixels of the image (B), rather than only from the
+     * boundary pixels of its own connected component of the hole (B_i).
+     *
+     * @param globalBoundary true (the default) to fill from all the boundary pixels, false to fill per component
+     */
+    public void setGlobalBoundary(boolean globalBoundary) {
+        this.globalBoundary = globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is filled from all the boundary pixels of the image
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     * Fills the holes identified in the image, in every channel, using the specified weighting function.
+     * If no weighting function is set, a default is used.
+     */
+    public void fillHoles() {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        FillMetrics metrics = this.holes.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        FillKernel kernel = FillKernel.forWeightingFunc(this.W);
+        if (this.globalBoundary) {
+            int[] hole = this.holes.getHoleIndices();
+            rangeFill(hole, this.holes.getBoundaryIndices(), kernel).fill(0, hole.length);
+        } else {
+            for (HoleComponent component : this.holes.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                rangeFill(hole, component.getBoundaryIndices(), kernel).fill(0, hole.length);
+            }
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(weightedPairs());
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, splitting the hole pixels between the given
+     * number of threads. The result is identical to the sequential fill.
+     *
+     * @param threads the number of threads to use
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void fillHoles(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        if (threads == 1) {
+            fillHoles();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            fillHoles(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, running the work on the given pool.
+     * The result is identical to the sequential fill.
+     *
+     * @param pool the pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public void fillHoles(ForkJoinPool pool) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        FillMetrics metrics = this.holes.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        FillKernel kernel = FillKernel.forWeightingFunc(this.W);
+        List<HoleFillTask> tasks = new ArrayList<>();
+        if (this.globalBoundary) {
+            int[] hole = this.holes.getHoleIndices();
+            tasks.add(new HoleFillTask(0, hole.length, HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                    rangeFill(hole, this.holes.getBoundaryIndices(), kernel)));
+        } else {
+            for (HoleComponent component : this.holes.getComponents()) {
+                int[] hole = component.getHoleIndices();
+                tasks.add(new HoleFillTask(0, hole.length,
+                        HoleFillTask.chunkSizeFor(hole.length, pool.getParallelism()),
+                        rangeFill(hole, component.getBoundaryIndices(), kernel)));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(weightedPairs());
+        }
+    }
+
+    // the number of pairs of a hole pixel and a boundary pixel whose weight is evaluated by the fill
+    private long weightedPairs() {
+        if (this.globalBoundary) {
+            return (long) this.holes.getHoleIndices().length * this.holes.getBoundaryIndices().length;
+        }
+        long pairs = 0;
+        for (HoleComponent component : this.holes.getComponents()) {
+            pairs += (long) component.getHoleIndices().length * component.getBoundaryIndices().length;
+        }
+        return pairs;
+    }
+
+    // fills the hole pixels in a range of the given hole indices from the given boundary pixels
+    private HoleFillTask.RangeFill rangeFill(int[] hole, int[] boundaries, FillKernel kernel) {
+        BoundarySnapshot boundary = BoundarySnapshot.of(this.image, boundaries);
+        int width = this.image.getWidth();
+        int channels = this.image.getChannels();
+        return (from, to) -> {
+            float[] values = new float[channels];
+            for (int i = from; i < to; i++) {
+                int u = hole[i];
+                kernel.fillValues(u % width, u / width, boundary, values);
+                for (int c = 0; c < channels; c++) {
+                    this.image.getPlane(c)[u] = values[c];
+                }
+            }
+        };
+    }
+
+    /**
+     * Saves the image being filled like {@link MultiChannelImage#save(String)}. The metrics of the run, if enabled,
+     * are then reported.
+     * @param outPath a String path to the output image
+     * @throws IOException if the image can't be written, or the format doesn't support its channels and depth
+     */
+    public void saveImage(String outPath) throws IOException {
+        FillMetrics metrics = this.holes.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.ENCODE);
+        }
+        this.image.save(outPath);
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.ENCODE);
+        }
+        this.holes.reportMetrics();
+    }
+
+    /**
+     * This function returns the image being filled.
+     * @return the image being filled
+     */
+    public MultiChannelImage getImage() {
+        return image;
+    }
+
+    /**
+     * This function returns the processor holding the hole and the boundaries of the mask. Its image holds only the
+     * hole, not the values of the image being filled.
+     * @return the processor holding the hole and the boundaries
+     */
+    public ImageProcessor getHoles() {
+        return holes;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.holeFilling;
+
+import javax.imageio.ImageIO;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * This class represents an image with any number of channels, e.g. gray, gray and alpha, RGB or RGBA, as one flat,
+ * row-major array of values per channel, with the sample depth it was read with.
+ * Unlike {@link ImageMatrix}, which holds the 8-bit gray levels of an image, it keeps the colors and the full precision
+ * of 16-bit and floating point images, such as medical and astronomical images.
+ * Integer samples are held normalized to the range [0,1], and floating point samples as they are. The hole isn't
+ * marked in the values; fillers take it from a separate mask (see {@link MultiChannelHoleFiller}).
+ */
+public class MultiChannelImage {
+
+    /**
+     * The depth of the samples an image is read from and written to.
+     */
+    public enum SampleDepth {
+        /** 8-bit unsigned integer samples */
+        BYTE(8, DataBuffer.TYPE_BYTE),
+        /** 16-bit unsigned integer samples */
+        USHORT(16, DataBuffer.TYPE_USHORT),
+        /** 32-bit floating point samples */
+        FLOAT(32, DataBuffer.TYPE_FLOAT);
+
+        private final int bits;
+        private final int dataType;
+
+        SampleDepth(int bits, int dataType) {
+            this.bits = bits;
+            this.dataType = dataType;
+        }
+
+        /**
+         *
+         * @return The number of bits of a sample
+         */
+        public int getBits() {
+            return bits;
+        }
+    }
+
+    private final float[][] planes;
+    private final int width;
+    private final int height;
+    private final SampleDepth depth;
+
+    /**
+     * Initializes a new image of the given size, with all the values of all the channels set to 0.
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param channels The number of channels
+     * @param depth The depth of the samples the image is written with
+     */
+    public MultiChannelImage(int width, int height, int channels, SampleDepth depth) {
+        this(new float[channels][checkedSize(width, height)], width, height, depth);
+    }
+
+    private static int checkedSize(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + width + "x" + height);
+        }
+        return width * height;
+    }
+
+    /**
+     * Initializes a new image on top of existing row-major arrays of values, one per channel.
+     * The arrays are used as is, without copying them.
+     * @param planes The row-major array of values of every channel
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param depth The depth of the samples the image is written with
+     * @throws IllegalArgumentException if the dimensions don't match the given arrays
+     */
+    public MultiChannelImage(float[][] planes, int width, int height, SampleDepth depth) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE || planes.length == 0) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + width + "x" + height + ", "
+                    + planes.length + " channels");
+        }
+        for (float[] plane : planes) {
+            if (plane.length != width * height) {
+                throw new IllegalArgumentException("Every channel must hold " + width + "x" + height + " values");
+            }
+        }
+        this.planes = planes;
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+    }
+
+    /**
+     * Reads an image file, keeping all its channels and the depth of its samples.
+     * @param path a String path to the image
+     * @return The image
+     * @throws IOException if the image can't be read
+     */
+    public static MultiChannelImage read(String path) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + path);
+        }
+        return read(image);
+    }
+
+    /**
+     * Converts a decoded image, keeping all its channels and the depth of its samples.
+     * Gray and RGB images, with or without alpha, are read from their rasters, one channel per band. Images in other
+     * color spaces, and indexed images, are converted to 8-bit RGB, or RGBA if they have an alpha channel.
+     * @param image The decoded image
+     * @return The image
+     */
+    public static MultiChannelImage read(BufferedImage image) {
+        ColorModel colorModel = image.getColorModel();
+        Raster raster = image.getRaster();
+        int colorSpace = colorModel.getColorSpace().getType();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (colorModel instanceof IndexColorModel || raster.getNumBands() != colorModel.getNumComponents()
+                || (colorSpace != ColorSpace.TYPE_GRAY && colorSpace != ColorSpace.TYPE_RGB)) {
+            return readRgb(image);
+        }
+        int channels = raster.getNumBands();
+        int dataType = raster.getDataBuffer().getDataType();
+        boolean floating = dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE;
+        int bits = 0;
+        for (int b = 0; b < channels; b++) {
+            bits = Math.max(bits, raster.getSampleModel().getSampleSize(b));
+        }
+        SampleDepth depth = floating || bits > 16 ? SampleDepth.FLOAT
+                : bits > 8 ? SampleDepth.USHORT
+                : SampleDepth.BYTE;
+        MultiChannelImage result = new MultiChannelImage(width, height, channels, depth);
+        float[] floatRow = new float[width];
+        int[] intRow = new int[width];
+        for (int b = 0; b < channels; b++) {
+            float[] plane = result.planes[b];
+            // integer samples are normalized by the largest value of their own band, e.g. 5 or 6 bits in 565 images
+            float scale = (float) (1.0 / ((1L << raster.getSampleModel().getSampleSize(b)) - 1));
+            for (int y = 0; y < height; y++) {
+                int rowStart = y * width;
+                if (floating) {
+                    raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, b, floatRow);
+                    System.arraycopy(floatRow, 0, plane, rowStart, width);
+                } else {
+                    raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, b, intRow);
+                    for (int x = 0; x < width; x++) {
+                        plane[rowStart + x] = (intRow[x] & 0xffffffffL) * scale;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static MultiChannelImage readRgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int channels = image.getColorModel().hasAlpha() ? 4 : 3;
+        MultiChannelImage result = new MultiChannelImage(width, height, channels, SampleDepth.BYTE);
+        int[] rgbRow = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, rgbRow, 0, width);
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                int argb = rgbRow[x];
+                result.planes[0][rowStart + x] = (float) ((argb >> 16) & 0xff) / 255;
+                result.planes[1][rowStart + x] = (float) ((argb >> 8) & 0xff) / 255;
+                result.planes[2][rowStart + x] = (float) (argb & 0xff) / 255;
+                if (channels == 4) {
+                    result.planes[3][rowStart + x] = (float) (argb >>> 24) / 255;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the image back to a {@link BufferedImage} with the image's sample depth: gray for 1 channel, gray and
+     * alpha for 2, RGB for 3 and RGBA for 4. Integer samples are rounded to the nearest level and clamped to their
+     * range.
+     * @return The decoded image
+     * @throws UnsupportedOperationException if the image has more than 4 channels
+     */
+    public BufferedImage toBufferedImage() {
+        int channels = planes.length;
+        if (channels > 4) {
+            throw new UnsupportedOperationException("An image of " + channels + " channels can't be converted");
+        }
+        boolean alpha = channels == 2 || channels == 4;
+        ColorSpace colorSpace = ColorSpace.getInstance(channels < 3 ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+        ComponentColorModel colorModel = new ComponentColorModel(colorSpace, alpha, false,
+                alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, depth.dataType);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+        float[] floatRow = new float[width];
+        int[] intRow = new int[width];
+        int maxLevel = (1 << depth.bits) - 1;
+        for (int b = 0; b < channels; b++) {
+            float[] plane = planes[b];
+            for (int y = 0; y < height; y++) {
+                int rowStart = y * width;
+                if (depth == SampleDepth.FLOAT) {
+                    System.arraycopy(plane, rowStart, floatRow, 0, width);
+                    raster.setSamples(0, y, width, 1, b, floatRow);
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        intRow[x] = Math.max(0, Math.min(maxLevel, Math.round(plane[rowStart + x] * maxLevel)));
+                    }
+                    raster.setSamples(0, y, width, 1, b, intRow);
+                }
+            }
+        }
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Saves the image in the format given by the extension of the path, e.g. png for 8 and 16-bit images or tiff for
+     * floating point images, and png when the path has no extension.
+     * @param outPath a String path to the output image
+     * @throws IOException if the image can't be written, or the format doesn't support its channels and depth
+     */
+    public void save(String outPath) throws IOException {
+        String name = new File(outPath).getName();
+        int dot = name.lastIndexOf('.');
+        String format = dot < 0 ? "png" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (!ImageIO.write(toBufferedImage(), format, new File(outPath))) {
+            throw new IOException("No " + format + " writer supports " + planes.length + " channels of " + depth
+                    + " samples");
+        }
+    }
+
+    /**
+     *
+     * @return The width of the image in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return The height of the image in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @return The number of channels
+     */
+    public int getChannels() {
+        return planes.length;
+    }
+
+    /**
+     *
+     * @return The depth of the samples the image was read with, and is written with
+     */
+    public SampleDepth getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the row-major array of values of a channel. Changes to the array are reflected in the image.
+     * @param channel The channel
+     * @return The values of the channel, at the index {@code y * width + x} of every pixel
+     */
+    public float[] getPlane(int channel) {
+        return planes[channel];
+    }
+
+    /**
+     *
+     * @param channel The channel
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @return The value of the pixel in the channel
+     */
+    public float get(int channel, int x, int y) {
+        return planes[channel][y * width + x];
+    }
+
+    /**
+     * Sets the value of the pixel in the given coordinates in a channel.
+     * @param channel The channel
+     * @param x The X coordinate of the pixel
+     * @param y The Y coordinate of the pixel
+     * @param value The value of the pixel in the channel
+     */
+    public void set(int channel, int x, int y, float value) {
+        planes[channel][y * width + x] = value;
+    }
+}
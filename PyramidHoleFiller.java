@@ -0,0 +1,484 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is responsible for filling large holes in an image coarse to fine, approximating the exact algorithm of
+ * {@link ImageHoleFiller}.
+ * Every level of the pyramid has cells twice as large as the level below it, the image being level 0. A cell is a hole
+ * cell if it covers any hole pixel, and the boundary pixels it covers are merged into a pseudo-pixel at their centroid,
+ * weighing as much as all of them together, so every level computes the same weighted average of the boundary as the
+ * image, at a coarser resolution. The hole cells of the coarsest level are computed from all its pseudo-pixels. Every
+ * finer level is then interpolated bilinearly from the level above it, and only the hole cells within a band along the
+ * boundary, where the filled values change quickly, are recomputed from the level's own pseudo-pixels, or from the
+ * boundary pixels themselves at the image level.
+ * Deep inside the hole the exact fill is a smooth average of far boundary pixels, which the coarse levels capture.
+ * The number of levels is the quality/speed knob: every level divides the cost of the coarsest level by about 8,
+ * while the bands cost about their width times |B|^2. The error against the exact fill can be checked with
+ * {@link #measureError(int)}.
+ * When metrics are enabled (see {@link FillMetrics}), a pseudo-pixel counts as a single weight evaluation.
+ */
+public class PyramidHoleFiller {
+    /**
+     * The default number of levels above the image.
+     */
+    public static final int DEFAULT_LEVELS = 4;
+    /**
+     * The default width, in pixels of every level, of the band along the boundary that is filled exactly.
+     */
+    public static final int DEFAULT_REFINEMENT_BAND = 4;
+
+    private WeightingFunc W;
+    private final ImageProcessor img;
+    private int levels = DEFAULT_LEVELS;
+    private int refinementBand = DEFAULT_REFINEMENT_BAND;
+    private boolean globalBoundary = true;
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.PyramidHoleFiller class with a specific weighting
+     * function.
+     * Initializes the image processing and sets up the environment to fill holes using the provided weighting function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W the custom weighting function to use for hole filling
+     */
+    public PyramidHoleFiller(String inputImage, String inputMask, int connectivityType, WeightingFunc W){
+        this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
+        this.W = W;
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.PyramidHoleFiller with the default weighting function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public PyramidHoleFiller(String inputImage, String inputMask, int connectivityType){
+        this.img = new ImageProcessor(inputImage, inputMask, connectivityType);
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.PyramidHoleFiller on an image that was already loaded
+     * and had its hole and boundaries detected.
+     *
+     * @param img the processor holding the image, the hole and the boundaries
+     * @param W the custom weighting function to use for hole filling, or null to use the default one
+     */
+    public PyramidHoleFiller(ImageProcessor img, WeightingFunc W){
+        this.img = img;
+        this.W = W;
+    }
+
+    /**
+     * Sets the number of levels above the image. More levels are faster and less accurate; 0 fills the image exactly,
+     * like {@link ImageHoleFiller}.
+     *
+     * @param levels the non-negative number of levels
+     * @throws IllegalArgumentException if the number of levels is negative
+     */
+    public void setLevels(int levels) {
+        if (levels < 0) {
+            throw new IllegalArgumentException("The number of levels must not be negative: " + levels);
+        }
+        this.levels = levels;
+    }
+
+    /**
+     *
+     * @return the number of levels above the image
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Sets the width of the band along the boundary whose hole cells are recomputed at every level, in cells of the
+     * level, and whose hole pixels are filled exactly at the image level. A wider band is slower and more accurate.
+     *
+     * @param refinementBand the positive width of the band
+     * @throws IllegalArgumentException if the width is not positive
+     */
+    public void setRefinementBand(int refinementBand) {
+        if (refinementBand <= 0) {
+            throw new IllegalArgumentException("The refinement band must be positive: " + refinementBand);
+        }
+        this.refinementBand = refinementBand;
+    }
+
+    /**
+     *
+     * @return the width of the band along the boundary that is recomputed at every level
+     */
+    public int getRefinementBand() {
+        return refinementBand;
+    }
+
+    /**
+     * Sets whether every hole pixel is filled from all the boundary pixels of the image (B), rather than only from the
+     * boundary pixels of its own connected component of the hole (B_i), at every level.
+     *
+     * @param globalBoundary true (the default) to fill from all the boundary pixels, false to fill per component
+     */
+    public void setGlobalBoundary(boolean globalBoundary) {
+        this.globalBoundary = globalBoundary;
+    }
+
+    /**
+     *
+     * @return true if every hole pixel is filled from all the boundary pixels of the image
+     */
+    public boolean isGlobalBoundary() {
+        return globalBoundary;
+    }
+
+    /**
+     * Fills the holes identified in the image using the specified weighting function, from the coarsest level of the
+     * pyramid down to the image. If no weighting function is set, a default is used.
+     */
+    public void fillHoles() {
+        fill(null);
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, splitting the work of every level between the
+     * given number of threads. The result is identical to the sequential fill.
+     *
+     * @param threads the number of threads to use
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void fillHoles(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        if (threads == 1) {
+            fillHoles();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            fillHoles(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the holes identified in the image like {@link #fillHoles()}, running the work on the given pool.
+     * The result is identical to the sequential fill.
+     *
+     * @param pool the pool running the fill, e.g. {@link ForkJoinPool#commonPool()}
+     */
+    public void fillHoles(ForkJoinPool pool) {
+        fill(pool);
+    }
+
+    /**
+     * Measures the error of the filled hole against the exact fill of {@link ImageHoleFiller} with the same weighting
+     * function and boundaries. Must be called after the hole was filled. Computing the exact value is O(|B|) per hole
+     * pixel, so only about maxSamples hole pixels, evenly spread over the hole, are measured.
+     *
+     * @param maxSamples the largest number of hole pixels to measure
+     * @return the max and mean absolute error of the measured hole pixels
+     */
+    public ApproximationError measureError(int maxSamples) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        ImageMatrix image = this.img.getImage();
+        if (this.globalBoundary) {
+            return ApproximationError.measure(image, this.img.getHoleIndices(), this.img.getBoundaryIndices(), this.W,
+                    maxSamples);
+        }
+        return ApproximationError.measure(image, this.img.getComponents(), this.W, maxSamples);
+    }
+
+    private void fill(ForkJoinPool pool) {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        FillMetrics metrics = this.img.getMetrics();
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.FILL);
+        }
+        ImageMatrix image = this.img.getImage();
+        LongAdder evaluations = new LongAdder();
+        if (this.globalBoundary) {
+            fillPart(image, this.img.getHoleIndices(), this.img.getBoundaryIndices(), pool, evaluations);
+        } else {
+            for (HoleComponent component : this.img.getComponents()) {
+                fillPart(image, component.getHoleIndices(), component.getBoundaryIndices(), pool, evaluations);
+            }
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.FILL);
+            metrics.addWeightEvaluations(evaluations.sum());
+        }
+    }
+
+    /**
+     * Fills the given hole pixels from the given boundary pixels, from the coarsest level down to the image, adding
+     * the pseudo-pixels and the boundary pixels whose weight is evaluated to evaluations.
+     */
+    private void fillPart(ImageMatrix image, int[] hole, int[] boundaries, ForkJoinPool pool, LongAdder evaluations) {
+        if (hole.length == 0) {
+            return;
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int[] pixels : new int[][] {hole, boundaries}) {
+            for (int p : pixels) {
+                minX = Math.min(minX, image.xOf(p));
+                minY = Math.min(minY, image.yOf(p));
+                maxX = Math.max(maxX, image.xOf(p));
+                maxY = Math.max(maxY, image.yOf(p));
+            }
+        }
+        // the hole pixels within the band are filled exactly from the boundary pixels, the rest are interpolated
+        HoleMask band = new HoleMask(maxX - minX + 1, maxY - minY + 1);
+        for (int v : boundaries) {
+            band.set(image.xOf(v) - minX, image.yOf(v) - minY, true);
+        }
+        for (int i = 0; i < refinementBand; i++) {
+            band = band.dilate(8);
+        }
+        int[] exact = new int[hole.length];
+        int exactCount = 0;
+        int[] interpolated = new int[hole.length];
+        int interpolatedCount = 0;
+        for (int u : hole) {
+            if (levels == 0 || band.get(image.xOf(u) - minX, image.yOf(u) - minY)) {
+                exact[exactCount++] = u;
+            } else {
+                interpolated[interpolatedCount++] = u;
+            }
+        }
+        // the weights are only summed once per cell at the coarse levels, so a cutoff wouldn't save anything there,
+        // and could leave cells with no weight at all
+        WeightingFunc coarseW = this.W instanceof CutoffWeightingFunc ? ((CutoffWeightingFunc) this.W).getBase()
+                : this.W;
+        // a hole within the band everywhere, e.g. a thin scratch, is filled exactly without building the pyramid
+        Level coarser = null;
+        for (int level = interpolatedCount == 0 ? 0 : levels; level >= 1; level--) {
+            Level current = new Level(image, level, minX, minY, maxX, maxY, hole, boundaries, refinementBand);
+            Level above = coarser;
+            boolean top = above == null;
+            run(pool, current.cells.length, (from, to) -> {
+                long summed = 0;
+                for (int i = from; i < to; i++) {
+                    int cell = current.cells[i];
+                    int x = current.x0 + cell % current.width;
+                    int y = current.y0 + cell / current.width;
+                    float value = Float.NaN;
+                    if (top || current.band.get(x - current.x0, y - current.y0)) {
+                        value = current.sum(x, y, coarseW);
+                        summed++;
+                    }
+                    // a cell too far from every pseudo-pixel to have any weight is interpolated too
+                    if (Float.isNaN(value) && above != null) {
+                        value = above.interpolate(x, y);
+                    }
+                    current.values[cell] = value;
+                }
+                evaluations.add(summed * current.pseudoX.length);
+            });
+            coarser = current;
+        }
+        Level finest = coarser;
+        run(pool, interpolatedCount, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int u = interpolated[i];
+                image.set(u, finest.interpolate(image.xOf(u), image.yOf(u)));
+            }
+        });
+        FillKernel kernel = FillKernel.forWeightingFunc(this.W);
+        BoundarySnapshot boundary = BoundarySnapshot.of(image, boundaries);
+        int[] exactHole = Arrays.copyOf(exact, exactCount);
+        run(pool, exactCount, (from, to) -> HoleFillTask.fillRange(image, exactHole, from, to, kernel, boundary));
+        evaluations.add((long) exactCount * boundaries.length);
+    }
+
+    // runs the given fill over [0, count), on the calling thread without a pool
+    private static void run(ForkJoinPool pool, int count, HoleFillTask.RangeFill fill) {
+        if (pool == null) {
+            fill.fill(0, count);
+        } else {
+            pool.invoke(new HoleFillTask(0, count, HoleFillTask.chunkSizeFor(count, pool.getParallelism()), fill));
+        }
+    }
+
+    /**
+     * A level of the pyramid over the bounding box of a part of the hole, whose cells cover 2^level x 2^level pixels
+     * of the image, aligned on multiples of their size. A cell is a hole cell if it covers any hole pixel, and the
+     * boundary pixels it covers are merged into a single pseudo-pixel at their centroid, weighing as much as all of
+     * them together.
+     */
+    private static final class Level {
+        final int level;
+        // the cell coordinates of the first cell of the level, and the size of the level in cells
+        final int x0;
+        final int y0;
+        final int width;
+        final int height;
+        // the local indices, y * width + x, of the hole cells in row-major order, and the values of the cells
+        final int[] cells;
+        final HoleMask holeCells;
+        final float[] values;
+        // the cells within the refinement band of a cell holding a pseudo-pixel
+        final HoleMask band;
+        // the pseudo-pixels: centroids in pixels of the image, sums of the values and numbers of boundary pixels
+        final float[] pseudoX;
+        final float[] pseudoY;
+        final float[] pseudoSum;
+        final float[] pseudoCount;
+
+        Level(ImageMatrix image, int level, int minX, int minY, int maxX, int maxY, int[] hole, int[] boundaries,
+              int refinementBand) {
+            this.level = level;
+            this.x0 = minX >> level;
+            this.y0 = minY >> level;
+            this.width = (maxX >> level) - x0 + 1;
+            this.height = (maxY >> level) - y0 + 1;
+            this.holeCells = new HoleMask(width, height);
+            for (int u : hole) {
+                holeCells.set((image.xOf(u) >> level) - x0, (image.yOf(u) >> level) - y0, true);
+            }
+            this.cells = holeCells.indices(width);
+            this.values = new float[width * height];
+
+            // groups the boundary pixels by cell, sorting them by the cell's index
+            long[] keys = new long[boundaries.length];
+            for (int i = 0; i < boundaries.length; i++) {
+                int v = boundaries[i];
+                long cell = (long) ((image.yOf(v) >> level) - y0) * width + ((image.xOf(v) >> level) - x0);
+                keys[i] = cell << 32 | i;
+            }
+            Arrays.sort(keys);
+            int groups = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || (keys[i] >>> 32) != (keys[i - 1] >>> 32)) {
+                    groups++;
+                }
+            }
+            this.pseudoX = new float[groups];
+            this.pseudoY = new float[groups];
+            this.pseudoSum = new float[groups];
+            this.pseudoCount = new float[groups];
+            HoleMask bandCells = new HoleMask(width, height);
+            int g = -1;
+            for (int i = 0; i < keys.length; i++) {
+                long cell = keys[i] >>> 32;
+                if (i == 0 || cell != (keys[i - 1] >>> 32)) {
+                    g++;
+                    bandCells.set((int) (cell % width), (int) (cell / width), true);
+                }
+                int v = boundaries[(int) keys[i]];
+                pseudoX[g] += image.xOf(v);
+                pseudoY[g] += image.yOf(v);
+                pseudoSum[g] += image.get(v);
+                pseudoCount[g]++;
+            }
+            for (int i = 0; i < groups; i++) {
+                pseudoX[i] /= pseudoCount[i];
+                pseudoY[i] /= pseudoCount[i];
+            }
+            for (int i = 0; i < refinementBand; i++) {
+                bandCells = bandCells.dilate(8);
+            }
+            this.band = bandCells;
+        }
+
+        /**
+         * Sums the weights of the pseudo-pixels at the center of a cell.
+         * @return the weighted mean of the boundary values, or NaN if no pseudo-pixel has any weight
+         */
+        float sum(int x, int y, WeightingFunc W) {
+            float centerX = center(x);
+            float centerY = center(y);
+            float numerator = 0;
+            float dominator = 0;
+            if (W.getClass() == DefaultWeightingFunc.class) {
+                // the default function is computed inline, like its scalar kernel does
+                float epsilon = (float) ((DefaultWeightingFunc) W).getEpsilon();
+                int z = ((DefaultWeightingFunc) W).getZ();
+                for (int i = 0; i < pseudoX.length; i++) {
+                    float dx = centerX - pseudoX[i];
+                    float dy = centerY - pseudoY[i];
+                    float weightRes = 1 / (ScalarDefaultFillKernel.distancePower(dx * dx + dy * dy, z) + epsilon);
+                    numerator += weightRes * pseudoSum[i];
+                    dominator += weightRes * pseudoCount[i];
+                }
+            } else {
+                for (int i = 0; i < pseudoX.length; i++) {
+                    float weightRes = weight(W, centerX, centerY, pseudoX[i], pseudoY[i]);
+                    numerator += weightRes * pseudoSum[i];
+                    dominator += weightRes * pseudoCount[i];
+                }
+            }
+            return dominator > 0 ? numerator / dominator : Float.NaN;
+        }
+
+        // the center of the cell x, in pixels of the image
+        private float center(int x) {
+            return ((x << level) + ((1 << level) - 1) / 2f);
+        }
+
+        private static float weight(WeightingFunc W, float ux, float uy, float vx, float vy) {
+            if (W instanceof RadialWeightingFunc) {
+                float dx = ux - vx;
+                float dy = uy - vy;
+                return ((RadialWeightingFunc) W).weightAtDistance((float) Math.sqrt(dx * dx + dy * dy));
+            }
+            return W.calculateWeight(Math.round(ux), Math.round(uy), Math.round(vx), Math.round(vy));
+        }
+
+        /**
+         * Interpolates the values of the hole cells of the level bilinearly, at the center of a cell of the level
+         * below it, or of a pixel of the image. The cells that aren't hole cells are left out, which never leaves out
+         * all of them, since the cell covering the point is always a hole cell.
+         * @param x the X coordinate of the cell of the level below
+         * @param y the Y coordinate of the cell of the level below
+         * @return the interpolated value
+         */
+        float interpolate(int x, int y) {
+            // the centers of the cells of this level are at 2x + 0.5 in the cells of the level below
+            float cx = (x - 0.5f) / 2 - x0;
+            float cy = (y - 0.5f) / 2 - y0;
+            int left = (int) Math.floor(cx);
+            int upper = (int) Math.floor(cy);
+            float fx = cx - left;
+            float fy = cy - upper;
+            float numerator = 0;
+            float dominator = 0;
+            for (int dy = 0; dy <= 1; dy++) {
+                for (int dx = 0; dx <= 1; dx++) {
+                    int column = left + dx;
+                    int row = upper + dy;
+                    if (column < 0 || row < 0 || column >= width || row >= height
+                            || !holeCells.get(column, row)) {
+                        continue;
+                    }
+                    float weightRes = (dx == 0 ? 1 - fx : fx) * (dy == 0 ? 1 - fy : fy);
+                    numerator += weightRes * values[row * width + column];
+                    dominator += weightRes;
+                }
+            }
+            return numerator / dominator;
+        }
+    }
+
+    /**
+     * Returns the com.example.holeFilling.ImageProcessor instance used by this hole filler.
+     *
+     * @return the com.example.holeFilling.ImageProcessor instance used by this hole filler.
+     */
+    public ImageProcessor getImg() {
+        return img;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.holeFilling;
+
+/**
+ * This interface defines a weighting function whose weight depends only on the Euclidean distance between the two
+ * points, and doesn't increase as the distance grows.
+ * Knowing the weight as a function of the distance lets hole fillers bound the weights of a whole group of boundary
+ * pixels from their distance range, as {@link ImageHoleFillerMultipole} does.
+ */
+public interface RadialWeightingFunc extends WeightingFunc {
+
+    /**
+     * Calculates the weight of two points at the given distance from each other.
+     * The weight must not increase as the distance grows.
+     *
+     * @param distance the non-negative Euclidean distance between the points
+     * @return the calculated weight as a float
+     */
+    float weightAtDistance(double distance);
+
+    /**
+     * Calculates the weight between two points, based on the Euclidean distance between them.
+     *
+     * @param u the first point, typically a hole pixel that needs its value computed
+     * @param v the second point, typically a boundary pixel
+     * @return the calculated weight as a float, representing the influence of point v on point u
+     */
+    @Override
+    default float calculateWeight(Point u, Point v) {
+        return calculateWeight(u.getX(), u.getY(), v.getX(), v.getY());
+    }
+
+    /**
+     * Calculates the weight between two pixels given by their coordinates, based on the Euclidean distance between
+     * them.
+     *
+     * @param ux the X coordinate of the first pixel, typically a hole pixel that needs its value computed
+     * @param uy the Y coordinate of the first pixel
+     * @param vx the X coordinate of the second pixel, typically a boundary pixel
+     * @param vy the Y coordinate of the second pixel
+     * @return the calculated weight as a float, representing the influence of pixel v on pixel u
+     */
+    @Override
+    default float calculateWeight(int ux, int uy, int vx, int vy) {
+        float dx = ux - vx;
+        float dy = uy - vy;
+        return weightAtDistance((float) Math.sqrt(dx * dx + dy * dy));
+    }
+
+    /**
+     * Calculates the weight of a boundary pixel for a hole pixel, based only on the Euclidean distance between them, so
+     * neither the order of the pixels nor the value of the boundary pixel matter.
+     *
+     * @param ux the X coordinate of the hole pixel that needs its value computed
+     * @param uy the Y coordinate of the hole pixel
+     * @param vx the X coordinate of the boundary pixel
+     * @param vy the Y coordinate of the boundary pixel
+     * @param vValue the "I" value of the boundary pixel, which is ignored
+     * @return the calculated weight as a float, representing the influence of pixel v on pixel u
+     */
+    @Override
+    default float calculateWeight(int ux, int uy, int vx, int vy, float vValue) {
+        return calculateWeight(ux, uy, vx, vy);
+    }
+
+    /**
+     * Tabulates the weights of pixels at every integer squared distance up to the given one. The squared distance
+     * between two pixels is always an integer, so looking a weight up in the table replaces the square root and the
+     * function call of {@link #calculateWeight(int, int, int, int)}.
+     *
+     * @param maxSquaredDistance the largest squared distance in the table
+     * @return the weights, where the weight at index d2 is the weight of pixels whose squared distance is d2
+     */
+    default float[] tabulate(int maxSquaredDistance) {
+        float[] table = new float[maxSquaredDistance + 1];
+        for (int d2 = 0; d2 <= maxSquaredDistance; d2++) {
+            table[d2] = weightAtDistance((float) Math.sqrt(d2));
+        }
+        return table;
+    }
+}
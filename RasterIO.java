@@ -0,0 +1,234 @@
+package com.example.holeFilling;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Converts between {@link BufferedImage}s and grayscale pixel values by reading and writing the arrays behind their
+ * {@link Raster}s directly, instead of calling {@link BufferedImage#getRGB(int, int)} and
+ * {@link BufferedImage#setRGB(int, int, int)} for every pixel.
+ * There are fast paths for the image types ImageIO usually decodes to - TYPE_BYTE_GRAY, TYPE_3BYTE_BGR,
+ * TYPE_4BYTE_ABGR, TYPE_INT_RGB and TYPE_INT_ARGB - and a generic fallback reading whole rows with getRGB.
+ * Colors are converted to gray levels with the luma weights 0.299, 0.587 and 0.114, like the getRGB path does.
+ * The samples of TYPE_BYTE_GRAY and TYPE_USHORT_GRAY images are their gray levels, scaled to [0,255] for the latter,
+ * rather than the colors getRGB converts them to, since it maps them from the linear gray color space to sRGB (e.g. 60
+ * to 133): the images {@link #toGrayImage} writes are read back with the levels they were written with.
+ */
+final class RasterIO {
+    // the terms of the luma of every component value, summed in double like the weights were always applied
+    private static final double[] RED_LUMA = lumaTerms(0.299);
+    private static final double[] GREEN_LUMA = lumaTerms(0.587);
+    private static final double[] BLUE_LUMA = lumaTerms(0.114);
+    // the levels of a TYPE_USHORT_GRAY image divided by this are in the range [0,255]
+    private static final int USHORT_GRAY_SCALE = 257;
+
+    private RasterIO() {
+    }
+
+    /**
+     * Reads the gray levels of an image row by row.
+     */
+    interface GrayRows {
+
+        /**
+         * Reads the gray levels of a row.
+         * @param y The Y coordinate of the row
+         * @param gray Receives the gray level, in the range [0,255], of every pixel in the row
+         */
+        void read(int y, int[] gray);
+    }
+
+    /**
+     * Converts red, green and blue components to a gray level.
+     * @param r The red component, in the range [0,255]
+     * @param g The green component, in the range [0,255]
+     * @param b The blue component, in the range [0,255]
+     * @return The gray level, in the range [0,255]
+     */
+    static int grayLevel(int r, int g, int b) {
+        return (int) (RED_LUMA[r] + GREEN_LUMA[g] + BLUE_LUMA[b]);
+    }
+
+    private static double[] lumaTerms(double weight) {
+        double[] terms = new double[256];
+        for (int value = 0; value < terms.length; value++) {
+            terms[value] = value * weight;
+        }
+        return terms;
+    }
+
+    /**
+     * Decides whether a mask pixel marks a hole: pixels darker than half of the gray range are hole pixels.
+     * @param gray The gray level of the mask pixel, in the range [0,255]
+     * @return true if the pixel is a hole pixel
+     */
+    static boolean isHoleLevel(int gray) {
+        return gray < 128;
+    }
+
+    /**
+     * Converts a packed rgb value, as returned by {@link BufferedImage#getRGB(int, int)}, to a gray level.
+     * @param rgb The color, with the red, green and blue components in bits 16-23, 8-15 and 0-7
+     * @return The gray level, in the range [0,255]
+     */
+    static int grayLevel(int rgb) {
+        return grayLevel((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+    }
+
+    /**
+     * Returns a reader of the gray levels of an image, using the fastest access path its type allows.
+     * @param image The image to read
+     * @return A reader of the image's rows
+     */
+    static GrayRows grayRows(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int width = image.getWidth();
+        // the position of the image's pixel (0,0) in its raster's sample model
+        int originX = raster.getMinX() - raster.getSampleModelTranslateX();
+        int originY = raster.getMinY() - raster.getSampleModelTranslateY();
+        DataBuffer buffer = raster.getDataBuffer();
+        if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && buffer.getNumBanks() == 1) {
+            ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int pixelStride = sampleModel.getPixelStride();
+            int scanlineStride = sampleModel.getScanlineStride();
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            int base = buffer.getOffset() + originY * scanlineStride + originX * pixelStride;
+            switch (image.getType()) {
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    return (y, gray) -> {
+                        int i = base + y * scanlineStride + bandOffsets[0];
+                        for (int x = 0; x < width; x++, i += pixelStride) {
+                            gray[x] = data[i] & 0xff;
+                        }
+                    };
+                case BufferedImage.TYPE_3BYTE_BGR:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    int red = bandOffsets[0];
+                    int green = bandOffsets[1];
+                    int blue = bandOffsets[2];
+                    return (y, gray) -> {
+                        int i = base + y * scanlineStride;
+                        for (int x = 0; x < width; x++, i += pixelStride) {
+                            gray[x] = grayLevel(data[i + red] & 0xff, data[i + green] & 0xff, data[i + blue] & 0xff);
+                        }
+                    };
+                default:
+                    break;
+            }
+        }
+        if (buffer instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+            SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int[] data = ((DataBufferInt) buffer).getData();
+            int scanlineStride = sampleModel.getScanlineStride();
+            int base = buffer.getOffset() + originY * scanlineStride + originX;
+            return (y, gray) -> {
+                int i = base + y * scanlineStride;
+                for (int x = 0; x < width; x++) {
+                    gray[x] = grayLevel(data[i + x]);
+                }
+            };
+        }
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            // a gray image with an unusual layout: read its samples through the raster
+            return (y, gray) -> raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, gray);
+        }
+        if (image.getType() == BufferedImage.TYPE_USHORT_GRAY) {
+            return (y, gray) -> {
+                raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, gray);
+                for (int x = 0; x < width; x++) {
+                    gray[x] /= USHORT_GRAY_SCALE;
+                }
+            };
+        }
+        int[] rgbRow = new int[width];
+        return (y, gray) -> {
+            image.getRGB(0, y, width, 1, rgbRow, 0, width);
+            for (int x = 0; x < width; x++) {
+                gray[x] = grayLevel(rgbRow[x]);
+            }
+        };
+    }
+
+    /**
+     * Converts a mask to an image matrix whose hole pixels are marked with {@link ImageMatrix#HOLE} and whose other
+     * pixels are 0.
+     * @param mask The image representing the hole
+     * @return The image matrix of the mask
+     */
+    static ImageMatrix holeMatrix(BufferedImage mask) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        ImageMatrix matrix = new ImageMatrix(width, height);
+        float[] data = matrix.getData();
+        GrayRows rows = grayRows(mask);
+        int[] gray = new int[width];
+        for (int y = 0; y < height; y++) {
+            rows.read(y, gray);
+            int rowStart = matrix.index(0, y);
+            for (int x = 0; x < width; x++) {
+                if (isHoleLevel(gray[x])) {
+                    data[rowStart + x] = ImageMatrix.HOLE;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Packs the hole pixels of a mask into a {@link HoleMask}, a bit per pixel, without converting the mask to an image
+     * matrix.
+     * @param mask The image representing the hole
+     * @return The mask of the hole pixels
+     */
+    static HoleMask holeMask(BufferedImage mask) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        HoleMask holes = new HoleMask(width, height);
+        long[] words = holes.getWords();
+        int wordsPerRow = HoleMask.wordsPerRow(width);
+        GrayRows rows = grayRows(mask);
+        int[] gray = new int[width];
+        for (int y = 0; y < height; y++) {
+            rows.read(y, gray);
+            int rowStart = y * wordsPerRow;
+            for (int x = 0; x < width; x++) {
+                if (isHoleLevel(gray[x])) {
+                    words[rowStart + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return holes;
+    }
+
+    /**
+     * Converts the "I" values of an image matrix to a grayscale image of type TYPE_BYTE_GRAY, writing its pixel array
+     * directly.
+     * @param matrix The image matrix, with "I" values in the range [0,1]
+     * @return The grayscale image
+     */
+    static BufferedImage toGrayImage(ImageMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        float[] values = matrix.getData();
+        int stride = matrix.getStride();
+        for (int y = 0; y < height; y++) {
+            int source = y * stride;
+            int target = y * width;
+            for (int x = 0; x < width; x++) {
+                // converting back to none normalized values
+                data[target + x] = (byte) (int) (values[source + x] * 255);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.holeFilling;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A grayscale image, and optionally the mask of its hole, stored in a raw binary file, so that the stages of a
+ * pipeline can pass images to each other without encoding and decoding PNG.
+ * The planes of the file are memory-mapped with {@link FileChannel#map}: they are read with bulk copies straight from
+ * the page cache, and a filled image can be written back in place, touching only the pages holding its hole pixels.
+ * <p>
+ * The layout of the file, with all numbers little-endian:
+ * <pre>
+ * offset  size  field
+ *      0     4  magic, the ASCII characters "HFRW"
+ *      4     1  version, 1
+ *      5     1  sample type: 1 for uint8, 2 for uint16, 4 for float32, i.e. the bytes per sample
+ *      6     1  flags: bit 0 is set if the file holds a mask plane
+ *      7     1  reserved, 0
+ *      8     4  width in pixels (int32)
+ *     12     4  height in pixels (int32)
+ *     16    16  reserved, 0
+ *     32        image plane: width * height samples in row-major order. uint8 and uint16 samples are divided by 255
+ *               and 65535 to get the "I" values; float32 samples are the "I" values themselves, where -1 marks a
+ *               hole pixel when the file holds no mask plane
+ *      M        mask plane, at the first multiple of 8 after the image plane: the words of a {@link HoleMask}, i.e.
+ *               ceil(width / 64) int64 words per row, bit (x &amp; 63) of word (x &gt;&gt;&gt; 6) of row y being set
+ *               when pixel (x,y) is a hole pixel
+ * </pre>
+ * Every plane must fit a single mapping, i.e. 2 GB. The mappings stay valid until they are garbage collected, even
+ * after the file is closed; {@link #close()} flushes the changes of a writable file to the disk.
+ */
+public final class RawImage implements Closeable {
+    /**
+     * The file extension selecting the raw format, e.g. in {@link Main}.
+     */
+    public static final String EXTENSION = ".raw";
+
+    private static final byte[] MAGIC = "HFRW".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int HAS_MASK = 1;
+
+    /**
+     * The type of the samples of the image plane.
+     */
+    public enum SampleType {
+        /** Unsigned 8-bit samples, in the range [0,255] */
+        UINT8(1),
+        /** Unsigned 16-bit samples, in the range [0,65535] */
+        UINT16(2),
+        /** 32-bit floating point samples, holding the "I" values */
+        FLOAT32(4);
+
+        private final int bytes;
+
+        SampleType(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         *
+         * @return The number of bytes of a sample, which is also its code in the header
+         */
+        public int getBytes() {
+            return bytes;
+        }
+
+        private static SampleType ofCode(int code) {
+            for (SampleType type : values()) {
+                if (type.bytes == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sample type " + code);
+        }
+    }
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int width;
+    private final int height;
+    private final SampleType sampleType;
+    private final MappedByteBuffer imagePlane;
+    // null if the file holds no mask plane
+    private final MappedByteBuffer maskPlane;
+
+    private RawImage(FileChannel channel, boolean writable, int width, int height, SampleType sampleType,
+                     boolean hasMask) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        this.width = width;
+        this.height = height;
+        this.sampleType = sampleType;
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        this.imagePlane = map(mode, HEADER_SIZE, (long) width * height * sampleType.bytes);
+        if (hasMask) {
+            this.maskPlane = map(mode, maskOffset(width, height, sampleType), maskBytes(width, height));
+        } else {
+            this.maskPlane = null;
+        }
+    }
+
+    private static long maskOffset(int width, int height, SampleType sampleType) {
+        return (HEADER_SIZE + (long) width * height * sampleType.bytes + 7) & ~7L;
+    }
+
+    private static long maskBytes(int width, int height) {
+        return (long) HoleMask.wordsPerRow(width) * height * Long.BYTES;
+    }
+
+    private MappedByteBuffer map(FileChannel.MapMode mode, long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A plane of " + size + " bytes is too large to be mapped");
+        }
+        MappedByteBuffer plane = channel.map(mode, offset, size);
+        plane.order(ByteOrder.LITTLE_ENDIAN);
+        return plane;
+    }
+
+    /**
+     * Checks whether a path names a file of the raw format, by its extension.
+     * @param path The path of the file
+     * @return true if the path ends with {@link #EXTENSION}, ignoring case
+     */
+    public static boolean isRawPath(String path) {
+        return path.toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+    }
+
+    /**
+     * Opens an existing raw file and maps its planes.
+     * @param path The path of the file
+     * @param writable true to map the planes for writing, so that the image can be written back in place
+     * @return The opened file, to be closed by the caller
+     * @throws IOException if the file can't be read, or isn't a valid raw file
+     */
+    public static RawImage open(Path path, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // reads until the header is complete or the file ends
+            }
+            if (header.hasRemaining()) {
+                throw new IOException("Not a raw image file: " + path);
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            int version = header.get() & 0xFF;
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException("Not a raw image file of version " + VERSION + ": " + path);
+            }
+            SampleType sampleType;
+            try {
+                sampleType = SampleType.ofCode(header.get() & 0xFF);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid raw image file " + path + ": " + e.getMessage(), e);
+            }
+            int flags = header.get() & 0xFF;
+            header.get();
+            int width = header.getInt();
+            int height = header.getInt();
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+                throw new IOException("Invalid image dimensions in " + path + ": " + width + "x" + height);
+            }
+            boolean hasMask = (flags & HAS_MASK) != 0;
+            long size = hasMask ? maskOffset(width, height, sampleType) + maskBytes(width, height)
+                    : HEADER_SIZE + (long) width * height * sampleType.bytes;
+            // a writable mapping past the end of the file would silently extend it
+            if (channel.size() < size) {
+                throw new IOException("The raw image file " + path + " is truncated: expected " + size + " bytes");
+            }
+            return new RawImage(channel, writable, width, height, sampleType, hasMask);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a raw file, replacing any existing file, and maps its planes for writing. All the samples, and all the
+     * bits of the mask plane, are initially 0.
+     * @param path The path of the file
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param sampleType The type of the samples of the image plane
+     * @param withMask true to add a mask plane
+     * @return The created file, to be closed by the caller
+     * @throws IOException if the file can't be written
+     */
+    public static RawImage create(Path path, int width, int height, SampleType sampleType, boolean withMask)
+            throws IOException {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + width + "x" + height);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).put((byte) VERSION).put((byte) sampleType.bytes).put((byte) (withMask ? HAS_MASK : 0))
+                    .put((byte) 0).putInt(width).putInt(height);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            // mapping the planes for writing extends the file to their size
+            return new RawImage(channel, true, width, height, sampleType, withMask);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     *
+     * @return The width of the image in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     *
+     * @return The height of the image in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     *
+     * @return The type of the samples of the image plane
+     */
+    public SampleType getSampleType() {
+        return sampleType;
+    }
+
+    /**
+     *
+     * @return true if the file holds a mask plane
+     */
+    public boolean hasMask() {
+        return maskPlane != null;
+    }
+
+    /**
+     * Reads the image plane into a new {@link ImageMatrix} of "I" values. The hole pixels aren't marked, except by the
+     * -1 samples of a float32 file without a mask plane; see {@link ImageProcessor#ImageProcessor(RawImage, RawImage,
+     * int)} to mark them from a mask plane.
+     * @return The image, whose stride is its width
+     */
+    public ImageMatrix readImage() {
+        ImageMatrix image = new ImageMatrix(width, height);
+        float[] data = image.getData();
+        switch (sampleType) {
+            case UINT8: {
+                ByteBuffer samples = imagePlane.duplicate();
+                byte[] row = new byte[width];
+                for (int y = 0; y < height; y++) {
+                    samples.get(row);
+                    int rowStart = y * width;
+                    for (int x = 0; x < width; x++) {
+                        data[rowStart + x] = (float) (row[x] & 0xFF) / 255;
+                    }
+                }
+                break;
+            }
+            case UINT16: {
+                ShortBuffer samples = imagePlane.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                short[] row = new short[width];
+                for (int y = 0; y < height; y++) {
+                    samples.get(row);
+                    int rowStart = y * width;
+                    for (int x = 0; x < width; x++) {
+                        data[rowStart + x] = (float) (row[x] & 0xFFFF) / 65535;
+                    }
+                }
+                break;
+            }
+            default:
+                // the plane has the layout of the matrix, so it is a single copy
+                imagePlane.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(data);
+        }
+        return image;
+    }
+
+    /**
+     * Reads the mask plane into a new {@link HoleMask}, as a single copy of its words. Bits past the width of a row,
+     * which a mask must keep clear, are ignored.
+     * @return The mask of the hole pixels
+     * @throws IllegalStateException if the file holds no mask plane
+     */
+    HoleMask readMask() {
+        if (maskPlane == null) {
+            throw new IllegalStateException("The raw image file holds no mask plane");
+        }
+        HoleMask mask = new HoleMask(width, height);
+        long[] words = mask.getWords();
+        maskPlane.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words);
+        int wordsPerRow = HoleMask.wordsPerRow(width);
+        long lastWordMask = -1L >>> ((wordsPerRow << 6) - width);
+        for (int last = wordsPerRow - 1; last < words.length; last += wordsPerRow) {
+            words[last] &= lastWordMask;
+        }
+        return mask;
+    }
+
+    /**
+     * Writes every pixel of an image to the image plane.
+     * @param image The image, of the same size as the file
+     */
+    public void writeImage(ImageMatrix image) {
+        checkWritable(image);
+        float[] data = image.getData();
+        int stride = image.getStride();
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * stride;
+            for (int x = 0; x < width; x++) {
+                putSample(y * width + x, data[rowStart + x]);
+            }
+        }
+    }
+
+    /**
+     * Writes some pixels of an image to the image plane, in place, leaving the other samples of the file as they are.
+     * Writing back only the hole pixels of a filled image costs O(|H|), whatever the size of the image.
+     * @param image The image, of the same size as the file
+     * @param indices The indices of the pixels to write, in the image (see {@link ImageMatrix#index(int, int)})
+     */
+    public void writePixels(ImageMatrix image, int[] indices) {
+        checkWritable(image);
+        float[] data = image.getData();
+        int stride = image.getStride();
+        for (int p : indices) {
+            // the plane's stride is the width of the image
+            putSample(stride == width ? p : image.yOf(p) * width + image.xOf(p), data[p]);
+        }
+    }
+
+    private void putSample(int sample, float value) {
+        switch (sampleType) {
+            case UINT8:
+                // the same conversion as the PNG output, see RasterIO#toGrayImage
+                imagePlane.put(sample, (byte) (int) (value * 255));
+                break;
+            case UINT16:
+                imagePlane.putShort(sample * 2, (short) (int) (value * 65535));
+                break;
+            default:
+                imagePlane.putFloat(sample * 4, value);
+        }
+    }
+
+    /**
+     * Writes the words of a mask to the mask plane.
+     * @param mask The mask, of the same size as the file
+     * @throws IllegalStateException if the file holds no mask plane, or isn't writable
+     */
+    void writeMask(HoleMask mask) {
+        if (maskPlane == null || !writable) {
+            throw new IllegalStateException("The raw image file holds no writable mask plane");
+        }
+        if (mask.getWidth() != width || mask.getHeight() != height) {
+            throw new IllegalArgumentException("The mask must be of the same size as the raw image");
+        }
+        LongBuffer words = maskPlane.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        words.put(mask.getWords());
+    }
+
+    private void checkWritable(ImageMatrix image) {
+        if (!writable) {
+            throw new IllegalStateException("The raw image file was opened for reading only");
+        }
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("The image must be of the same size as the raw image");
+        }
+    }
+
+    /**
+     * Flushes the changes to the planes of a writable file to the disk. Does nothing for a file opened for reading.
+     */
+    public void force() {
+        if (writable) {
+            imagePlane.force();
+            if (maskPlane != null) {
+                maskPlane.force();
+            }
+        }
+    }
+
+    /**
+     * Flushes the changes of a writable file to the disk, and closes the file.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.holeFilling;
+
+import java.util.Arrays;
+
+/**
+ * A {@link FillKernel} specialized for {@link DefaultWeightingFunc}, computing the weights 1/(distance^z + epsilon)
+ * inline instead of calling the weighting function through its interface.
+ * The integer power is computed by repeated multiplication: from the squared distance when z is even, so no square
+ * root is needed, and from the square root of the squared distance times the squared distance otherwise.
+ * This is the fallback used when the JDK Vector API is not available, see {@link VectorDefaultFillKernel}.
+ */
+final class ScalarDefaultFillKernel implements FillKernel {
+    private final float epsilon;
+    private final int z;
+    private final Accumulation accumulation;
+
+    /**
+     * Initializes a new kernel with the parameters of the given weighting function, accumulating in float.
+     * @param W the weighting function whose weights the kernel computes
+     */
+    ScalarDefaultFillKernel(DefaultWeightingFunc W) {
+        this(W, Accumulation.FLOAT);
+    }
+
+    /**
+     * Initializes a new kernel with the parameters of the given weighting function.
+     * @param W the weighting function whose weights the kernel computes
+     * @param accumulation the precision of the weighted sums
+     */
+    ScalarDefaultFillKernel(DefaultWeightingFunc W, Accumulation accumulation) {
+        this.epsilon = (float) W.getEpsilon();
+        this.z = W.getZ();
+        this.accumulation = accumulation;
+    }
+
+    @Override
+    public void weightedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        if (accumulation == Accumulation.DOUBLE) {
+            doubleSums(ux, uy, boundary, sums);
+            return;
+        }
+        if (accumulation == Accumulation.KAHAN) {
+            compensatedSums(ux, uy, boundary, sums);
+            return;
+        }
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        float numerator = 0;
+        float dominator = 0;
+        for (int i = 0; i < bValue.length; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (distancePower(dx * dx + dy * dy, z) + epsilon);
+            numerator += weightRes * bValue[i];
+            dominator += weightRes;
+        }
+        sums[0] = numerator;
+        sums[1] = dominator;
+    }
+
+    private void doubleSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        double numerator = 0;
+        double dominator = 0;
+        for (int i = 0; i < bValue.length; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (distancePower(dx * dx + dy * dy, z) + epsilon);
+            numerator += (double) weightRes * bValue[i];
+            dominator += weightRes;
+        }
+        sums[0] = (float) numerator;
+        sums[1] = (float) dominator;
+    }
+
+    private void compensatedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        float numerator = 0;
+        float numeratorError = 0;
+        float dominator = 0;
+        float dominatorError = 0;
+        for (int i = 0; i < bValue.length; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (distancePower(dx * dx + dy * dy, z) + epsilon);
+            float term = weightRes * bValue[i];
+            float sum = numerator + term;
+            numeratorError += CompensatedSum.error(numerator, term, sum);
+            numerator = sum;
+            sum = dominator + weightRes;
+            dominatorError += CompensatedSum.error(dominator, weightRes, sum);
+            dominator = sum;
+        }
+        sums[0] = numerator + numeratorError;
+        sums[1] = dominator + dominatorError;
+    }
+
+    @Override
+    public void fillValues(int ux, int uy, BoundarySnapshot boundary, float[] values) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[][] channels = boundary.channels;
+        Arrays.fill(values, 0);
+        float dominator = 0;
+        for (int i = 0; i < bx.length; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (distancePower(dx * dx + dy * dy, z) + epsilon);
+            for (int c = 0; c < channels.length; c++) {
+                values[c] += weightRes * channels[c][i];
+            }
+            dominator += weightRes;
+        }
+        for (int c = 0; c < channels.length; c++) {
+            values[c] /= dominator;
+        }
+    }
+
+    /**
+     * Raises a distance to an integer power, given the squared distance.
+     * @param squaredDistance the squared distance
+     * @param z the non-negative power
+     * @return the distance raised to the power z
+     */
+    static float distancePower(float squaredDistance, int z) {
+        float result = (z & 1) == 0 ? 1 : (float) Math.sqrt(squaredDistance);
+        for (int k = z >> 1; k > 0; k--) {
+            result *= squaredDistance;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.holeFilling;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class fills holes in images that are too large to be decoded into memory as a whole, such as gigapixel scans.
+ * Instead of loading the full image and mask like {@link ImageProcessor}, it works on strips of rows, read with
+ * {@link ImageReader} and {@link ImageReadParam#setSourceRegion}:
+ * <ol>
+ *     <li>The mask is scanned strip by strip, and the connected components of the hole are labeled as runs of hole
+ *     pixels ({@link HoleRunLabeler}), keeping only the runs in memory.</li>
+ *     <li>The components are grouped into bands of consecutive rows no taller than the strip height, and every band is
+ *     decoded once: the rows covering its components, plus a one pixel margin for their boundaries. The band is
+ *     converted to a single {@link ImageMatrix} in which only its components are holes, and they are filled together
+ *     by one {@link ImageHoleFiller}, each from its own boundary.</li>
+ *     <li>The output is written through {@link ImageWriter} as a grayscale image whose strips are produced on demand
+ *     from the original image and the filled values, so it never exists in memory as a whole.</li>
+ * </ol>
+ * Every component is filled only from its own boundary pixels, so the result is the per-component fill of
+ * {@link ImageHoleFiller} (see {@link ImageHoleFiller#setGlobalBoundary(boolean)}), not its default fill from all the
+ * boundary pixels of the image, which would need the whole boundary of the image in memory.
+ * Peak memory is therefore bounded by the strip height times the image width, and the number of hole pixels, rather
+ * than by the image size - except for a component taller than the strip height, e.g. a long diagonal scratch, whose
+ * band is all the rows of its bounding box, decoded and filled at once.
+ * Formats that decode regions without decoding the rows before them (e.g. tiled TIFF) are read in a single pass;
+ * sequential formats such as PNG are decoded from the top of the file again for every band and every output strip,
+ * so decoding costs about the image size times the number of bands and strips, and a larger strip height trades
+ * memory for time.
+ * When metrics are enabled (see {@link FillMetrics}), every call to {@link #fillHoles(String)} is a run, reported once
+ * the output is written. The decode of the mask strips and of the bands is measured as DECODE, labeling the mask and
+ * marking the holes of the bands as MASK_SCAN, and the hole and boundary detection and the fill of every band as their
+ * own stages. Writing the output re-decodes the original image strip by strip, which is measured as part of ENCODE.
+ */
+public class TiledHoleFiller {
+    /**
+     * The default number of image rows decoded at once.
+     */
+    public static final int DEFAULT_STRIP_HEIGHT = 512;
+
+    private WeightingFunc W;
+    private final String inputImage;
+    private final String inputMask;
+    private final int connectivityType;
+    private int stripHeight = DEFAULT_STRIP_HEIGHT;
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.TiledHoleFiller class with a specific weighting
+     * function. Nothing is read until {@link #fillHoles(String)} is called.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     * @param W the custom weighting function to use for hole filling
+     */
+    public TiledHoleFiller(String inputImage, String inputMask, int connectivityType, WeightingFunc W){
+        this.inputImage = inputImage;
+        this.inputMask = inputMask;
+        this.connectivityType = connectivityType;
+        this.W = W;
+    }
+
+    /**
+     * Initializes a new instance of the com.example.holeFilling.TiledHoleFiller with the default weighting function.
+     *
+     * @param inputImage a String path to the original image
+     * @param inputMask a String path to the image representing the hole in the image
+     * @param connectivityType the type of connectivity (4 or 8) used to define adjacency in the boundaries detection
+     */
+    public TiledHoleFiller(String inputImage, String inputMask, int connectivityType){
+        this(inputImage, inputMask, connectivityType, null);
+    }
+
+    /**
+     * Sets the number of image rows decoded at once when scanning the mask, filling the holes and writing the output.
+     * A hole component that is taller than the strip height is still decoded as a whole.
+     *
+     * @param stripHeight the number of rows decoded at once
+     * @throws IllegalArgumentException if the strip height is not positive
+     */
+    public void setStripHeight(int stripHeight) {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("The strip height must be positive: " + stripHeight);
+        }
+        this.stripHeight = stripHeight;
+    }
+
+    /**
+     * Fills the holes of the image and writes the result as a grayscale image, in the format given by the extension
+     * of the output path (png if there is none).
+     *
+     * @param outPath a String path to the output image
+     * @throws IOException if the image or the mask can't be read, or the output can't be written
+     */
+    public void fillHoles(String outPath) throws IOException {
+        if (this.W == null){
+            this.W = new DefaultWeightingFunc();
+        }
+        FillMetrics metrics = FillMetrics.startRun();
+        try (ImageInputStream imageStream = openStream(inputImage);
+             ImageInputStream maskStream = openStream(inputMask)) {
+            ImageReader imageReader = readerFor(imageStream, inputImage);
+            ImageReader maskReader = readerFor(maskStream, inputMask);
+            try {
+                int width = imageReader.getWidth(0);
+                int height = imageReader.getHeight(0);
+                if (maskReader.getWidth(0) != width || maskReader.getHeight(0) != height) {
+                    throw new IllegalArgumentException("The mask must be of the same size as the image");
+                }
+                HoleRunLabeler labeler = scanMask(maskReader, width, height, metrics);
+                float[] holeValues = new float[checkedHoleSize(labeler)];
+                int[] runValueStart = new int[labeler.runCount()];
+                for (int r = 1; r < labeler.runCount(); r++) {
+                    runValueStart[r] = runValueStart[r - 1] + labeler.runX1(r - 1) - labeler.runX0(r - 1);
+                }
+                int boundaryPixels = fillComponents(imageReader, labeler, width, height, holeValues, runValueStart,
+                        metrics);
+                if (metrics != null) {
+                    metrics.begin(FillMetrics.Stage.ENCODE);
+                }
+                writeOutput(new FilledStripImage(imageReader, width, height, stripHeight, labeler, holeValues,
+                        runValueStart), outPath);
+                if (metrics != null) {
+                    metrics.end(FillMetrics.Stage.ENCODE);
+                    // the bands set the sizes of their own holes and boundaries
+                    metrics.setHolePixels(holeValues.length);
+                    metrics.setBoundaryPixels(boundaryPixels);
+                    metrics.report();
+                }
+            } finally {
+                imageReader.dispose();
+                maskReader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scans the mask strip by strip, labeling the connected components of the hole.
+     */
+    private HoleRunLabeler scanMask(ImageReader maskReader, int width, int height, FillMetrics metrics)
+            throws IOException {
+        HoleRunLabeler labeler = new HoleRunLabeler(connectivityType);
+        boolean[] isHole = new boolean[width];
+        int[] gray = new int[width];
+        for (int y0 = 0; y0 < height; y0 += stripHeight) {
+            int rows = Math.min(stripHeight, height - y0);
+            if (metrics != null) {
+                metrics.begin(FillMetrics.Stage.DECODE);
+            }
+            BufferedImage region = readRegion(maskReader, new Rectangle(0, y0, width, rows));
+            if (metrics != null) {
+                metrics.end(FillMetrics.Stage.DECODE);
+                metrics.begin(FillMetrics.Stage.MASK_SCAN);
+            }
+            RasterIO.GrayRows strip = RasterIO.grayRows(region);
+            for (int row = 0; row < rows; row++) {
+                strip.read(row, gray);
+                for (int x = 0; x < width; x++) {
+                    isHole[x] = RasterIO.isHoleLevel(gray[x]);
+                }
+                labeler.addRow(y0 + row, isHole, width);
+            }
+            if (metrics != null) {
+                metrics.end(FillMetrics.Stage.MASK_SCAN);
+            }
+        }
+        labeler.finish();
+        return labeler;
+    }
+
+    /**
+     * Fills the hole components band by band. Components are numbered in the order of their first row, so
+     * consecutive components are grouped into a band as long as the band's rows fit in the strip height, and the band
+     * is decoded and filled once for all of them.
+     * @return the number of boundary pixels of all the components
+     */
+    private int fillComponents(ImageReader imageReader, HoleRunLabeler labeler, int width, int height,
+                               float[] holeValues, int[] runValueStart, FillMetrics metrics) throws IOException {
+        int boundaryPixels = 0;
+        int c = 0;
+        while (c < labeler.componentCount()) {
+            int bandY0 = Math.max(0, labeler.minY(c) - 1);
+            int bandY1 = Math.min(height - 1, labeler.maxY(c) + 1);
+            int last = c + 1;
+            while (last < labeler.componentCount()
+                    && Math.min(height - 1, Math.max(bandY1, labeler.maxY(last) + 1)) - bandY0 < stripHeight) {
+                bandY1 = Math.min(height - 1, Math.max(bandY1, labeler.maxY(last) + 1));
+                last++;
+            }
+            if (metrics != null) {
+                metrics.begin(FillMetrics.Stage.DECODE);
+            }
+            BufferedImage band = readRegion(imageReader, new Rectangle(0, bandY0, width, bandY1 - bandY0 + 1));
+            if (metrics != null) {
+                metrics.end(FillMetrics.Stage.DECODE);
+            }
+            boundaryPixels += fillBand(c, last, band, bandY0, labeler, holeValues, runValueStart, metrics);
+            c = last;
+        }
+        return boundaryPixels;
+    }
+
+    /**
+     * Fills the hole components [first, last) from the decoded band of rows containing them, and stores the filled
+     * values of their runs. The pixels of the other components crossing the band are not holes in its matrix; none of
+     * them is adjacent to the band's components, so they are never boundary pixels either.
+     * @return the number of boundary pixels of the band's components
+     */
+    private int fillBand(int first, int last, BufferedImage band, int bandY0, HoleRunLabeler labeler,
+                         float[] holeValues, int[] runValueStart, FillMetrics metrics) {
+        if (metrics != null) {
+            metrics.begin(FillMetrics.Stage.MASK_SCAN);
+        }
+        int width = band.getWidth();
+        int bandHeight = band.getHeight();
+        ImageMatrix matrix = new ImageMatrix(width, bandHeight);
+        float[] data = matrix.getData();
+        RasterIO.GrayRows rows = RasterIO.grayRows(band);
+        int[] gray = new int[width];
+        for (int y = 0; y < bandHeight; y++) {
+            rows.read(y, gray);
+            int rowStart = matrix.index(0, y);
+            for (int x = 0; x < width; x++) {
+                data[rowStart + x] = (float) gray[x] / 255;
+            }
+        }
+        int firstRun = labeler.componentRunStart(first);
+        int endRun = labeler.componentRunStart(last);
+        for (int i = firstRun; i < endRun; i++) {
+            int run = labeler.componentRun(i);
+            int rowStart = matrix.index(0, labeler.runY(run) - bandY0);
+            Arrays.fill(data, rowStart + labeler.runX0(run), rowStart + labeler.runX1(run), ImageMatrix.HOLE);
+        }
+        if (metrics != null) {
+            metrics.end(FillMetrics.Stage.MASK_SCAN);
+        }
+        ImageProcessor processor = new ImageProcessor(matrix, connectivityType, metrics);
+        ImageHoleFiller filler = new ImageHoleFiller(processor, this.W);
+        filler.setGlobalBoundary(false);
+        filler.fillHoles(ForkJoinPool.commonPool());
+        for (int i = firstRun; i < endRun; i++) {
+            int run = labeler.componentRun(i);
+            int y = labeler.runY(run) - bandY0;
+            int offset = runValueStart[run];
+            for (int x = labeler.runX0(run); x < labeler.runX1(run); x++) {
+                holeValues[offset++] = matrix.get(x, y);
+            }
+        }
+        return processor.getBoundaryIndices().length;
+    }
+
+    private void writeOutput(RenderedImage output, String outPath) throws IOException {
+        int dot = outPath.lastIndexOf('.');
+        String format = (dot >= 0 && dot > outPath.lastIndexOf(File.separatorChar)) ? outPath.substring(dot + 1)
+                : "png";
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for the format " + format);
+        }
+        ImageWriter writer = writers.next();
+        File outputFile = new File(outPath);
+        outputFile.delete();
+        try (ImageOutputStream outputStream = ImageIO.createImageOutputStream(outputFile)) {
+            writer.setOutput(outputStream);
+            writer.write(new IIOImage(output, null, null));
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static int checkedHoleSize(HoleRunLabeler labeler) {
+        long total = 0;
+        for (int c = 0; c < labeler.componentCount(); c++) {
+            total += labeler.pixelCount(c);
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The hole is too large: " + total + " pixels");
+        }
+        return (int) total;
+    }
+
+    private static ImageInputStream openStream(String path) throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(new File(path));
+        if (stream == null) {
+            throw new IOException("Can't read " + path);
+        }
+        return stream;
+    }
+
+    private static ImageReader readerFor(ImageInputStream stream, String path) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            throw new IOException("No image reader for " + path);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(stream, false, true);
+        return reader;
+    }
+
+    private static BufferedImage readRegion(ImageReader reader, Rectangle region) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        return reader.read(0, param);
+    }
+
+    /**
+     * The filled grayscale image, exposed to an {@link ImageWriter} as a {@link RenderedImage} made of full-width
+     * strips. A strip is produced when the writer asks for it, by decoding the strip from the original image,
+     * converting it to gray and placing the filled values of the hole runs in it. Only the last strip is kept.
+     */
+    private static class FilledStripImage implements RenderedImage {
+        private final ImageReader imageReader;
+        private final int width;
+        private final int height;
+        private final int stripHeight;
+        private final HoleRunLabeler labeler;
+        private final float[] holeValues;
+        private final int[] runValueStart;
+        private final SampleModel sampleModel;
+        private final ColorModel colorModel;
+        private int cachedStrip = -1;
+        private WritableRaster cachedRaster;
+
+        FilledStripImage(ImageReader imageReader, int width, int height, int stripHeight, HoleRunLabeler labeler,
+                         float[] holeValues, int[] runValueStart) {
+            this.imageReader = imageReader;
+            this.width = width;
+            this.height = height;
+            this.stripHeight = stripHeight;
+            this.labeler = labeler;
+            this.holeValues = holeValues;
+            this.runValueStart = runValueStart;
+            this.sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, stripHeight, 1, width,
+                    new int[] {0});
+            this.colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+                    ColorModel.OPAQUE, DataBuffer.TYPE_BYTE);
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            if (tileY != cachedStrip) {
+                cachedRaster = readStrip(tileY);
+                cachedStrip = tileY;
+            }
+            return cachedRaster;
+        }
+
+        private WritableRaster readStrip(int strip) {
+            int y0 = strip * stripHeight;
+            int rows = Math.min(stripHeight, height - y0);
+            WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, rows, 1,
+                    new java.awt.Point(0, y0));
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            BufferedImage source;
+            try {
+                source = readRegion(imageReader, new Rectangle(0, y0, width, rows));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read rows " + y0 + "-" + (y0 + rows - 1), e);
+            }
+            RasterIO.GrayRows sourceRows = RasterIO.grayRows(source);
+            int[] gray = new int[width];
+            for (int row = 0; row < rows; row++) {
+                sourceRows.read(row, gray);
+                for (int x = 0; x < width; x++) {
+                    data[row * width + x] = (byte) gray[x];
+                }
+            }
+            // the runs are in row-major order, so the runs of the strip are consecutive
+            int run = firstRunAtOrAfter(y0);
+            for (; run < labeler.runCount() && labeler.runY(run) < y0 + rows; run++) {
+                int rowOffset = (labeler.runY(run) - y0) * width;
+                int offset = runValueStart[run];
+                for (int x = labeler.runX0(run); x < labeler.runX1(run); x++) {
+                    data[rowOffset + x] = (byte) (int) (holeValues[offset++] * 255);
+                }
+            }
+            return raster;
+        }
+
+        private int firstRunAtOrAfter(int y) {
+            int low = 0;
+            int high = labeler.runCount();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (labeler.runY(mid) < y) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            int firstStrip = rect.y / stripHeight;
+            int lastStrip = (rect.y + rect.height - 1) / stripHeight;
+            if (firstStrip == lastStrip) {
+                return getTile(0, firstStrip).createChild(rect.x, rect.y, rect.width, rect.height, rect.x, rect.y,
+                        null);
+            }
+            WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, rect.width, rect.height, 1,
+                    rect.getLocation());
+            copyData(raster);
+            return raster;
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height, 1, null);
+            }
+            Rectangle bounds = raster.getBounds();
+            for (int strip = bounds.y / stripHeight; strip * stripHeight < bounds.y + bounds.height; strip++) {
+                Raster tile = getTile(0, strip);
+                Rectangle overlap = bounds.intersection(tile.getBounds());
+                if (!overlap.isEmpty()) {
+                    raster.setRect(tile.createChild(overlap.x, overlap.y, overlap.width, overlap.height, overlap.x,
+                            overlap.y, null));
+                }
+            }
+            return raster;
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (height + stripHeight - 1) / stripHeight;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripHeight;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.holeFilling;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link FillKernel} specialized for {@link DefaultWeightingFunc}, computing the weights of several boundary pixels
+ * at once with the JDK Vector API (the jdk.incubator.vector module).
+ * It computes the same weights as {@link ScalarDefaultFillKernel}, but sums them lane by lane, so the results may
+ * differ from the scalar kernel in the last bits. They don't depend on the number of threads filling the hole.
+ * The {@link Accumulation#DOUBLE} sums widen the lanes of the weights and the values to two vectors of doubles, and
+ * the {@link Accumulation#KAHAN} sums keep the rounding error of every lane in a second vector.
+ * This class must only be loaded when the module is available, see {@link FillKernel#forWeightingFunc}.
+ */
+final class VectorDefaultFillKernel implements FillKernel {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // an int species with the same shape, so that int and float vectors have the same number of lanes
+    private static final VectorSpecies<Integer> INTS = FLOATS.withLanes(int.class);
+    // a double species with the same shape, holding half of the lanes of a float vector
+    private static final VectorSpecies<Double> DOUBLES = FLOATS.withLanes(double.class);
+    private static final FloatVector ONES = FloatVector.broadcast(FLOATS, 1);
+
+    private final float epsilon;
+    private final int z;
+    private final Accumulation accumulation;
+
+    /**
+     * Initializes a new kernel with the parameters of the given weighting function, accumulating in float.
+     * @param W the weighting function whose weights the kernel computes
+     */
+    VectorDefaultFillKernel(DefaultWeightingFunc W) {
+        this(W, Accumulation.FLOAT);
+    }
+
+    /**
+     * Initializes a new kernel with the parameters of the given weighting function.
+     * @param W the weighting function whose weights the kernel computes
+     * @param accumulation the precision of the weighted sums
+     */
+    VectorDefaultFillKernel(DefaultWeightingFunc W, Accumulation accumulation) {
+        this.epsilon = (float) W.getEpsilon();
+        this.z = W.getZ();
+        this.accumulation = accumulation;
+    }
+
+    @Override
+    public void weightedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        if (accumulation == Accumulation.DOUBLE) {
+            doubleSums(ux, uy, boundary, sums);
+            return;
+        }
+        if (accumulation == Accumulation.KAHAN) {
+            compensatedSums(ux, uy, boundary, sums);
+            return;
+        }
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        int n = bValue.length;
+        int upperBound = FLOATS.loopBound(n);
+        IntVector vux = IntVector.broadcast(INTS, ux);
+        IntVector vuy = IntVector.broadcast(INTS, uy);
+        FloatVector numerators = FloatVector.zero(FLOATS);
+        FloatVector dominators = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < upperBound; i += FLOATS.length()) {
+            FloatVector weights = weights(vux, vuy, bx, by, i);
+            numerators = weights.fma(FloatVector.fromArray(FLOATS, bValue, i), numerators);
+            dominators = dominators.add(weights);
+        }
+        float numerator = numerators.reduceLanes(VectorOperators.ADD);
+        float dominator = dominators.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (ScalarDefaultFillKernel.distancePower(dx * dx + dy * dy, z) + epsilon);
+            numerator += weightRes * bValue[i];
+            dominator += weightRes;
+        }
+        sums[0] = numerator;
+        sums[1] = dominator;
+    }
+
+    private void doubleSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        int n = bValue.length;
+        int upperBound = FLOATS.loopBound(n);
+        IntVector vux = IntVector.broadcast(INTS, ux);
+        IntVector vuy = IntVector.broadcast(INTS, uy);
+        DoubleVector numerators0 = DoubleVector.zero(DOUBLES);
+        DoubleVector numerators1 = DoubleVector.zero(DOUBLES);
+        DoubleVector dominators0 = DoubleVector.zero(DOUBLES);
+        DoubleVector dominators1 = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (; i < upperBound; i += FLOATS.length()) {
+            FloatVector weights = weights(vux, vuy, bx, by, i);
+            FloatVector values = FloatVector.fromArray(FLOATS, bValue, i);
+            DoubleVector weights0 = (DoubleVector) weights.convert(VectorOperators.F2D, 0);
+            DoubleVector weights1 = (DoubleVector) weights.convert(VectorOperators.F2D, 1);
+            numerators0 = weights0.fma((DoubleVector) values.convert(VectorOperators.F2D, 0), numerators0);
+            numerators1 = weights1.fma((DoubleVector) values.convert(VectorOperators.F2D, 1), numerators1);
+            dominators0 = dominators0.add(weights0);
+            dominators1 = dominators1.add(weights1);
+        }
+        double numerator = numerators0.add(numerators1).reduceLanes(VectorOperators.ADD);
+        double dominator = dominators0.add(dominators1).reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (ScalarDefaultFillKernel.distancePower(dx * dx + dy * dy, z) + epsilon);
+            numerator += (double) weightRes * bValue[i];
+            dominator += weightRes;
+        }
+        sums[0] = (float) numerator;
+        sums[1] = (float) dominator;
+    }
+
+    private void compensatedSums(int ux, int uy, BoundarySnapshot boundary, float[] sums) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        float[] bValue = boundary.value;
+        int n = bValue.length;
+        int upperBound = FLOATS.loopBound(n);
+        IntVector vux = IntVector.broadcast(INTS, ux);
+        IntVector vuy = IntVector.broadcast(INTS, uy);
+        FloatVector numerators = FloatVector.zero(FLOATS);
+        FloatVector numeratorErrors = FloatVector.zero(FLOATS);
+        FloatVector dominators = FloatVector.zero(FLOATS);
+        FloatVector dominatorErrors = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < upperBound; i += FLOATS.length()) {
+            FloatVector weights = weights(vux, vuy, bx, by, i);
+            FloatVector terms = weights.mul(FloatVector.fromArray(FLOATS, bValue, i));
+            FloatVector sum = numerators.add(terms);
+            numeratorErrors = numeratorErrors.add(additionError(numerators, terms, sum));
+            numerators = sum;
+            sum = dominators.add(weights);
+            dominatorErrors = dominatorErrors.add(additionError(dominators, weights, sum));
+            dominators = sum;
+        }
+        float numerator = 0;
+        float numeratorError = 0;
+        float dominator = 0;
+        float dominatorError = 0;
+        for (; i < n; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (ScalarDefaultFillKernel.distancePower(dx * dx + dy * dy, z) + epsilon);
+            float term = weightRes * bValue[i];
+            float sum = numerator + term;
+            numeratorError += CompensatedSum.error(numerator, term, sum);
+            numerator = sum;
+            sum = dominator + weightRes;
+            dominatorError += CompensatedSum.error(dominator, weightRes, sum);
+            dominator = sum;
+        }
+        // the few lane sums are added up in double, so that adding them doesn't lose what the errors kept
+        DoubleVector numeratorLanes = ((DoubleVector) numerators.convert(VectorOperators.F2D, 0))
+                .add(numerators.convert(VectorOperators.F2D, 1))
+                .add(numeratorErrors.convert(VectorOperators.F2D, 0))
+                .add(numeratorErrors.convert(VectorOperators.F2D, 1));
+        DoubleVector dominatorLanes = ((DoubleVector) dominators.convert(VectorOperators.F2D, 0))
+                .add(dominators.convert(VectorOperators.F2D, 1))
+                .add(dominatorErrors.convert(VectorOperators.F2D, 0))
+                .add(dominatorErrors.convert(VectorOperators.F2D, 1));
+        sums[0] = (float) (numeratorLanes.reduceLanes(VectorOperators.ADD) + numerator + numeratorError);
+        sums[1] = (float) (dominatorLanes.reduceLanes(VectorOperators.ADD) + dominator + dominatorError);
+    }
+
+    // the weights of the boundary pixels [i, i + FLOATS.length()) for the hole pixel (vux, vuy), shared by every loop;
+    // C2 inlines it into them, so its vectors stay in registers: FillBenchmark allocates the same bytes per fill with
+    // every accumulation, whether the loop calls it or computes the weights inline
+    private FloatVector weights(IntVector vux, IntVector vuy, int[] bx, int[] by, int i) {
+        FloatVector dx = (FloatVector) vux.sub(IntVector.fromArray(INTS, bx, i)).convert(VectorOperators.I2F, 0);
+        FloatVector dy = (FloatVector) vuy.sub(IntVector.fromArray(INTS, by, i)).convert(VectorOperators.I2F, 0);
+        FloatVector squaredDistance = dx.mul(dx).add(dy.mul(dy));
+        FloatVector distancePower = (z & 1) == 0 ? ONES : squaredDistance.sqrt();
+        for (int k = z >> 1; k > 0; k--) {
+            distancePower = distancePower.mul(squaredDistance);
+        }
+        return ONES.div(distancePower.add(epsilon));
+    }
+
+    // the rounding error of sum = a + b, lane by lane, like CompensatedSum.error: the addend of larger magnitude is
+    // the larger one
+    private static FloatVector additionError(FloatVector a, FloatVector b, FloatVector sum) {
+        VectorMask<Float> aLarger = a.abs().compare(VectorOperators.GE, b.abs());
+        return b.blend(a, aLarger).sub(sum).add(a.blend(b, aLarger));
+    }
+
+    @Override
+    public void fillValues(int ux, int uy, BoundarySnapshot boundary, float[] values) {
+        // up to four channels are accumulated in float in one pass over the boundary, calculating every weight once;
+        // images with more channels take a pass per group of four channels, and a single channel takes the same path
+        // rather than fillValue, which would accumulate with the kernel's precision
+        for (int first = 0; first < boundary.channels.length; first += 4) {
+            fillChannels(ux, uy, boundary, first, Math.min(4, boundary.channels.length - first), values);
+        }
+    }
+
+    private void fillChannels(int ux, int uy, BoundarySnapshot boundary, int first, int count, float[] values) {
+        int[] bx = boundary.x;
+        int[] by = boundary.y;
+        // a group of fewer than four channels repeats its last channel and discards the extra sums, which is cheaper
+        // than branching on the number of channels in the loop
+        float[] c0 = boundary.channels[first];
+        float[] c1 = boundary.channels[first + Math.min(1, count - 1)];
+        float[] c2 = boundary.channels[first + Math.min(2, count - 1)];
+        float[] c3 = boundary.channels[first + Math.min(3, count - 1)];
+        int n = bx.length;
+        int upperBound = FLOATS.loopBound(n);
+        IntVector vux = IntVector.broadcast(INTS, ux);
+        IntVector vuy = IntVector.broadcast(INTS, uy);
+        FloatVector sums0 = FloatVector.zero(FLOATS);
+        FloatVector sums1 = FloatVector.zero(FLOATS);
+        FloatVector sums2 = FloatVector.zero(FLOATS);
+        FloatVector sums3 = FloatVector.zero(FLOATS);
+        FloatVector dominators = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < upperBound; i += FLOATS.length()) {
+            FloatVector weights = weights(vux, vuy, bx, by, i);
+            sums0 = weights.fma(FloatVector.fromArray(FLOATS, c0, i), sums0);
+            sums1 = weights.fma(FloatVector.fromArray(FLOATS, c1, i), sums1);
+            sums2 = weights.fma(FloatVector.fromArray(FLOATS, c2, i), sums2);
+            sums3 = weights.fma(FloatVector.fromArray(FLOATS, c3, i), sums3);
+            dominators = dominators.add(weights);
+        }
+        float numerator0 = sums0.reduceLanes(VectorOperators.ADD);
+        float numerator1 = sums1.reduceLanes(VectorOperators.ADD);
+        float numerator2 = sums2.reduceLanes(VectorOperators.ADD);
+        float numerator3 = sums3.reduceLanes(VectorOperators.ADD);
+        float dominator = dominators.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            float dx = ux - bx[i];
+            float dy = uy - by[i];
+            float weightRes = 1 / (ScalarDefaultFillKernel.distancePower(dx * dx + dy * dy, z) + epsilon);
+            numerator0 += weightRes * c0[i];
+            numerator1 += weightRes * c1[i];
+            numerator2 += weightRes * c2[i];
+            numerator3 += weightRes * c3[i];
+            dominator += weightRes;
+        }
+        values[first] = numerator0 / dominator;
+        if (count > 1) {
+            values[first + 1] = numerator1 / dominator;
+        }
+        if (count > 2) {
+            values[first + 2] = numerator2 / dominator;
+        }
+        if (count > 3) {
+            values[first + 3] = numerator3 / dominator;
+        }
+    }
+}
@@ -16,4 +16,51 @@ public interface WeightingFunc {
      */
     float calculateWeight(Point u, Point v);
 
+    /**
+     * Calculates the weight between two pixels given by their coordinates, when their values are not known, e.g. when
+     * a fill plan precomputes the weights of a mask for every image it is applied to.
+     * Implementations are encouraged to override it with a version that doesn't allocate points. The default
+     * implementation delegates to {@link #calculateWeight(int, int, int, int, float)} with a boundary value of 0.
+     *
+     * @param ux the X coordinate of the first pixel, typically a hole pixel that needs its value computed
+     * @param uy the Y coordinate of the first pixel
+     * @param vx the X coordinate of the second pixel, typically a boundary pixel
+     * @param vy the Y coordinate of the second pixel
+     * @return the calculated weight as a float, representing the influence of pixel v on pixel u
+     */
+    default float calculateWeight(int ux, int uy, int vx, int vy) {
+        return calculateWeight(ux, uy, vx, vy, 0);
+    }
+
+    /**
+     * Calculates the weight of a boundary pixel, given by its coordinates and value, for a hole pixel given by its
+     * coordinates. The hole fillers call this method in their inner loop.
+     * The default implementation delegates to {@link #calculateWeight(Point, Point)} the way the hole fillers always
+     * called it, as {@code calculateWeight(v, u)}: the boundary pixel with its value first, and the hole pixel, whose
+     * value is still -1, second. Functions whose weight depends neither on the order of the points nor on their
+     * values, such as the {@link RadialWeightingFunc}s, override it without allocating points.
+     *
+     * @param ux the X coordinate of the hole pixel that needs its value computed
+     * @param uy the Y coordinate of the hole pixel
+     * @param vx the X coordinate of the boundary pixel
+     * @param vy the Y coordinate of the boundary pixel
+     * @param vValue the "I" value of the boundary pixel
+     * @return the calculated weight as a float, representing the influence of pixel v on pixel u
+     */
+    default float calculateWeight(int ux, int uy, int vx, int vy, float vValue) {
+        return calculateWeight(new Point(vy, vx, vValue), new Point(uy, ux, ImageMatrix.HOLE));
+    }
+
+    /**
+     * Returns the distance beyond which the weight between two pixels is 0.
+     * Hole fillers only visit the boundary pixels within this distance of a hole pixel when it is finite and the
+     * function is a {@link RadialWeightingFunc}. The default implementation returns infinity: every boundary pixel
+     * has a nonzero weight.
+     *
+     * @return the support radius of the function, or {@link Double#POSITIVE_INFINITY}
+     */
+    default double getSupportRadius() {
+        return Double.POSITIVE_INFINITY;
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.example.holeFilling.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the regular JMH main class, always with the GC profiler (reporting the allocation rate),
+ * and stores the results as JSON (jmh-result.json by default) so they can be compared between runs.
+ * Accepts the regular JMH command line options, e.g. a benchmark name regex, -p size=1024 or -rff results.json.
+ */
+public final class BenchmarkMain {
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse(DEFAULT_RESULT_FILE))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.holeFilling.bench;
+
+import com.example.holeFilling.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the detection of the hole (H) and boundary (B) pixels of an image that is already loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class DetectionBenchmark {
+    @Param({"256", "1024", "4096", "8192"})
+    public int size;
+
+    @Param({"DISC", "THIN_LINE", "SMALL_BLOBS", "HUGE_BLOB"})
+    public SyntheticImages.HoleShape shape;
+
+    @Param({"8"})
+    public int connectivityType;
+
+    private ImageProcessor processor;
+
+    @Setup
+    public void setUp() {
+        processor = new ImageProcessor(SyntheticImages.image(size), SyntheticImages.mask(size, shape),
+                connectivityType);
+    }
+
+    @Benchmark
+    public int[] findHoleAndBoundaries() {
+        processor.findH();
+        processor.findB(connectivityType);
+        return processor.getBoundaryIndices();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.holeFilling.bench;
+
+import com.example.holeFilling.Accumulation;
+import com.example.holeFilling.ImageHoleFiller;
+import com.example.holeFilling.ImageHoleFillerFasterAlg;
+import com.example.holeFilling.ImageMatrix;
+import com.example.holeFilling.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling the hole of an image whose hole and boundaries were already detected, with the exact algorithm
+ * (sequentially and in parallel) and with the sampled algorithm.
+ * Filling doesn't change the hole and boundary indices, so the same processor is filled again in every invocation.
+ * The exact fill is O(|H|*|B|), so the default sizes are smaller than in the other benchmarks; larger sizes can be
+ * given with -p size=... .
+ * Every fill is measured with each precision of the weighted sums (see {@link Accumulation}); e.g.
+ * -p accumulation=FLOAT measures only the default one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class FillBenchmark {
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    @Param({"DISC", "THIN_LINE", "SMALL_BLOBS", "HUGE_BLOB"})
+    public SyntheticImages.HoleShape shape;
+
+    @Param({"FLOAT", "DOUBLE", "KAHAN"})
+    public Accumulation accumulation;
+
+    private ImageProcessor processor;
+    private ImageHoleFiller exactFiller;
+    private ImageHoleFillerFasterAlg sampledFiller;
+
+    @Setup
+    public void setUp() {
+        processor = new ImageProcessor(SyntheticImages.image(size), SyntheticImages.mask(size, shape), 8);
+        exactFiller = new ImageHoleFiller(processor, null);
+        sampledFiller = new ImageHoleFillerFasterAlg(processor, null);
+        exactFiller.setAccumulation(accumulation);
+        sampledFiller.setAccumulation(accumulation);
+    }
+
+    @Benchmark
+    public ImageMatrix exactFill() {
+        exactFiller.fillHoles();
+        return processor.getImage();
+    }
+
+    @Benchmark
+    public ImageMatrix exactFillParallel() {
+        exactFiller.fillHoles(ForkJoinPool.commonPool());
+        return processor.getImage();
+    }
+
+    @Benchmark
+    public ImageMatrix sampledFill() {
+        sampledFiller.fillHoles();
+        return processor.getImage();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.holeFilling.bench;
+
+import com.example.holeFilling.ImageMatrix;
+import com.example.holeFilling.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ImageProcessor#loadImage(String, String)}: decoding the image and the mask from PNG files and
+ * converting them to the image matrix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class LoadBenchmark {
+    @Param({"256", "1024", "4096", "8192"})
+    public int size;
+
+    @Param({"DISC"})
+    public SyntheticImages.HoleShape shape;
+
+    private Path directory;
+    private String imagePath;
+    private String maskPath;
+    private ImageProcessor processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hole-filling-bench");
+        File image = directory.resolve("image.png").toFile();
+        File mask = directory.resolve("mask.png").toFile();
+        ImageIO.write(SyntheticImages.image(size), "png", image);
+        ImageIO.write(SyntheticImages.mask(size, shape), "png", mask);
+        imagePath = image.getPath();
+        maskPath = mask.getPath();
+        processor = new ImageProcessor(imagePath, maskPath, 8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(imagePath));
+        Files.deleteIfExists(Path.of(maskPath));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public ImageMatrix load() throws IOException {
+        processor.loadImage(imagePath, maskPath);
+        return processor.getImage();
+    }
+}
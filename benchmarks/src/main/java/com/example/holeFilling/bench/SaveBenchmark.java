@@ -0,0 +1,62 @@
+package com.example.holeFilling.bench;
+
+import com.example.holeFilling.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting the image matrix back to a grayscale image, with and without encoding it to a PNG file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class SaveBenchmark {
+    @Param({"256", "1024", "4096", "8192"})
+    public int size;
+
+    @Param({"DISC"})
+    public SyntheticImages.HoleShape shape;
+
+    private ImageProcessor processor;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = new ImageProcessor(SyntheticImages.image(size), SyntheticImages.mask(size, shape), 8);
+        output = Files.createTempFile("hole-filling-bench", ".png");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public BufferedImage toGrayscale() {
+        return processor.toGrayscaleImage();
+    }
+
+    @Benchmark
+    public void save() {
+        processor.saveGrayscaleImage(output.toString());
+    }
+}
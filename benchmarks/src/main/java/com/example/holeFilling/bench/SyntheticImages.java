@@ -0,0 +1,111 @@
+package com.example.holeFilling.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Generates the images and masks used by the benchmarks in memory, so that the benchmarks don't depend on any input
+ * files. The images are deterministic: the same size and hole shape always produce the same pixels.
+ */
+public final class SyntheticImages {
+
+    /**
+     * The shapes of the holes drawn in a mask.
+     */
+    public enum HoleShape {
+        /** A single disc in the middle of the image, with a diameter of a quarter of the image size. */
+        DISC,
+        /** A diagonal line, two pixels thick, crossing most of the image. */
+        THIN_LINE,
+        /** Many small blobs, about one for every 64x64 pixels, scattered over the image. */
+        SMALL_BLOBS,
+        /** A single irregular blob covering about a third of the image. */
+        HUGE_BLOB
+    }
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Generates a color image with smooth gradients and a little noise.
+     * @param size The width and height of the image in pixels
+     * @return The generated image
+     */
+    public static BufferedImage image(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int noise = random.nextInt(16);
+                int r = (x * 239 / size + noise) & 0xff;
+                int g = (y * 239 / size + noise) & 0xff;
+                int b = ((x + y) * 119 / size + noise) & 0xff;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Generates a mask of the given hole shape. Hole pixels are black and all other pixels are white.
+     * The holes never touch the border of the image.
+     * @param size The width and height of the mask in pixels
+     * @param shape The shape of the holes
+     * @return The generated mask
+     */
+    public static BufferedImage mask(int size, HoleShape shape) {
+        BufferedImage mask = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                mask.setRGB(x, y, 0xffffff);
+            }
+        }
+        double center = size / 2.0;
+        switch (shape) {
+            case DISC:
+                fillDisc(mask, center, center, size / 8.0);
+                break;
+            case THIN_LINE:
+                for (int i = size / 8; i < size - size / 8; i++) {
+                    mask.setRGB(i, i, 0);
+                    mask.setRGB(i + 1, i, 0);
+                }
+                break;
+            case SMALL_BLOBS:
+                Random random = new Random(size);
+                int blobs = Math.max(1, size * size / 4096);
+                for (int i = 0; i < blobs; i++) {
+                    fillDisc(mask, 4 + random.nextInt(size - 8), 4 + random.nextInt(size - 8), 2);
+                }
+                break;
+            case HUGE_BLOB:
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        double angle = Math.atan2(y - center, x - center);
+                        double radius = size * (0.3 + 0.05 * Math.sin(5 * angle));
+                        if (Math.hypot(x - center, y - center) < radius) {
+                            mask.setRGB(x, y, 0);
+                        }
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown hole shape: " + shape);
+        }
+        return mask;
+    }
+
+    private static void fillDisc(BufferedImage mask, double cx, double cy, double radius) {
+        int minX = (int) Math.max(1, Math.floor(cx - radius));
+        int maxX = (int) Math.min(mask.getWidth() - 2, Math.ceil(cx + radius));
+        int minY = (int) Math.max(1, Math.floor(cy - radius));
+        int maxY = (int) Math.min(mask.getHeight() - 2, Math.ceil(cy + radius));
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius) {
+                    mask.setRGB(x, y, 0);
+                }
+            }
+        }
+    }
+}
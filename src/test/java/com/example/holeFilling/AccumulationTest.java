@@ -0,0 +1,83 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every {@link Accumulation} gives the same fill with any number of threads, and that the double and the
+ * compensated sums are closer to the exact average than the float sums.
+ */
+class AccumulationTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(200, 150, 81);
+    // many discs, for a boundary large enough that the float sums lose the small weights
+    private static final BufferedImage MASK = TestImages.discMask(200, 150, 40, 12, 82);
+
+    @ParameterizedTest
+    @EnumSource(Accumulation.class)
+    void fillIsTheSameWithAnyNumberOfThreads(Accumulation accumulation) {
+        float[] sequential = fill(accumulation, 1);
+        for (int threads : new int[] {2, 3, 8}) {
+            assertArrayEquals(sequential, fill(accumulation, threads), threads + " threads");
+        }
+
+        float[] sampled = sampledFill(accumulation, 1);
+        assertArrayEquals(sampled, sampledFill(accumulation, 4));
+    }
+
+    @Test
+    void doubleAndKahanAreCloserToTheExactAverage() {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        ImageMatrix image = img.getImage();
+        int[] hole = img.getHoleIndices();
+        int[] boundaries = img.getBoundaryIndices();
+        DefaultWeightingFunc W = new DefaultWeightingFunc();
+        double[] exact = new double[hole.length];
+        for (int i = 0; i < hole.length; i++) {
+            double numerator = 0;
+            double dominator = 0;
+            for (int v : boundaries) {
+                double dx = image.xOf(hole[i]) - image.xOf(v);
+                double dy = image.yOf(hole[i]) - image.yOf(v);
+                double weight = 1 / (Math.pow(dx * dx + dy * dy, W.getZ() / 2.0) + W.getEpsilon());
+                numerator += weight * image.get(v);
+                dominator += weight;
+            }
+            exact[i] = numerator / dominator;
+        }
+
+        double floatError = meanError(fill(Accumulation.FLOAT, 1), hole, exact);
+        for (Accumulation accumulation : new Accumulation[] {Accumulation.DOUBLE, Accumulation.KAHAN}) {
+            double error = meanError(fill(accumulation, 1), hole, exact);
+            assertTrue(error < floatError, accumulation + ": " + error + " against " + floatError);
+        }
+    }
+
+    private static double meanError(float[] filled, int[] hole, double[] exact) {
+        double sum = 0;
+        for (int i = 0; i < hole.length; i++) {
+            sum += Math.abs(filled[hole[i]] - exact[i]);
+        }
+        return sum / hole.length;
+    }
+
+    private static float[] fill(Accumulation accumulation, int threads) {
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setAccumulation(accumulation);
+        filler.fillHoles(threads);
+        return filler.getImg().getImage().getData();
+    }
+
+    private static float[] sampledFill(Accumulation accumulation, int threads) {
+        ImageHoleFillerFasterAlg filler = new ImageHoleFillerFasterAlg(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setSeed(5);
+        filler.setAccumulation(accumulation);
+        filler.fillHoles(threads);
+        return filler.getImg().getImage().getData();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that {@link CutoffWeightingFunc}, filled through {@link LocalFillKernel}, weighs exactly the boundary pixels
+ * within its radius, so that a radius covering the whole image gives the fill of its base function. The local kernel
+ * looks the weights up in a table and visits the boundary pixels cell by cell, so the values may differ by rounding.
+ */
+class CutoffTest {
+    private static final float TOLERANCE = 1e-5f;
+    private static final BufferedImage IMAGE = TestImages.randomImage(90, 70, 81);
+    private static final BufferedImage MASK = TestImages.discMask(90, 70, 7, 12, 82);
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void radiusCoveringTheImageMatchesTheBaseFunction(boolean globalBoundary) {
+        DefaultWeightingFunc base = new DefaultWeightingFunc();
+        double diagonal = Math.hypot(IMAGE.getWidth(), IMAGE.getHeight());
+        for (double radius : new double[] {diagonal, 10 * diagonal}) {
+            assertArrayEquals(fill(base, globalBoundary), fill(new CutoffWeightingFunc(base, radius), globalBoundary),
+                    TOLERANCE, "radius " + radius);
+        }
+    }
+
+    @Test
+    void smallRadiusWeighsOnlyTheNearBoundary() {
+        DefaultWeightingFunc base = new DefaultWeightingFunc();
+        CutoffWeightingFunc W = new CutoffWeightingFunc(base, 4.5);
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        ImageMatrix image = img.getImage();
+        float[] expected = image.getData().clone();
+        float[] baseFill = fill(base, true);
+        for (int u : img.getHoleIndices()) {
+            float numerator = 0;
+            float dominator = 0;
+            for (int v : img.getBoundaryIndices()) {
+                float weight = W.weightAtDistance(Math.hypot(image.xOf(u) - image.xOf(v), image.yOf(u) - image.yOf(v)));
+                numerator += weight * image.get(v);
+                dominator += weight;
+            }
+            // a hole pixel with no boundary pixel within the radius is filled with the base function
+            expected[u] = dominator == 0 ? baseFill[u] : numerator / dominator;
+        }
+        assertArrayEquals(expected, fill(W, true), TOLERANCE);
+    }
+
+    private static float[] fill(WeightingFunc W, boolean globalBoundary) {
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, MASK, 8), W);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles();
+        return filler.getImg().getImage().getData();
+    }
+}
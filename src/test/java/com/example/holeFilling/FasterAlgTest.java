@@ -0,0 +1,48 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that the sampled fill of {@link ImageHoleFillerFasterAlg} is reproducible with a seed, and that it is the
+ * exact fill of {@link ImageHoleFiller} when the sample size exceeds the boundary.
+ */
+class FasterAlgTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(120, 80, 51);
+    private static final BufferedImage MASK = TestImages.discMask(120, 80, 6, 10, 52);
+
+    @Test
+    void sameSeedGivesSameFill() {
+        float[] first = sampledFill(7, ImageHoleFillerFasterAlg.DEFAULT_SAMPLE_SIZE, true, 1);
+        assertArrayEquals(first, sampledFill(7, ImageHoleFillerFasterAlg.DEFAULT_SAMPLE_SIZE, true, 1));
+        assertArrayEquals(first, sampledFill(7, ImageHoleFillerFasterAlg.DEFAULT_SAMPLE_SIZE, true, 4));
+        assertFalse(Arrays.equals(first, sampledFill(8, ImageHoleFillerFasterAlg.DEFAULT_SAMPLE_SIZE, true, 1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void sampleLargerThanBoundaryIsExact(boolean globalBoundary) {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        int k = img.getBoundaryIndices().length + 1;
+        ImageHoleFiller exact = new ImageHoleFiller(img, null);
+        exact.setGlobalBoundary(globalBoundary);
+        exact.fillHoles();
+        assertArrayEquals(img.getImage().getData(), sampledFill(3, k, globalBoundary, 1));
+    }
+
+    private static float[] sampledFill(long seed, int k, boolean globalBoundary, int threads) {
+        ImageHoleFillerFasterAlg filler = new ImageHoleFillerFasterAlg(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setSeed(seed);
+        filler.setSampleSize(k);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles(threads);
+        return filler.getImg().getImage().getData();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that runs are started only by the entry points of the pipeline, that a tiled fill is reported as a single
+ * run covering all its bands, and that the bytes a fill allocates on pool workers are counted.
+ */
+class FillMetricsTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(80, 60, 91);
+    private static final BufferedImage MASK = TestImages.discMask(80, 60, 6, 8, 92);
+    // keeps the arrays the weighting function allocates from being optimized away
+    private static volatile byte[] sink;
+
+    @Test
+    void processorsInMemoryStartNoRun() {
+        List<FillMetrics> runs = new CopyOnWriteArrayList<>();
+        FillListener listener = runs::add;
+        FillMetrics.addListener(listener);
+        try {
+            assertNull(new ImageProcessor(IMAGE, MASK, 8).getMetrics());
+            assertNull(new ImageProcessor(RasterIO.holeMatrix(MASK), 8).getMetrics());
+            FillPlan.compile(MASK, 8, null);
+        } finally {
+            FillMetrics.removeListener(listener);
+        }
+        assertTrue(runs.isEmpty());
+    }
+
+    @Test
+    void tiledFillIsOneRun(@TempDir Path dir) throws IOException {
+        String image = dir.resolve("image.png").toString();
+        String mask = dir.resolve("mask.png").toString();
+        ImageIO.write(IMAGE, "png", dir.resolve("image.png").toFile());
+        ImageIO.write(MASK, "png", dir.resolve("mask.png").toFile());
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        long pairs = 0;
+        for (HoleComponent component : img.getComponents()) {
+            pairs += (long) component.getHoleIndices().length * component.getBoundaryIndices().length;
+        }
+
+        List<FillMetrics> runs = new CopyOnWriteArrayList<>();
+        FillListener listener = runs::add;
+        FillMetrics.addListener(listener);
+        try {
+            TiledHoleFiller tiled = new TiledHoleFiller(image, mask, 8);
+            tiled.setStripHeight(16);
+            tiled.fillHoles(dir.resolve("output.png").toString());
+        } finally {
+            FillMetrics.removeListener(listener);
+        }
+        assertEquals(1, runs.size());
+        FillMetrics run = runs.get(0);
+        assertEquals(img.getHoleIndices().length, run.getHolePixels());
+        int boundaryPixels = 0;
+        for (HoleComponent component : img.getComponents()) {
+            boundaryPixels += component.getBoundaryIndices().length;
+        }
+        assertEquals(boundaryPixels, run.getBoundaryPixels());
+        assertEquals(pairs, run.getWeightEvaluations());
+        for (FillMetrics.Stage stage : FillMetrics.Stage.values()) {
+            assertTrue(run.getStageNanos(stage) > 0, stage.toString());
+        }
+    }
+
+    @Test
+    void poolWorkersAllocationsAreCounted(@TempDir Path dir) throws IOException {
+        String image = dir.resolve("image.png").toString();
+        String mask = dir.resolve("mask.png").toString();
+        ImageIO.write(IMAGE, "png", dir.resolve("image.png").toFile());
+        ImageIO.write(MASK, "png", dir.resolve("mask.png").toFile());
+        // every weight allocates at least 64 bytes
+        WeightingFunc allocating = (v, u) -> {
+            sink = new byte[64];
+            return new DefaultWeightingFunc().calculateWeight(v, u);
+        };
+
+        List<FillMetrics> runs = new CopyOnWriteArrayList<>();
+        FillListener listener = runs::add;
+        FillMetrics.addListener(listener);
+        try {
+            ImageHoleFiller filler = new ImageHoleFiller(image, mask, 8, allocating);
+            filler.fillHoles(4);
+            filler.getImg().reportMetrics();
+        } finally {
+            FillMetrics.removeListener(listener);
+        }
+        assertEquals(1, runs.size());
+        FillMetrics run = runs.get(0);
+        long bytes = run.getStageAllocatedBytes(FillMetrics.Stage.FILL);
+        assertTrue(bytes >= 64 * run.getWeightEvaluations(), bytes + " bytes for " + run.getWeightEvaluations()
+                + " weights");
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the precomputed fills, {@link FillPlan} and {@link FillSession}, give the values of the direct fill of
+ * {@link ImageHoleFiller}, up to the rounding of their sums, and that {@link FillPlanCache} shares the plan of equal
+ * masks.
+ */
+class FillPlanTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    private static final float TOLERANCE = 1e-4f;
+    private static final BufferedImage IMAGE = TestImages.randomImage(WIDTH, HEIGHT, 21);
+    private static final BufferedImage MASK = TestImages.discMask(WIDTH, HEIGHT, 8, 10, 22);
+
+    @Test
+    void planMatchesDefaultDirectFill() {
+        // two separate holes, whose values depend on each other's boundary in the default fill
+        BufferedImage mask = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean hole = (x >= 10 && x < 30 || x >= 80 && x < 95) && y >= 20 && y < 50;
+                mask.getRaster().setSample(x, y, 0, hole ? 0 : 255);
+            }
+        }
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, mask, 8), null);
+        filler.fillHoles();
+        ImageMatrix frame = new ImageProcessor(IMAGE, mask, 8).getImage();
+        FillPlan plan = FillPlan.compile(mask, 8, null);
+        assertTrue(plan.isGlobalBoundary());
+        plan.apply(frame);
+        assertArrayEquals(filler.getImg().getImage().getData(), frame.getData(), TOLERANCE);
+    }
+
+    @Test
+    void planMatchesDirectFill() {
+        for (boolean globalBoundary : new boolean[] {true, false}) {
+            ImageMatrix frame = new ImageProcessor(IMAGE, MASK, 8).getImage();
+            FillPlan.compile(MASK, 8, null, 0, false, globalBoundary).apply(frame);
+            assertArrayEquals(directFill(MASK, globalBoundary).getData(), frame.getData(), TOLERANCE);
+        }
+    }
+
+    @Test
+    void quantizedPlanStaysClose() {
+        ImageMatrix frame = new ImageProcessor(IMAGE, MASK, 8).getImage();
+        FillPlan.compile(MASK, 8, null, 0, true).apply(frame);
+        // every weight is rounded to a multiple of 1/65535 of the largest weight of its row
+        assertArrayEquals(directFill(MASK, true).getData(), frame.getData(), 1e-3f);
+    }
+
+    @Test
+    void cachedPlanIsSharedByEqualMasks() {
+        FillPlanCache cache = new FillPlanCache(1L << 30);
+        FillPlan plan = cache.get(MASK, 8, null);
+        BufferedImage copy = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        copy.getGraphics().drawImage(MASK, 0, 0, null);
+        assertSame(plan, cache.get(copy, 8, null));
+        assertEquals(1, cache.getHits());
+        assertArrayEquals(FillPlan.compile(MASK, 8, null).getHoleIndices(), plan.getHoleIndices());
+        FillPlan perComponent = cache.get(MASK, 8, null, 0, false, false);
+        assertNotSame(plan, perComponent);
+        assertFalse(perComponent.isGlobalBoundary());
+        assertSame(perComponent, cache.get(copy, 8, null, 0, false, false));
+    }
+
+    @Test
+    void sessionMatchesDirectFill() {
+        FillSession session = new FillSession(IMAGE, MASK, 8, null);
+        assertArrayEquals(directFill(MASK, true).getData(), session.getImage().getData(), TOLERANCE);
+    }
+
+    @Test
+    void editedSessionMatchesDirectFillOfTheEditedMask() {
+        FillSession session = new FillSession(IMAGE, MASK, 8, null);
+        session.addHolePixels(holePixels(TestImages.discMask(WIDTH, HEIGHT, 3, 6, 23)));
+        session.removeHolePixels(holePixels(TestImages.discMask(WIDTH, HEIGHT, 2, 5, 24)));
+        assertArrayEquals(directFill(editedMask(session), true).getData(), session.getImage().getData(), TOLERANCE);
+    }
+
+    @Test
+    void editedSessionFallsBackOutsideTheCutoff() {
+        // most hole pixels are farther than the cutoff from the boundary, and are filled from the whole boundary
+        CutoffWeightingFunc W = new CutoffWeightingFunc(new DefaultWeightingFunc(), 3);
+        FillSession session = new FillSession(IMAGE, MASK, 8, W);
+        session.addHolePixels(holePixels(TestImages.discMask(WIDTH, HEIGHT, 3, 6, 25)));
+        session.removeHolePixels(holePixels(TestImages.discMask(WIDTH, HEIGHT, 2, 5, 26)));
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, editedMask(session), 8), W);
+        filler.fillHoles();
+        assertArrayEquals(filler.getImg().getImage().getData(), session.getImage().getData(), TOLERANCE);
+    }
+
+    @Test
+    void driftAfterManyEditsStaysSmall() {
+        FillSession session = new FillSession(IMAGE, MASK, 8, null);
+        for (int edit = 0; edit < 1000; edit++) {
+            int[] stroke = holePixels(TestImages.discMask(WIDTH, HEIGHT, 1, 4, 100 + edit));
+            if (edit % 2 == 0) {
+                session.addHolePixels(stroke);
+            } else {
+                session.removeHolePixels(stroke);
+            }
+        }
+        float[] edited = session.getImage().getData().clone();
+        assertArrayEquals(directFill(editedMask(session), true).getData(), edited, TOLERANCE);
+        session.refill();
+        assertArrayEquals(session.getImage().getData(), edited, 1e-5f);
+    }
+
+    private static ImageMatrix directFill(BufferedImage mask, boolean globalBoundary) {
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, mask, 8), null);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles();
+        return filler.getImg().getImage();
+    }
+
+    private static int[] holePixels(BufferedImage mask) {
+        return new ImageProcessor(mask, mask, 8).getHoleIndices();
+    }
+
+    private static BufferedImage editedMask(FillSession session) {
+        BufferedImage mask = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                mask.getRaster().setSample(x, y, 0, session.isHole(y * WIDTH + x) ? 0 : 255);
+            }
+        }
+        return mask;
+    }
+}
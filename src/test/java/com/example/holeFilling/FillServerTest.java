@@ -0,0 +1,196 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the answers of {@link FillServer} to the requests it refuses or can't fill in time, that a timed out fill
+ * frees its worker, and that neither paths nor links lead out of the file root.
+ */
+class FillServerTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(40, 40, 101);
+    private static final BufferedImage MASK = TestImages.discMask(40, 40, 1, 6, 102);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    // while set, the weighting function spins for a millisecond per weight of a boundary pixel that isn't white, so a
+    // fill of IMAGE takes seconds, and a fill of a white image doesn't
+    private volatile boolean slow;
+    private final CountDownLatch filling = new CountDownLatch(1);
+    private FillServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void largeBodyIsRefused() throws Exception {
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.setMaxBodyBytes(100);
+        server.start();
+        assertEquals(413, post("", body()).statusCode());
+    }
+
+    @Test
+    void requestFindingNoWorkerIsRefused() throws Exception {
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.start();
+        slow = true;
+        CompletableFuture<HttpResponse<byte[]>> first = client.sendAsync(request("", body()),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertTrue(filling.await(10, TimeUnit.SECONDS));
+        assertEquals(503, post("", body()).statusCode());
+        slow = false;
+        assertEquals(200, first.get(30, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void timedOutFillFreesItsWorker() throws Exception {
+        server = newServer(200);
+        server.start();
+        slow = true;
+        assertEquals(504, post("", body(IMAGE)).statusCode());
+        // the interrupted fill stops before its next hole pixel, instead of running for seconds and refusing this one
+        BufferedImage white = new BufferedImage(IMAGE.getWidth(), IMAGE.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        int[] samples = new int[white.getWidth() * white.getHeight()];
+        Arrays.fill(samples, 255);
+        white.getRaster().setSamples(0, 0, white.getWidth(), white.getHeight(), 0, samples);
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        do {
+            response = post("", body(white));
+        } while (response.statusCode() == 503 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void pathsAreRefusedWithoutFileRoot(@TempDir Path dir) throws Exception {
+        ImageIO.write(IMAGE, "png", dir.resolve("image.png").toFile());
+        ImageIO.write(MASK, "png", dir.resolve("mask.png").toFile());
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.start();
+        assertEquals(403, post("?image=" + dir.resolve("image.png") + "&mask=" + dir.resolve("mask.png"),
+                new byte[0]).statusCode());
+    }
+
+    @Test
+    void pathsAreConfinedToTheFileRoot(@TempDir Path dir) throws Exception {
+        ImageIO.write(IMAGE, "png", dir.resolve("image.png").toFile());
+        ImageIO.write(MASK, "png", dir.resolve("mask.png").toFile());
+        String query = "?image=image.png&mask=mask.png&output=output.png";
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.setFileRoot(dir);
+        server.start();
+        assertEquals(204, post(query, new byte[0]).statusCode());
+        assertTrue(Files.exists(dir.resolve("output.png")));
+        assertEquals(403, post("?image=../image.png&mask=mask.png", new byte[0]).statusCode());
+        assertEquals(403, post("?image=image.png&mask=mask.png&output=" + dir.resolve("../out.png"), new byte[0])
+                .statusCode());
+    }
+
+    @Test
+    void linksOutOfTheFileRootAreRefused(@TempDir Path dir) throws Exception {
+        Path root = Files.createDirectory(dir.resolve("root"));
+        Path outside = Files.createDirectory(dir.resolve("outside"));
+        ImageIO.write(IMAGE, "png", root.resolve("image.png").toFile());
+        ImageIO.write(MASK, "png", root.resolve("mask.png").toFile());
+        ImageIO.write(IMAGE, "png", outside.resolve("secret.png").toFile());
+        Files.createSymbolicLink(root.resolve("inside.png"), root.resolve("image.png"));
+        Files.createSymbolicLink(root.resolve("secret.png"), outside.resolve("secret.png"));
+        Files.createSymbolicLink(root.resolve("outside"), outside);
+        Files.createSymbolicLink(root.resolve("dangling.png"), outside.resolve("created.png"));
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.setFileRoot(root);
+        server.start();
+        assertEquals(204, post("?image=inside.png&mask=mask.png&output=output.png", new byte[0]).statusCode());
+        assertEquals(403, post("?image=secret.png&mask=mask.png", new byte[0]).statusCode());
+        assertEquals(403, post("?image=outside/secret.png&mask=mask.png", new byte[0]).statusCode());
+        assertEquals(403, post("?image=image.png&mask=mask.png&output=outside/created.png", new byte[0])
+                .statusCode());
+        assertEquals(403, post("?image=image.png&mask=mask.png&output=secret.png", new byte[0]).statusCode());
+        assertEquals(403, post("?image=image.png&mask=mask.png&output=dangling.png", new byte[0]).statusCode());
+        assertFalse(Files.exists(outside.resolve("created.png")));
+        assertArrayEquals(png(IMAGE), png(ImageIO.read(outside.resolve("secret.png").toFile())));
+    }
+
+    @Test
+    void requestsFromWebPagesAreRefused() throws Exception {
+        server = newServer(FillServer.DEFAULT_TIMEOUT_MILLIS);
+        server.start();
+        HttpRequest request = HttpRequest.newBuilder(uri(""))
+                .header("Origin", "http://example.com")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body()))
+                .build();
+        assertEquals(403, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        assertEquals(200, post("", body()).statusCode());
+    }
+
+    // a server filling one request at a time, without a queue, so that a second request finds no worker
+    private FillServer newServer(long timeoutMillis) {
+        FillServer server = new FillServer(0, 8, 1);
+        server.setWarmupIterations(0);
+        server.setQueueCapacity(0);
+        server.setTimeoutMillis(timeoutMillis);
+        server.setWeightingFunc((v, u) -> {
+            filling.countDown();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+            while (slow && v.getPixelValue() < 1 && System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return new DefaultWeightingFunc().calculateWeight(v, u);
+        });
+        return server;
+    }
+
+    private HttpResponse<byte[]> post(String query, byte[] body) throws IOException, InterruptedException {
+        return client.send(request(query, body), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest request(String query, byte[] body) {
+        return HttpRequest.newBuilder(uri(query)).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private URI uri(String query) {
+        return URI.create("http://localhost:" + server.getPort() + "/fill" + query);
+    }
+
+    private static byte[] body() throws IOException {
+        return body(IMAGE);
+    }
+
+    private static byte[] body(BufferedImage filled) throws IOException {
+        byte[] image = png(filled);
+        byte[] mask = png(MASK);
+        return ByteBuffer.allocate(4 + image.length + mask.length).putInt(image.length).put(image).put(mask).array();
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the connected components of the hole, and that {@link ImageHoleFiller} fills from the whole boundary by
+ * default and every component from its own boundary only when asked to.
+ */
+class HoleComponentTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(100, 60, 4);
+    private static final BufferedImage MASK = TestImages.discMask(100, 60, 10, 6, 5);
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 8})
+    void componentsPartitionTheHoleWithTheirOwnBoundaries(int connectivityType) {
+        BufferedImage mask = TestImages.discMask(130, 90, 25, 7, 2);
+        ImageProcessor img = new ImageProcessor(TestImages.randomImage(130, 90, 3), mask, connectivityType);
+        ImageMatrix image = img.getImage();
+
+        List<Integer> hole = new ArrayList<>();
+        for (HoleComponent component : img.getComponents()) {
+            TreeSet<Integer> boundary = new TreeSet<>();
+            for (int u : component.getHoleIndices()) {
+                hole.add(u);
+                for (int[] dir : ImageProcessor.neighbourDirections(connectivityType)) {
+                    int x = image.xOf(u) + dir[0];
+                    int y = image.yOf(u) + dir[1];
+                    if (x >= 0 && y >= 0 && x < image.getWidth() && y < image.getHeight()
+                            && !RasterIO.isHoleLevel(RasterIO.grayLevel(mask.getRGB(x, y)))) {
+                        boundary.add(image.index(x, y));
+                    }
+                }
+            }
+            assertArrayEquals(toArray(boundary), component.getBoundaryIndices());
+        }
+        hole.sort(null);
+        assertArrayEquals(img.getHoleIndices(), toArray(hole));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 8})
+    void componentsSurviveTheFill(int connectivityType) {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, connectivityType);
+        int components = img.getComponents().length;
+        new ImageHoleFiller(img, null).fillHoles();
+        img.findB(connectivityType);
+        assertEquals(components, img.getComponents().length);
+    }
+
+    @Test
+    void defaultFillUsesTheWholeBoundary() {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        assertTrue(img.getComponents().length > 1);
+        ImageHoleFiller filler = new ImageHoleFiller(img, null);
+        assertTrue(filler.isGlobalBoundary());
+        filler.fillHoles();
+        assertArrayEquals(fill(img.getHoleIndices(), img.getBoundaryIndices()), img.getImage().getData());
+    }
+
+    @Test
+    void perComponentFillUsesEveryComponentsOwnBoundary() {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        float[] global = fill(img.getHoleIndices(), img.getBoundaryIndices());
+        float[] expected = img.getImage().getData().clone();
+        for (HoleComponent component : img.getComponents()) {
+            float[] filled = fill(component.getHoleIndices(), component.getBoundaryIndices());
+            for (int u : component.getHoleIndices()) {
+                expected[u] = filled[u];
+            }
+        }
+        ImageHoleFiller filler = new ImageHoleFiller(img, null);
+        filler.setGlobalBoundary(false);
+        filler.fillHoles();
+        assertArrayEquals(expected, img.getImage().getData());
+        assertFalse(Arrays.equals(global, expected));
+    }
+
+    // the fill of the given hole pixels from the given boundary pixels, through the kernel the fillers use
+    private static float[] fill(int[] hole, int[] boundaries) {
+        ImageMatrix image = new ImageProcessor(IMAGE, MASK, 8).getImage();
+        HoleFillTask.fillRange(image, hole, 0, hole.length, FillKernel.forWeightingFunc(new DefaultWeightingFunc(),
+                Accumulation.FLOAT), BoundarySnapshot.of(image, boundaries));
+        return image.getData();
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        int[] array = new int[list.size()];
+        Arrays.setAll(array, list::get);
+        return array;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the hole (H) and boundary (B) detection of {@link ImageProcessor}, done on a packed {@link HoleMask}, against
+ * a brute force scan of every pixel and its neighbours.
+ */
+class HoleDetectionTest {
+    // widths below, at and past a 64-pixel word, so that the rows end inside a word and at its end
+    private static final int[] WIDTHS = {1, 37, 64, 65, 130};
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 8})
+    void holeAndBoundariesMatchBruteForce(int connectivityType) {
+        for (int width : WIDTHS) {
+            BufferedImage mask = TestImages.discMask(width, 41, 6, 9, width);
+            ImageProcessor img = new ImageProcessor(TestImages.randomImage(width, 41, 1), mask, connectivityType);
+            ImageMatrix image = img.getImage();
+
+            List<Integer> hole = new ArrayList<>();
+            TreeSet<Integer> boundary = new TreeSet<>();
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    if (isHole(mask, x, y)) {
+                        hole.add(image.index(x, y));
+                    } else if (hasHoleNeighbour(mask, x, y, connectivityType)) {
+                        boundary.add(image.index(x, y));
+                    }
+                }
+            }
+            assertArrayEquals(toArray(hole), img.getHoleIndices(), "H, width " + width);
+            assertArrayEquals(toArray(boundary), img.getBoundaryIndices(), "B, width " + width);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4, 8})
+    void packedMasksMatchTheHole(int connectivityType) {
+        BufferedImage mask = TestImages.discMask(130, 41, 6, 9, 3);
+        ImageProcessor img = new ImageProcessor(TestImages.randomImage(130, 41, 2), mask, connectivityType);
+        // packed from the marked image and straight from the mask, with the padding bits of every row clear
+        HoleMask marked = HoleMask.of(img.getImage());
+        HoleMask scanned = RasterIO.holeMask(mask);
+        assertArrayEquals(marked.getWords(), scanned.getWords());
+        assertEquals(img.getHoleIndices().length, marked.cardinality());
+        assertArrayEquals(img.getHoleIndices(), marked.indices(img.getImage().getStride()));
+    }
+
+    private static boolean isHole(BufferedImage mask, int x, int y) {
+        return RasterIO.isHoleLevel(RasterIO.grayLevel(mask.getRGB(x, y)));
+    }
+
+    private static boolean hasHoleNeighbour(BufferedImage mask, int x, int y, int connectivityType) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                boolean adjacent = connectivityType == 8 ? (dx != 0 || dy != 0) : Math.abs(dx) + Math.abs(dy) == 1;
+                int nx = x + dx;
+                int ny = y + dy;
+                if (adjacent && nx >= 0 && ny >= 0 && nx < mask.getWidth() && ny < mask.getHeight()
+                        && isHole(mask, nx, ny)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        int[] array = new int[list.size()];
+        Arrays.setAll(array, list::get);
+        return array;
+    }
+}
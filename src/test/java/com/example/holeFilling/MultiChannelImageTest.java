@@ -0,0 +1,45 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link MultiChannelImage} writes and reads back every channel of an image at its sample depth, with
+ * every level of the depth kept.
+ */
+class MultiChannelImageTest {
+
+    @ParameterizedTest
+    @CsvSource({"1, BYTE", "2, BYTE", "3, BYTE", "4, BYTE", "1, USHORT", "3, USHORT", "4, USHORT"})
+    void pngRoundTripKeepsEveryLevel(int channels, MultiChannelImage.SampleDepth depth, @TempDir Path dir)
+            throws IOException {
+        int width = 53;
+        int height = 31;
+        int maxLevel = (1 << depth.getBits()) - 1;
+        Random random = new Random(channels * 31L + depth.ordinal());
+        float[][] planes = new float[channels][width * height];
+        for (float[] plane : planes) {
+            for (int i = 0; i < plane.length; i++) {
+                plane[i] = (float) random.nextInt(maxLevel + 1) / maxLevel;
+            }
+        }
+        String path = dir.resolve("image.png").toString();
+        new MultiChannelImage(planes, width, height, depth).save(path);
+
+        MultiChannelImage read = MultiChannelImage.read(path);
+        assertEquals(channels, read.getChannels());
+        assertEquals(depth, read.getDepth());
+        for (int c = 0; c < channels; c++) {
+            // a level is normalized by multiplying by 1/maxLevel, which may round differently from a division
+            assertArrayEquals(planes[c], read.getPlane(c), 0.25f / maxLevel, "channel " + c);
+        }
+    }
+}
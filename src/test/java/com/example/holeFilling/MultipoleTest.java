@@ -0,0 +1,44 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the error of {@link ImageHoleFillerMultipole} against the exact fill stays under its error bound.
+ * The bound applies to the weight of every cluster, relative to it, so the weighted average of values in [0,1] is off
+ * by less than the bound as well.
+ */
+class MultipoleTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(256, 192, 61);
+    // large discs, so that many clusters of boundary pixels are far enough to be approximated
+    private static final BufferedImage MASK = TestImages.discMask(256, 192, 5, 40, 62);
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void errorStaysUnderTheBound(boolean globalBoundary) {
+        for (double errorBound : new double[] {ImageHoleFillerMultipole.DEFAULT_ERROR_BOUND, 0.001}) {
+            ImageHoleFillerMultipole filler = new ImageHoleFillerMultipole(new ImageProcessor(IMAGE, MASK, 8), null);
+            filler.setErrorBound(errorBound);
+            filler.setGlobalBoundary(globalBoundary);
+            filler.fillHoles();
+            ApproximationError error = filler.measureError(Integer.MAX_VALUE);
+            assertTrue(error.getSampleCount() > 0);
+            assertTrue(error.getMaxError() < errorBound, error + " with the bound " + errorBound);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void zeroBoundIsExact(boolean globalBoundary) {
+        ImageHoleFillerMultipole filler = new ImageHoleFillerMultipole(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setErrorBound(0);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles();
+        // the exact sums are accumulated in another order, which rounds differently
+        assertTrue(filler.measureError(Integer.MAX_VALUE).getMaxError() < 1e-5);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that splitting a fill between threads gives exactly the result of the sequential fill, bit for bit.
+ */
+class ParallelFillTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(160, 120, 11);
+    private static final BufferedImage MASK = TestImages.discMask(160, 120, 12, 14, 12);
+
+    @Test
+    void perComponentFillMatchesSequential() {
+        assertArrayEquals(fill(false, 1), fill(false, 4));
+    }
+
+    @Test
+    void globalBoundaryFillMatchesSequential() {
+        assertArrayEquals(fill(true, 1), fill(true, 4));
+    }
+
+    @Test
+    void multiChannelFillMatchesSequential() {
+        MultiChannelHoleFiller sequential = new MultiChannelHoleFiller(MultiChannelImage.read(IMAGE), MASK, 8, null);
+        sequential.fillHoles();
+        MultiChannelHoleFiller parallel = new MultiChannelHoleFiller(MultiChannelImage.read(IMAGE), MASK, 8, null);
+        parallel.fillHoles(new ForkJoinPool(4));
+        assertArrayEquals(sequential.getImage().getPlane(0), parallel.getImage().getPlane(0));
+    }
+
+    private static float[] fill(boolean globalBoundary, int threads) {
+        ImageHoleFiller filler = new ImageHoleFiller(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles(threads);
+        return filler.getImg().getImage().getData();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the error of {@link PyramidHoleFiller} against the exact fill. On a noise image the interpolated pixels just
+ * outside the band are the farthest off, so the maximal error shrinks as the band widens, and without levels the fill
+ * is exact.
+ */
+class PyramidTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(256, 192, 111);
+    // large discs, so that the coarse levels fill most of the hole
+    private static final BufferedImage MASK = TestImages.discMask(256, 192, 4, 45, 112);
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void errorStaysUnderTheThreshold(boolean globalBoundary) {
+        ApproximationError error = fill(PyramidHoleFiller.DEFAULT_LEVELS, PyramidHoleFiller.DEFAULT_REFINEMENT_BAND,
+                globalBoundary);
+        assertTrue(error.getSampleCount() > 0);
+        assertTrue(error.getMaxError() < 0.05, error.toString());
+        assertTrue(error.getMeanError() < 0.003, error.toString());
+
+        ApproximationError wideBand = fill(PyramidHoleFiller.DEFAULT_LEVELS, 16, globalBoundary);
+        assertTrue(wideBand.getMaxError() < 0.01, wideBand.toString());
+        assertTrue(wideBand.getMaxError() < error.getMaxError(), wideBand + " against " + error);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void noLevelsIsExact(boolean globalBoundary) {
+        // the exact sums are accumulated in another order, which rounds differently
+        assertTrue(fill(0, PyramidHoleFiller.DEFAULT_REFINEMENT_BAND, globalBoundary).getMaxError() < 1e-5);
+    }
+
+    private static ApproximationError fill(int levels, int refinementBand, boolean globalBoundary) {
+        PyramidHoleFiller filler = new PyramidHoleFiller(new ImageProcessor(IMAGE, MASK, 8), null);
+        filler.setLevels(levels);
+        filler.setRefinementBand(refinementBand);
+        filler.setGlobalBoundary(globalBoundary);
+        filler.fillHoles();
+        return filler.measureError(Integer.MAX_VALUE);
+    }
+}
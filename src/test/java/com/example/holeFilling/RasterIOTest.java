@@ -0,0 +1,157 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that every access path of {@link RasterIO} reads the gray levels the getRGB path reads from color images, and
+ * the samples of gray images, for whole images and for sub-images, whose rasters start inside their data buffer, and
+ * that a saved image is read back with the levels it was saved with.
+ */
+class RasterIOTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_USHORT_GRAY,
+            BufferedImage.TYPE_BYTE_INDEXED})
+    void grayRowsMatchGetRgbOrGraySamples(int type) {
+        BufferedImage image = randomImage(type, 67, 23);
+        assertGrayLevels(image);
+        assertGrayLevels(image.getSubimage(5, 3, 41, 17));
+    }
+
+    @Test
+    void holeMaskMatchesGraySamples() {
+        // getRGB would map many samples below the threshold above it, e.g. 60 to 133
+        BufferedImage mask = randomImage(BufferedImage.TYPE_BYTE_GRAY, 67, 23);
+        HoleMask holes = RasterIO.holeMask(mask);
+        for (int y = 0; y < mask.getHeight(); y++) {
+            for (int x = 0; x < mask.getWidth(); x++) {
+                assertEquals(RasterIO.isHoleLevel(mask.getRaster().getSample(x, y, 0)), holes.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    void savedImageIsReadBackWithItsLevels(@TempDir Path dir) throws IOException {
+        // every level, in a row of a 256x2 image
+        BufferedImage levels = new BufferedImage(256, 2, BufferedImage.TYPE_BYTE_GRAY);
+        for (int x = 0; x < 256; x++) {
+            levels.getRaster().setSample(x, 0, 0, x);
+            levels.getRaster().setSample(x, 1, 0, 255 - x);
+        }
+        BufferedImage noHole = new BufferedImage(256, 2, BufferedImage.TYPE_BYTE_GRAY);
+        noHole.getRaster().setSamples(0, 0, 256, 2, 0, filled(512, 255));
+        ImageIO.write(noHole, "png", dir.resolve("noHole.png").toFile());
+        ImageProcessor img = new ImageProcessor(levels, noHole, 8);
+        String saved = dir.resolve("levels.png").toString();
+        img.saveGrayscaleImage(saved);
+
+        BufferedImage read = ImageIO.read(new File(saved));
+        int[] gray = new int[256];
+        for (int y = 0; y < 2; y++) {
+            RasterIO.grayRows(read).read(y, gray);
+            for (int x = 0; x < 256; x++) {
+                assertEquals(levels.getRaster().getSample(x, y, 0), gray[x], "level at " + x + "," + y);
+            }
+        }
+        assertArrayEquals(img.getImage().getData(),
+                new ImageProcessor(saved, dir.resolve("noHole.png").toString(), 8).getImage().getData());
+    }
+
+    @Test
+    void refillOfASavedFillKeepsItsPixels(@TempDir Path dir) throws IOException {
+        String image = dir.resolve("image.png").toString();
+        String mask = dir.resolve("mask.png").toString();
+        ImageIO.write(TestImages.randomImage(64, 64, 91), "png", new File(image));
+        ImageIO.write(TestImages.discMask(64, 64, 2, 6, 92), "png", new File(mask));
+        String filled = dir.resolve("filled.png").toString();
+        ImageHoleFiller filler = new ImageHoleFiller(image, mask, 8);
+        filler.fillHoles();
+        filler.getImg().saveGrayscaleImage(filled);
+
+        // the pixels the fill left are read back as they were, so filling them again gives the same image
+        String refilled = dir.resolve("refilled.png").toString();
+        ImageHoleFiller refiller = new ImageHoleFiller(filled, mask, 8);
+        refiller.fillHoles();
+        refiller.getImg().saveGrayscaleImage(refilled);
+        assertArrayEquals(samples(filled), samples(refilled));
+    }
+
+    @Test
+    void grayLevelMatchesTheLumaOfEveryColor() {
+        for (int rgb = 0; rgb < 1 << 24; rgb++) {
+            int r = rgb >> 16;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int expected = (int) (r * 0.299 + g * 0.587 + b * 0.114);
+            if (RasterIO.grayLevel(rgb) != expected) {
+                assertEquals(expected, RasterIO.grayLevel(rgb), "rgb " + Integer.toHexString(rgb));
+            }
+        }
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] samples = new int[length];
+        Arrays.fill(samples, value);
+        return samples;
+    }
+
+    private static int[] samples(String path) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        return image.getRaster().getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null);
+    }
+
+    private static void assertGrayLevels(BufferedImage image) {
+        int width = image.getWidth();
+        RasterIO.GrayRows rows = RasterIO.grayRows(image);
+        int[] gray = new int[width];
+        int[] expected = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            rows.read(y, gray);
+            for (int x = 0; x < width; x++) {
+                switch (image.getType()) {
+                    case BufferedImage.TYPE_BYTE_GRAY:
+                        expected[x] = image.getRaster().getSample(x, y, 0);
+                        break;
+                    case BufferedImage.TYPE_USHORT_GRAY:
+                        expected[x] = image.getRaster().getSample(x, y, 0) * 255 / 65535;
+                        break;
+                    default:
+                        expected[x] = RasterIO.grayLevel(image.getRGB(x, y));
+                }
+            }
+            assertArrayEquals(expected, gray, "type " + image.getType() + ", row " + y);
+        }
+    }
+
+    // an image whose every sample is random, so that every band of every pixel is read
+    private static BufferedImage randomImage(int type, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        WritableRaster raster = image.getRaster();
+        Random random = new Random(type);
+        for (int band = 0; band < raster.getNumBands(); band++) {
+            int bound = 1 << raster.getSampleModel().getSampleSize(band);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    raster.setSample(x, y, band, random.nextInt(bound));
+                }
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the planes written to a {@link RawImage} are read back as they were written, that writing some pixels
+ * in place leaves the others as they are, and that a file shorter than its header says is rejected.
+ */
+class RawImageTest {
+    // a width that isn't a multiple of 64, so that the rows of the mask end within a word
+    private static final int WIDTH = 70;
+    private static final int HEIGHT = 23;
+
+    @ParameterizedTest
+    @EnumSource(RawImage.SampleType.class)
+    void planesRoundTrip(RawImage.SampleType sampleType, @TempDir Path dir) throws IOException {
+        Path path = dir.resolve("image" + RawImage.EXTENSION);
+        ImageMatrix image = randomImage(sampleType, 1);
+        HoleMask mask = RasterIO.holeMask(TestImages.discMask(WIDTH, HEIGHT, 3, 8, 2));
+        try (RawImage raw = RawImage.create(path, WIDTH, HEIGHT, sampleType, true)) {
+            raw.writeImage(image);
+            raw.writeMask(mask);
+        }
+
+        try (RawImage raw = RawImage.open(path, false)) {
+            assertEquals(WIDTH, raw.getWidth());
+            assertEquals(HEIGHT, raw.getHeight());
+            assertEquals(sampleType, raw.getSampleType());
+            assertTrue(raw.hasMask());
+            assertArrayEquals(image.getData(), raw.readImage().getData());
+            assertArrayEquals(mask.getWords(), raw.readMask().getWords());
+            assertThrows(IllegalStateException.class, () -> raw.writeImage(image));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RawImage.SampleType.class)
+    void writePixelsChangesOnlyThosePixels(RawImage.SampleType sampleType, @TempDir Path dir) throws IOException {
+        Path path = dir.resolve("image" + RawImage.EXTENSION);
+        ImageMatrix before = randomImage(sampleType, 3);
+        try (RawImage raw = RawImage.create(path, WIDTH, HEIGHT, sampleType, false)) {
+            raw.writeImage(before);
+        }
+
+        // a matrix whose stride is wider than the image, as a view of a larger one is
+        int stride = WIDTH + 5;
+        ImageMatrix after = new ImageMatrix(new float[stride * HEIGHT], WIDTH, HEIGHT, stride);
+        ImageMatrix changes = randomImage(sampleType, 4);
+        float[] expected = before.getData().clone();
+        int[] indices = new int[HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            int x = (y * 7) % WIDTH;
+            indices[y] = after.index(x, y);
+            after.set(x, y, changes.get(x, y));
+            expected[y * WIDTH + x] = changes.get(x, y);
+        }
+        try (RawImage raw = RawImage.open(path, true)) {
+            assertFalse(raw.hasMask());
+            raw.writePixels(after, indices);
+        }
+
+        try (RawImage raw = RawImage.open(path, false)) {
+            assertArrayEquals(expected, raw.readImage().getData());
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("image" + RawImage.EXTENSION);
+        try (RawImage raw = RawImage.create(path, WIDTH, HEIGHT, RawImage.SampleType.UINT16, true)) {
+            raw.writeImage(randomImage(RawImage.SampleType.UINT16, 5));
+        }
+        long size = Files.size(path);
+        // the last word of the mask plane, then all but part of the header
+        for (long truncatedSize : new long[] {size - 8, 20}) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(truncatedSize);
+            }
+            assertThrows(IOException.class, () -> RawImage.open(path, false).close());
+            assertThrows(IOException.class, () -> RawImage.open(path, true).close());
+            assertEquals(truncatedSize, Files.size(path), "a rejected file isn't extended");
+        }
+    }
+
+    // an image of values the sample type represents exactly
+    private static ImageMatrix randomImage(RawImage.SampleType sampleType, long seed) {
+        Random random = new Random(seed);
+        ImageMatrix image = new ImageMatrix(WIDTH, HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            switch (sampleType) {
+                case UINT8:
+                    image.set(i, (float) random.nextInt(256) / 255);
+                    break;
+                case UINT16:
+                    image.set(i, (float) random.nextInt(65536) / 65535);
+                    break;
+                default:
+                    image.set(i, random.nextFloat());
+            }
+        }
+        return image;
+    }
+}
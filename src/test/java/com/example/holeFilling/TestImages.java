@@ -0,0 +1,61 @@
+package com.example.holeFilling;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Builds the synthetic images and masks the tests fill: a random grayscale image, and a mask of random discs, whose
+ * hole has several connected components, some of them touching the edges of the image.
+ */
+final class TestImages {
+    private TestImages() {
+    }
+
+    /**
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @param seed The seed of the random values
+     * @return A grayscale image of random values
+     */
+    static BufferedImage randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.getRaster().setSample(x, y, 0, random.nextInt(256));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @param width The width of the mask in pixels
+     * @param height The height of the mask in pixels
+     * @param discs The number of discs
+     * @param maxRadius The largest radius of a disc
+     * @param seed The seed of the random discs
+     * @return A mask whose hole pixels, the pixels of the discs, are black and whose other pixels are white
+     */
+    static BufferedImage discMask(int width, int height, int discs, int maxRadius, long seed) {
+        Random random = new Random(seed);
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                mask.getRaster().setSample(x, y, 0, 255);
+            }
+        }
+        for (int d = 0; d < discs; d++) {
+            int cx = random.nextInt(width);
+            int cy = random.nextInt(height);
+            int radius = random.nextInt(maxRadius + 1);
+            for (int y = Math.max(0, cy - radius); y <= Math.min(height - 1, cy + radius); y++) {
+                for (int x = Math.max(0, cx - radius); x <= Math.min(width - 1, cx + radius); x++) {
+                    if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius) {
+                        mask.getRaster().setSample(x, y, 0, 0);
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that {@link TiledHoleFiller} writes the image {@link ImageHoleFiller} writes when it fills every component
+ * from its own boundary, with strips and bands much smaller than the image and than some of its components.
+ */
+class TiledFillTest {
+
+    @Test
+    void tiledFillMatchesPerComponentFill(@TempDir Path dir) throws IOException {
+        String image = write(TestImages.randomImage(150, 110, 71), dir.resolve("image.png"));
+        String mask = write(TestImages.discMask(150, 110, 14, 12, 72), dir.resolve("mask.png"));
+        String expected = dir.resolve("expected.png").toString();
+        String actual = dir.resolve("actual.png").toString();
+
+        ImageHoleFiller filler = new ImageHoleFiller(image, mask, 8);
+        filler.setGlobalBoundary(false);
+        filler.fillHoles();
+        filler.getImg().saveGrayscaleImage(expected);
+        TiledHoleFiller tiled = new TiledHoleFiller(image, mask, 8);
+        tiled.setStripHeight(16);
+        tiled.fillHoles(actual);
+
+        assertArrayEquals(samples(expected), samples(actual));
+    }
+
+    private static String write(BufferedImage image, Path path) throws IOException {
+        ImageIO.write(image, "png", path.toFile());
+        return path.toString();
+    }
+
+    private static int[] samples(String path) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        return image.getRaster().getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null);
+    }
+}
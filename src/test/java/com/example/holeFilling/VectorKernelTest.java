@@ -0,0 +1,70 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link VectorDefaultFillKernel} gives the values of {@link ScalarDefaultFillKernel}. The kernels compute
+ * the same weights but add them up in another order, so the fill values, in [0,1], may differ by up to 1e-5.
+ */
+class VectorKernelTest {
+    private static final float TOLERANCE = 1e-5f;
+    private static final BufferedImage IMAGE = TestImages.randomImage(97, 61, 41);
+    // a boundary whose size isn't a multiple of the number of lanes, so the scalar tail of the loops runs too
+    private static final BufferedImage MASK = TestImages.discMask(97, 61, 4, 9, 42);
+
+    @ParameterizedTest
+    @EnumSource(Accumulation.class)
+    void vectorSumsMatchScalarSums(Accumulation accumulation) {
+        assertTrue(FillKernel.VectorSupport.AVAILABLE, "the tests run with the jdk.incubator.vector module");
+        for (int z : new int[] {2, 3}) {
+            DefaultWeightingFunc W = new DefaultWeightingFunc(0.01, z);
+            assertArrayEquals(fill(new ScalarDefaultFillKernel(W, accumulation)),
+                    fill(new VectorDefaultFillKernel(W, accumulation)), TOLERANCE, "z = " + z);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 4, 6})
+    void vectorChannelsMatchScalarChannels(int channels) {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        MultiChannelImage image = MultiChannelImage.read(IMAGE);
+        float[][] planes = new float[channels][];
+        for (int c = 0; c < channels; c++) {
+            // every channel gets other values, so that a channel summed from the wrong plane is caught
+            planes[c] = image.getPlane(0).clone();
+            for (int i = 0; i < planes[c].length; i++) {
+                planes[c][i] = (planes[c][i] + c * 0.1f) % 1;
+            }
+        }
+        BoundarySnapshot boundary = BoundarySnapshot.of(new MultiChannelImage(planes, IMAGE.getWidth(),
+                IMAGE.getHeight(), MultiChannelImage.SampleDepth.BYTE), img.getBoundaryIndices());
+        DefaultWeightingFunc W = new DefaultWeightingFunc();
+        FillKernel scalar = new ScalarDefaultFillKernel(W);
+        FillKernel vector = new VectorDefaultFillKernel(W);
+        float[] expected = new float[channels];
+        float[] actual = new float[channels];
+        for (int u : img.getHoleIndices()) {
+            int ux = u % IMAGE.getWidth();
+            int uy = u / IMAGE.getWidth();
+            scalar.fillValues(ux, uy, boundary, expected);
+            vector.fillValues(ux, uy, boundary, actual);
+            assertArrayEquals(expected, actual, TOLERANCE);
+        }
+    }
+
+    private static float[] fill(FillKernel kernel) {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        ImageMatrix image = img.getImage();
+        int[] hole = img.getHoleIndices();
+        HoleFillTask.fillRange(image, hole, 0, hole.length, kernel,
+                BoundarySnapshot.of(image, img.getBoundaryIndices()));
+        return image.getData();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.holeFilling;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a weighting function implementing only {@link WeightingFunc#calculateWeight(Point, Point)} is called
+ * the way the hole fillers always called it: the boundary pixel, with its value, first, and the hole pixel second.
+ */
+class WeightingFuncTest {
+    private static final BufferedImage IMAGE = TestImages.randomImage(60, 40, 31);
+    private static final BufferedImage MASK = TestImages.discMask(60, 40, 3, 6, 32);
+
+    // weighs the boundary pixels by their value and by their side of the hole pixel, so neither the order of the
+    // points nor their values can be ignored
+    private static final WeightingFunc ASYMMETRIC = (v, u) -> {
+        assertEquals(ImageMatrix.HOLE, u.getPixelValue());
+        return (v.getPixelValue() + 0.1f) * (v.getX() > u.getX() ? 3 : 1);
+    };
+
+    @Test
+    void boundaryPixelIsPassedFirstWithItsValue() {
+        ImageProcessor img = new ImageProcessor(IMAGE, MASK, 8);
+        ImageMatrix image = img.getImage();
+        float[] expected = image.getData().clone();
+        for (int u : img.getHoleIndices()) {
+            Point hole = new Point(image.yOf(u), image.xOf(u), ImageMatrix.HOLE);
+            float numerator = 0;
+            float dominator = 0;
+            for (int v : img.getBoundaryIndices()) {
+                float weight = ASYMMETRIC.calculateWeight(new Point(image.yOf(v), image.xOf(v), image.get(v)), hole);
+                numerator += weight * image.get(v);
+                dominator += weight;
+            }
+            expected[u] = numerator / dominator;
+        }
+
+        ImageHoleFiller filler = new ImageHoleFiller(img, ASYMMETRIC);
+        filler.setGlobalBoundary(true);
+        filler.fillHoles();
+        assertArrayEquals(expected, image.getData(), 1e-6f);
+    }
+}